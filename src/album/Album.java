@@ -1,6 +1,7 @@
 package album;
 /**
 The Album class which holds the data for the title, artist, genre, date, and ratings
+Ratings are kept as running totals in a RatingStats object, the linked list of every rating is only kept when history is turned on
 @author Seungjun Bae
  */
 public class Album {
@@ -8,12 +9,16 @@ public class Album {
     private static final int BEFORE = -1;
     private static final int AFTER = 1;
     private String title;
+    private String[] titleKey; // lower case words of the title, computed when the title is set and used to compare titles
     private Artist artist;
     private Genre genre;
     private Date released;
-    private Rating ratings; // head to linked list of ratings
+    private Rating ratings; // head to linked list of ratings, only kept when ratingHistory is true
+    private RatingStats stats; // per-star counts, PlainRatingStats unless the album is rated by many threads at once
+    private boolean ratingHistory; // whether every rating is also kept in the ratings linked list
 
     public Album(String title, Artist artist, Genre genre, Date release, Rating ratings) {
+        this.stats = new PlainRatingStats();
         setTitle(title);
         setaArtist(artist);
         setGenre(genre);
@@ -21,13 +26,27 @@ public class Album {
         setRatings(ratings);
     }
 
+    /**
+     * Sets the title and computes its sort key, the words of the title in lower case
+     * @param t: the title of the album
+     */
     public void setTitle(String t){
         this.title = t;
+        this.titleKey = t == null ? null : SortKeys.words(t);
     }
 
+
     public String getTitle(){
         return this.title;
     }
+
+    /**
+     * Getter method for the sort key of the title
+     * @return titleKey: the lower case words of the title, which must not be changed
+     */
+    String[] getTitleKey(){
+        return this.titleKey;
+    }
     
     public void setaArtist(Artist a){
         this.artist = a;
@@ -53,44 +72,92 @@ public class Album {
         return released;
     }
 
+    /**
+     * Replaces the ratings of the album with the ratings in a linked list
+     * The totals are recounted from the list, and a non-null list turns rating history on so it is kept
+     * @param r: the head of a linked list of ratings, or null for no ratings
+     */
     public void setRatings(Rating r){
         this.ratings = r;
+        this.stats = new PlainRatingStats();
+        Rating pointer = r;
+        while (pointer != null) {
+            stats.record(pointer.getStar());
+            pointer = pointer.getNext();
+        }
+        if (r != null) {
+            this.ratingHistory = true;
+        }
     }
 
+    /**
+     * Getter method for the linked list of ratings
+     * @return ratings: the most recent rating, or null if there are none or rating history is off
+     */
     public Rating getRatings(){
         return ratings;
     }
 
     /**
-     * Adds a rating to the linked list rating object
+     * Getter method for the rating totals
+     * @return stats: the RatingStats of the album
+     */
+    public RatingStats getStats(){
+        return stats;
+    }
+
+    /**
+     * Moves the rating totals into StripedRatingStats, so any number of threads can rate the album at once
+     * The ratings already given are kept, and it does nothing if the totals are already striped
+     */
+    public void useStripedRatings(){
+        if (!(stats instanceof StripedRatingStats)) {
+            this.stats = StripedRatingStats.copyOf(stats);
+        }
+    }
+
+    /**
+     * Turns the rating history on or off
+     * Turning it off drops the linked list, the totals are kept either way
+     * @param ratingHistory: true to keep every rating in the ratings linked list
+     */
+    public void setRatingHistory(boolean ratingHistory){
+        this.ratingHistory = ratingHistory;
+        if (!ratingHistory) {
+            this.ratings = null;
+        }
+    }
+
+    /**
+     * Getter method for the rating history setting
+     * @return true: every rating is kept in the ratings linked list
+     * @return false: only the totals are kept, the default
+     */
+    public boolean isRatingHistory(){
+        return ratingHistory;
+    }
+
+    /**
+     * Adds a rating to the totals, and to the front of the ratings linked list if rating history is on
+     * With striped totals and no history, threads rating the album at once do not wait for each other
      * @param star: an int from 1 to 5
+     * @throws IllegalArgumentException if the star is outside 1 to 5
      */
     public void rate(int star) {
-        if (ratings != null) {
-            Rating rating = new Rating(star, ratings);
-            rating.setNext(ratings);
-            ratings = rating;
-        } else {
-            ratings = new Rating(star, null);
+        stats.record(star);
+        if (ratingHistory) {
+            synchronized (this) {
+                ratings = new Rating(star, ratings);
+            }
         }
     }
 
     /**
-     * Calculates the average rating of an album
-     * @return average: a double representing the average rating
+     * Calculates the average rating of an album from the rating totals
+     * @return average: a double representing the average rating, 0.0 if there are no ratings
      */
     public double avgRatings() {
-        double sum = 0, numberOfRatings = 0;
-        Rating pointer = ratings;
-        while (pointer != null) {
-            sum += pointer.getStar();
-            numberOfRatings++;
-            pointer = pointer.getNext();
-        }
-        if(numberOfRatings == 0){
-            return 0.0;
-        }
-        return sum / numberOfRatings;
+        return stats.average();
     }
 
     /**
@@ -119,47 +186,53 @@ public class Album {
      */
     @Override
     public String toString(){
-        String albumTitle = "[" + this.getTitle() + "]";
-        String albumReleaseDate = "Released " + this.getReleased().toString();
-        String artistInfo = "[" + this.getArtist().toString() + "]";
-        String genreString = "[" + String.valueOf(this.getGenre()) + "]";
-        String ratingString = this.rating();
-        return  albumTitle + " " + albumReleaseDate + " " + artistInfo + " " + genreString + " " + ratingString;
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the summary of the album in the same format as toString, without building intermediate Strings
+     * @param sb: the StringBuilder to append to
+     * @return sb, so calls can be chained
+     */
+    public StringBuilder appendTo(StringBuilder sb){
+        return appendRating(appendDetails(sb));
+    }
+
+    /**
+     * Appends the summary of the album in the same format as toString, with rating counts read earlier in place of the current totals,
+     * for a listing that is printed after the counts it is ordered by were copied
+     * @param sb: the StringBuilder to append to
+     * @param starCounts: the count of each star, indexed by star
+     * @return sb, so calls can be chained
+     */
+    StringBuilder appendTo(StringBuilder sb, long[] starCounts){
+        return RatingStats.appendSummary(appendDetails(sb), starCounts);
+    }
+
+    /**
+     * Helper method of appendTo that appends everything before the rating summary
+     */
+    private StringBuilder appendDetails(StringBuilder sb){
+        sb.append('[').append(this.getTitle()).append("] Released ");
+        this.getReleased().appendTo(sb).append(" [");
+        return this.getArtist().appendTo(sb).append("] [").append(this.getGenre()).append("] ");
     }
 
     /**
-     * Counts how many one, two, three, four, and five, star ratings exist in the ratings linked list
-     * @return String: a string summarizing the rating statistics or none if the linked list is null
+     * Summarizes how many one, two, three, four, and five star ratings the album has, read from the rating totals
+     * @return String: a string summarizing the rating statistics or none if there are no ratings
      */
     public String rating(){
-        int oneStar = 0;
-        int twoStar = 0;
-        int threeStar = 0;
-        int fourStar = 0;
-        int fiveStar = 0;
-        Rating pointer = ratings;
-        //If no ratings have been entered yet
-        if(pointer == null){
-            return "Rating: none";
-        }
-        while (pointer != null) {
-            int pointerRating = pointer.getStar();
-            if(pointerRating == 1){
-                oneStar += 1;
-            } else if (pointerRating == 2) {
-                twoStar += 1;
-            } else if (pointerRating == 3) {
-                threeStar += 1;
-            } else if (pointerRating == 4) {
-                fourStar += 1;
-            } else if (pointerRating == 5) {
-                fiveStar += 1;
-            }
-            pointer = pointer.getNext();
-        }
-        String averageRating = String.format("%.2f", this.avgRatings());
-        return "Rating: " + "*(" + oneStar + ")" + "**(" + twoStar + ")" + "***(" + threeStar + ")"
-                        + "****(" + fourStar + ")" + "*****(" + fiveStar + ")" + "(average rating: " + averageRating + ")";
+        return appendRating(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the rating summary returned by rating, with the average formatted by hand instead of String.format
+     * @param sb: the StringBuilder to append to
+     * @return sb, so calls can be chained
+     */
+    public StringBuilder appendRating(StringBuilder sb){
+        return stats.appendSummary(sb);
     }
 
     /**
@@ -173,7 +246,7 @@ public class Album {
    public int genreCompare(Album otherAlbum){
         String genre = String.valueOf(this.getGenre());
         String otherGenre = String.valueOf(otherAlbum.getGenre());
-        int comparison = this.compareWords(genre, otherGenre);
+        int comparison = compareWords(genre, otherGenre);
         if(comparison != EQUAL){
             return comparison;
         }
@@ -184,15 +257,24 @@ public class Album {
 
     /**
      * Compares the titles of two albums to determine which comes first
+     * The titles are compared word by word, ignoring case, using the sort keys computed when the titles were set
      * @param otherAlbum: an Album object
      * @return -1: the Album object calling the method has a title that comes before otherAlbum's title
      * @return 1: the Album object calling the method has a title that comes after otherAlbum's title
      * @return 0: the Album object calling the method has a title that is equal to otherAlbum's title
      */
     public int compareTitles(Album otherAlbum) {
-        String[] words1 = this.getTitle().split("\\s+");
-        String[] words2 = otherAlbum.getTitle().split("\\s+");
+        return compareTitleKeys(this.titleKey, otherAlbum.titleKey);
+    }
 
+    /**
+     * Compares two titles by their sort keys, the lower case words SortKeys.words splits them into
+     * Used by compareTitles, and by stores that keep the keys of titles without an Album for each
+     * @param words1: the sort key of one title
+     * @param words2: the sort key of the other title
+     * @return -1, 0 or 1 the same way compareTitles does
+     */
+    static int compareTitleKeys(String[] words1, String[] words2) {
         int minLength;
         if(words1.length <= words2.length){
             minLength = words1.length;
@@ -202,7 +284,7 @@ public class Album {
         }
 
         for (int i = 0; i < minLength; i++) {
-            int result = compareWords(words1[i].toLowerCase(), words2[i].toLowerCase());
+            int result = compareWords(words1[i], words2[i]);
             if (result != EQUAL) {
                 return result;
             }
@@ -210,11 +292,8 @@ public class Album {
         return Integer.compare(words1.length, words2.length);
     }
 
-
-
-
     /**
-     Helper method for the compareTitles method
+     Helper method for the compareTitleKeys and genreCompare methods
      The method takes in two strings and compares their ascii values to determine the sorting order for the two strings
      @param word1: the string of the object calling the method
      @param word2: the string of the other object being compared
@@ -222,7 +301,7 @@ public class Album {
      @return 1: string word1 comes after string word2
      @return 0: the strings are equivalent
      */
-    private int compareWords(String word1, String word2) {
+    static int compareWords(String word1, String word2) {
         int stop;
         if(word1.length() <= word2.length()){
             stop = word1.length();
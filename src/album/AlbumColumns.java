@@ -0,0 +1,134 @@
+package album;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+/**
+ * The AlbumColumns class which holds the fixed width fields of the albums of a ColumnarCollection, one slot per album
+ * Every int field has an array of its own, the genre ordinals are kept in a byte array and the sequences in a long array,
+ * so a scan or sort of one field reads a contiguous array of primitives
+ * The int fields are numbered by the constants below, and the count of each star rating is a field of its own from STAR
+ * DirectAlbumColumns keeps the same fields outside the heap
+ @author Rohan Sharma
+ */
+class AlbumColumns {
+    static final int TITLE = 0; //dictionary id of the title
+    static final int NAME = 1; //dictionary id of the artist name
+    static final int TITLE_KEY = 2; //dictionary key of the title, equal for titles equal ignoring case
+    static final int NAME_KEY = 3; //dictionary key of the artist name
+    static final int BORN = 4; //packed birthdate of the artist
+    static final int RELEASED = 5; //packed release date
+    static final int SUM = 6; //sum of the ratings
+    static final int COUNT = 7; //number of ratings
+    static final int STAR = 8; //count of one star ratings, the counts of the other stars follow it
+    static final int INT_FIELDS = STAR + RatingStats.MAX_STAR - RatingStats.MIN_STAR + 1;
+    private int[][] ints; //array of each int field
+    private byte[] genres;
+    private long[] sequences;
+
+    /**
+     * Constructor for the AlbumColumns class
+     * @param capacity: the number of slots to start with
+     */
+    AlbumColumns(int capacity){
+        this.ints = new int[INT_FIELDS][capacity];
+        this.genres = new byte[capacity];
+        this.sequences = new long[capacity];
+    }
+
+    /**
+     * Getter method for the capacity
+     * @return the number of slots the columns can hold without growing
+     */
+    int getCapacity(){
+        return genres.length;
+    }
+
+    /**
+     * Grows the columns to hold at least a number of slots, keeping what the slots hold
+     * @param capacity: the smallest capacity after growing
+     */
+    void grow(int capacity){
+        for (int field = 0; field < INT_FIELDS; field++) {
+            ints[field] = Arrays.copyOf(ints[field], capacity);
+        }
+        genres = Arrays.copyOf(genres, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+    }
+
+    /**
+     * @param slot: a slot
+     * @param field: one of the int fields
+     * @return the value of the field in the slot
+     */
+    int getInt(int slot, int field){
+        return ints[field][slot];
+    }
+
+    /**
+     * @param slot: a slot
+     * @param field: one of the int fields
+     * @param value: the new value of the field in the slot
+     */
+    void setInt(int slot, int field, int value){
+        ints[field][slot] = value;
+    }
+
+    int getGenre(int slot){
+        return genres[slot];
+    }
+
+    void setGenre(int slot, int genre){
+        genres[slot] = (byte) genre;
+    }
+
+    long getSequence(int slot){
+        return sequences[slot];
+    }
+
+    void setSequence(int slot, long sequence){
+        sequences[slot] = sequence;
+    }
+
+    /**
+     * Copies every field of a slot into another slot
+     * @param from: the slot copied
+     * @param to: the slot written
+     */
+    void move(int from, int to){
+        for (int[] field : ints) {
+            field[to] = field[from];
+        }
+        genres[to] = genres[from];
+        sequences[to] = sequences[from];
+    }
+
+    /**
+     * Reorders the first slots, so slot i holds what slot sorted[i] held
+     * @param sorted: the slots in their new order
+     */
+    void permute(int[] sorted){
+        for (int field = 0; field < INT_FIELDS; field++) {
+            int[] permuted = new int[ints[field].length];
+            for (int i = 0; i < sorted.length; i++) {
+                permuted[i] = ints[field][sorted[i]];
+            }
+            ints[field] = permuted;
+        }
+        byte[] permutedGenres = new byte[genres.length];
+        long[] permutedSequences = new long[sequences.length];
+        for (int i = 0; i < sorted.length; i++) {
+            permutedGenres[i] = genres[sorted[i]];
+            permutedSequences[i] = sequences[sorted[i]];
+        }
+        genres = permutedGenres;
+        sequences = permutedSequences;
+    }
+
+    /**
+     * Allocates a table of ints kept in the same kind of memory as the columns, used for the lookup table of the slots
+     * @param count: the number of ints
+     * @return the table, filled with zeros
+     */
+    IntBuffer newTable(int count){
+        return IntBuffer.allocate(count);
+    }
+}
@@ -0,0 +1,97 @@
+package album;
+/**
+ * The AlbumCursor class which walks one ordering of a Collection, or the albums that match an AlbumQuery, a page at a time
+ * A cursor does not hold the listing, only where it stopped: the entry of the last album it printed and,
+ * for a MappedCollection, the next rank of the catalog, so resuming finds its place in O(log n) whatever the page size
+ * Changes made between pages are seen by the pages after them, an album added or rated to a place the cursor has passed is not listed,
+ * and an album rated to a place ahead of it can be listed twice
+ @author Rohan Sharma
+ */
+public final class AlbumCursor {
+    private final Collection collection;
+    private final SortOrder order;
+    private final AlbumQuery query; //the query whose matches are walked in release date order, null to walk every album
+    private AlbumEntry bookmark; //copy of the entry of the last album printed from the sorted view, null before the first
+    private int rank; //next rank of the catalog of a MappedCollection
+    private boolean done;
+
+    /**
+     * Parameterized constructor for the AlbumCursor class, placed before the first album
+     * @param collection: the collection to walk
+     * @param order: the ordering to walk it in
+     */
+    AlbumCursor(Collection collection, SortOrder order){
+        this.collection = collection;
+        this.order = order;
+        this.query = null;
+    }
+
+    /**
+     * Parameterized constructor for a cursor over the albums that match a query, placed before the first of them
+     * @param collection: the collection to walk
+     * @param query: the query, whose matches are walked in release date order
+     */
+    AlbumCursor(Collection collection, AlbumQuery query){
+        this.collection = collection;
+        this.order = SortOrder.DATE;
+        this.query = query;
+    }
+
+    /**
+     * Prints the next albums of the listing, one per line without a header or footer
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to
+     * @return how many albums were printed
+     */
+    public int next(int count, OutputSink out){
+        return collection.fetch(this, count, out);
+    }
+
+    /**
+     * Getter method for the order
+     * @return order: the SortOrder the cursor walks
+     */
+    public SortOrder getOrder(){
+        return order;
+    }
+
+    /**
+     * Getter method for the query
+     * @return query: the AlbumQuery whose matches the cursor walks, or null if it walks every album
+     */
+    public AlbumQuery getQuery(){
+        return query;
+    }
+
+    /**
+     * Tells if the listing has been printed to its end
+     * @return true: no album is left after the cursor
+     */
+    public boolean isDone(){
+        return done;
+    }
+
+    AlbumEntry getBookmark(){
+        return bookmark;
+    }
+
+    /**
+     * Setter method for the bookmark, the cursor keeps a copy so later changes to the entry do not move it
+     * @param entry: the entry of the album printed last
+     */
+    void setBookmark(AlbumEntry entry){
+        this.bookmark = entry.copy();
+    }
+
+    int getRank(){
+        return rank;
+    }
+
+    void setRank(int rank){
+        this.rank = rank;
+    }
+
+    void setDone(boolean done){
+        this.done = done;
+    }
+}
@@ -0,0 +1,95 @@
+package album;
+/**
+ * The AlbumEntry class which holds the bookkeeping the Collection keeps for each album it stores
+ * The entry records where the album is in the albums array and what the sorted views last ordered it by
+ @author Rohan Sharma
+ */
+final class AlbumEntry {
+    private final Album album;
+    private final long sequence; //order the album was added in, breaks ties in the sorted views
+    private int position; //index of the album in the albums array
+    private double rankedAverage; //average rating the rating view currently orders the album by
+
+    /**
+     * Parameterized constructor for the AlbumEntry class
+     * @param album: the Album object the entry is for
+     * @param sequence: a number that is unique to the entry within its Collection and increases as albums are added
+     * @param position: the index of the album in the albums array
+     */
+    AlbumEntry(Album album, long sequence, int position){
+        this(album, sequence, position, album.avgRatings());
+    }
+
+    /**
+     * Parameterized constructor for the AlbumEntry class with the average rating to rank the album by,
+     * for ordering albums by counts that were read earlier
+     * @param album: the Album object the entry is for
+     * @param sequence: a number that is unique to the entry within its Collection and increases as albums are added
+     * @param position: the index of the album in the albums array
+     * @param rankedAverage: the average rating the rating order places the album by
+     */
+    AlbumEntry(Album album, long sequence, int position, double rankedAverage){
+        this.album = album;
+        this.sequence = sequence;
+        this.position = position;
+        this.rankedAverage = rankedAverage;
+    }
+
+    /**
+     * Creates an entry with the same album, sequence, position and ranked average, which keeps its place in the views
+     * while this one moves, for a cursor to resume from
+     * @return the copy
+     */
+    AlbumEntry copy(){
+        return new AlbumEntry(album, sequence, position, rankedAverage);
+    }
+
+    /**
+     * Getter method for the album
+     * @return album: the Album object the entry is for
+     */
+    Album getAlbum(){
+        return album;
+    }
+
+    /**
+     * Getter method for the sequence number
+     * @return sequence: a long that orders entries by when they were added
+     */
+    long getSequence(){
+        return sequence;
+    }
+
+    /**
+     * Getter method for the position
+     * @return position: the index of the album in the albums array
+     */
+    int getPosition(){
+        return position;
+    }
+
+    /**
+     * Setter method for the position, used when the album moves in the albums array
+     * @param position: the new index of the album in the albums array
+     */
+    void setPosition(int position){
+        this.position = position;
+    }
+
+    /**
+     * Getter method for the average rating the rating view orders the album by
+     * The value only changes through refreshRankedAverage, so it is stable while the entry is in the view
+     * @return rankedAverage: a double
+     */
+    double getRankedAverage(){
+        return rankedAverage;
+    }
+
+    /**
+     * Copies the album's current average rating into the entry
+     * Must only be called while the entry is out of the rating view
+     */
+    void refreshRankedAverage(){
+        this.rankedAverage = album.avgRatings();
+    }
+}
@@ -0,0 +1,134 @@
+package album;
+/**
+ * The AlbumKey class which holds the identity of an album for the Collection index
+ * Two albums have equal keys when their titles and artist names are equal ignoring case and the artists have the same birthdate,
+ * which is the same rule Collection used when it scanned the albums array
+ @author Rohan Sharma
+ */
+final class AlbumKey {
+    private static final int HASH_MULTIPLIER = 31;
+    private final String title;
+    private final String artistName;
+    private final int bornYear;
+    private final int bornMonth;
+    private final int bornDay;
+    private final int hash;
+
+    /**
+     * Parameterized constructor for the AlbumKey class which folds the case of the title and artist name once
+     * @param title: the title of the album
+     * @param artistName: the name of the artist
+     * @param born: the birthdate of the artist
+     */
+    AlbumKey(String title, String artistName, Date born){
+        this.title = fold(title);
+        this.artistName = fold(artistName);
+        this.bornYear = born.get_year();
+        this.bornMonth = born.get_month();
+        this.bornDay = born.get_day();
+        this.hash = hash(this.title, this.artistName, bornYear, bornMonth, bornDay);
+    }
+
+    /**
+     * Constructor for the key of an album from its folded title and the key of its artist,
+     * which shares the folded name the artist key already holds instead of folding the name again
+     * @param title: the folded title of the album
+     * @param artist: the key of the artist, see ofArtist
+     */
+    private AlbumKey(String title, AlbumKey artist){
+        this.title = title;
+        this.artistName = artist.artistName;
+        this.bornYear = artist.bornYear;
+        this.bornMonth = artist.bornMonth;
+        this.bornDay = artist.bornDay;
+        this.hash = hash(title, artistName, bornYear, bornMonth, bornDay);
+    }
+
+    /**
+     * Creates the key of an album from its title and artist
+     * Only the title is folded, the artist name is taken folded from the key the artist keeps,
+     * so the keys of every album by an artist shared through an ArtistRegistry hold one folded name
+     * @param album: an Album object with a title and an artist
+     * @return AlbumKey: the identity of the album
+     */
+    static AlbumKey of(Album album){
+        return new AlbumKey(fold(album.getTitle()), album.getArtist().getKey());
+    }
+
+    /**
+     * Gives the key of an artist, an AlbumKey with an empty title, which two artists share exactly when albums by them
+     * with the same title would be the same album, the artist keeps it once it is created
+     * @param artist: an Artist object
+     * @return AlbumKey: the identity of the artist
+     */
+    static AlbumKey ofArtist(Artist artist){
+        return artist.getKey();
+    }
+
+    /**
+     * Folds the case of a string the same way String.equalsIgnoreCase compares characters,
+     * upper case first and then lower case, so two strings fold to the same value exactly when they are equal ignoring case
+     * @param text: the string to fold
+     * @return String: the folded string
+     */
+    static String fold(String text){
+        StringBuilder folded = null;
+        int length = text.length();
+        for(int i = 0; i < length; i++){
+            char c = text.charAt(i);
+            char f = Character.toLowerCase(Character.toUpperCase(c));
+            if(f != c && folded == null){
+                folded = new StringBuilder(length);
+                folded.append(text, 0, i);
+            }
+            if(folded != null){
+                folded.append(f);
+            }
+        }
+        if(folded == null){
+            return text;
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Helper method that hashes the folded fields of a key
+     * @return an int hash of the folded title, folded artist name and birthdate
+     */
+    private static int hash(String title, String artistName, int bornYear, int bornMonth, int bornDay){
+        int h = title.hashCode();
+        h = HASH_MULTIPLIER * h + artistName.hashCode();
+        h = HASH_MULTIPLIER * h + bornYear;
+        h = HASH_MULTIPLIER * h + bornMonth;
+        h = HASH_MULTIPLIER * h + bornDay;
+        return h;
+    }
+
+    /**
+     * Determines if two keys identify the same album
+     * @param obj: cast to an AlbumKey object later if it is an AlbumKey object
+     * @return true: the keys identify the same album
+     * @return false: the keys identify different albums
+     */
+    @Override
+    public boolean equals(Object obj){
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        AlbumKey other = (AlbumKey) obj;
+        return hash == other.hash && bornYear == other.bornYear && bornMonth == other.bornMonth && bornDay == other.bornDay
+                && title.equals(other.title) && artistName.equals(other.artistName);
+    }
+
+    /**
+     * The hash code is computed once in the constructor since the key is immutable
+     * @return hash: an int hash of the folded title, folded artist name and birthdate
+     */
+    @Override
+    public int hashCode(){
+        return hash;
+    }
+}
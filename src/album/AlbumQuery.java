@@ -0,0 +1,102 @@
+package album;
+/**
+ * The AlbumQuery class which describes the albums a filtered listing prints: the albums of one genre, of one artist,
+ * or every album, each optionally only those released in a range of dates
+ * The albums are listed by release date and title, the same order as printByDate, and the Collection answers the query
+ * from an index of the genre or artist, or from the release date view, so it reads only the albums it prints and a few more
+ @author Rohan Sharma
+ */
+public final class AlbumQuery {
+    private final Genre genre; //null for any genre
+    private final Artist artist; //null for any artist
+    private final Date from; //first release date listed, null for no bound
+    private final Date to; //last release date listed, null for no bound
+
+    /**
+     * Parameterized constructor for the AlbumQuery class
+     * @param genre: the genre of the albums, or null
+     * @param artist: the artist of the albums, or null, only used when genre is null
+     * @param from: the first release date listed, or null
+     * @param to: the last release date listed, or null
+     */
+    private AlbumQuery(Genre genre, Artist artist, Date from, Date to){
+        this.genre = genre;
+        this.artist = artist;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Creates a query for the albums of a genre
+     * @param genre: the genre
+     * @return the query
+     */
+    public static AlbumQuery ofGenre(Genre genre){
+        return new AlbumQuery(genre, null, null, null);
+    }
+
+    /**
+     * Creates a query for the albums of an artist, matched the same way albums are, by name ignoring case and date of birth
+     * @param artist: the artist
+     * @return the query
+     */
+    public static AlbumQuery ofArtist(Artist artist){
+        return new AlbumQuery(null, artist, null, null);
+    }
+
+    /**
+     * Creates a query for every album released in a range of dates
+     * @param from: the first release date listed
+     * @param to: the last release date listed
+     * @return the query
+     */
+    public static AlbumQuery releasedBetween(Date from, Date to){
+        return new AlbumQuery(null, null, from, to);
+    }
+
+    /**
+     * Creates a query for the albums of this query that were released in a range of dates
+     * @param from: the first release date listed
+     * @param to: the last release date listed
+     * @return the new query
+     */
+    public AlbumQuery released(Date from, Date to){
+        return new AlbumQuery(genre, artist, from, to);
+    }
+
+    public Genre getGenre(){
+        return genre;
+    }
+
+    public Artist getArtist(){
+        return artist;
+    }
+
+    public Date getFrom(){
+        return from;
+    }
+
+    public Date getTo(){
+        return to;
+    }
+
+    /**
+     * Getter method for the header printed before the listing
+     * @return header: a string such as "* Jazz albums released 1/1/1960 to 12/31/1970 sorted by Released Date/Title *"
+     */
+    public String getHeader(){
+        StringBuilder header = new StringBuilder("* ");
+        if (genre != null) {
+            header.append(genre).append(" albums");
+        } else if (artist != null) {
+            artist.appendTo(header.append("Albums by "));
+        } else {
+            header.append("Albums");
+        }
+        if (from != null) {
+            from.appendTo(header.append(" released "));
+            to.appendTo(header.append(" to "));
+        }
+        return header.append(" sorted by Released Date/Title *").toString();
+    }
+}
@@ -0,0 +1,77 @@
+package album;
+import java.util.Arrays;
+import java.util.Comparator;
+/**
+ * The sort engine used by the Collection to order its albums
+ * Implementations must be stable so albums that are tied in an ordering keep their relative order
+ * @author Rohan Sharma
+ */
+public interface AlbumSorter {
+    /**
+     * Arrays of at least this many albums are sorted in parallel by the default engine
+     */
+    int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
+    /**
+     * A TimSort that finds runs that are already in order and merges them,
+     * so sorting an array that is already sorted is linear
+     */
+    AlbumSorter TIMSORT = (albums, from, to, order) -> Arrays.sort(albums, from, to, order);
+
+    /**
+     * The default engine, a TimSort for arrays below DEFAULT_PARALLEL_THRESHOLD albums and a parallel merge sort above it
+     */
+    AlbumSorter DEFAULT = parallelAbove(DEFAULT_PARALLEL_THRESHOLD);
+
+    /**
+     * Enums that tell how an engine sorts a range
+     */
+    enum Mode {
+        SEQUENTIAL,
+        PARALLEL
+    }
+
+    /**
+     * Sorts a range of an array of albums
+     * @param albums: an array holding Album objects
+     * @param from: the index of the first album to sort, inclusive
+     * @param to: the index of the last album to sort, exclusive
+     * @param order: the ordering to sort by
+     */
+    void sort(Album[] albums, int from, int to, Comparator<? super Album> order);
+
+    /**
+     * Tells how a range of a number of albums is sorted, an engine is sequential unless it says otherwise
+     * @param count: how many albums are in the range
+     * @return the Mode the range is sorted in
+     */
+    default Mode modeFor(int count){
+        return Mode.SEQUENTIAL;
+    }
+
+    /**
+     * Creates an engine that sorts ranges of at least a number of albums with Arrays.parallelSort and smaller ones with TIMSORT
+     * Arrays.parallelSort is a stable merge sort on the common fork/join pool, splitting the range into pieces that are each
+     * sorted with a TimSort, so it gives the same order as TIMSORT for any comparator, ties and NaN averages included
+     * The comparator is called from several threads at once, so the albums must not change while they are sorted
+     * @param threshold: the smallest range that is sorted in parallel
+     * @return the engine
+     */
+    static AlbumSorter parallelAbove(int threshold){
+        return new AlbumSorter() {
+            @Override
+            public void sort(Album[] albums, int from, int to, Comparator<? super Album> order){
+                if (modeFor(to - from) == Mode.PARALLEL) {
+                    Arrays.parallelSort(albums, from, to, order);
+                } else {
+                    TIMSORT.sort(albums, from, to, order);
+                }
+            }
+
+            @Override
+            public Mode modeFor(int count){
+                return count >= threshold ? Mode.PARALLEL : Mode.SEQUENTIAL;
+            }
+        };
+    }
+}
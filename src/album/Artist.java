@@ -12,6 +12,9 @@ public class Artist implements Comparable<Artist> {
     private static final int EQUAL = 0;
     private String name;
     private Date born;
+    private String firstNameKey; //lower case first word of the name, computed when the name is set
+    private String lastNameKey; //lower case last word of the name, computed when the name is set
+    private AlbumKey key; //identity of the artist for the artist index, computed when first asked for
 
     /**
     Parameterized constructor for the Artist class which creates an Artist object
@@ -28,10 +31,20 @@ public class Artist implements Comparable<Artist> {
     //Setters and Getters
     /**
     Setter method for the name instance variable
+    The first and last names compareTo uses are worked out here once instead of on every comparison
     @param name: a string value representing the artist's name
      */
     public void setName(String name){
         this.name = name;
+        this.key = null;
+        String[] words = name == null ? new String[0] : SortKeys.words(name);
+        if(words.length == 0){
+            this.firstNameKey = "";
+            this.lastNameKey = "";
+        } else {
+            this.firstNameKey = words[firstNameIndex];
+            this.lastNameKey = words[words.length - 1];
+        }
     }
     /**
     Getter method for the name instance variable
@@ -46,6 +59,7 @@ public class Artist implements Comparable<Artist> {
      */
     public void setBorn(Date born){
         this.born = born;
+        this.key = null;
     }
     /**
     Getter method for the Date object
@@ -55,7 +69,32 @@ public class Artist implements Comparable<Artist> {
         return this.born;
     }
     /**
+    Getter method for the lower case first word of the name, computed when the name is set
+    @return firstNameKey: a string
+     */
+    String getFirstNameKey(){
+        return this.firstNameKey;
+    }
+    /**
+    Getter method for the lower case last word of the name, computed when the name is set
+    @return lastNameKey: a string
+     */
+    String getLastNameKey(){
+        return this.lastNameKey;
+    }
+    /**
+    Getter method for the identity of the artist, folded once and kept, so artists shared through an ArtistRegistry fold their name once
+    @return key: the AlbumKey of the artist, see AlbumKey.ofArtist
+     */
+    AlbumKey getKey(){
+        if(this.key == null){
+            this.key = new AlbumKey("", this.name, this.born);
+        }
+        return this.key;
+    }
+    /**
     A method the compares two Artist objects to determine their relationship in terms of name and then birthdate if name is the same
+    The lower case first and last names computed by setName are compared, so nothing is split or allocated
     @param Artist otherArtist: Another Artist object meant to be compared with the Artist object calling the method
     @return -1: The Artist object calling the method's name comes before the other artist's name or in the case of a name tie, their date of birth is earlier
     @return 0: The Artist object calling the method's name and date of birth is the same as the other artist's name
@@ -63,27 +102,12 @@ public class Artist implements Comparable<Artist> {
      */
     @Override
     public int compareTo(Artist otherArtist){
-        String thisName = this.getName();
-        String otherName = otherArtist.getName();
-
-        String[] thisNameArr = thisName.split("\\s+");
-        String[] otherNameArr = otherName.split("\\s+");
-
-        String thisFirstName = thisNameArr[firstNameIndex].toLowerCase();
-        String otherFirstName = otherNameArr[firstNameIndex].toLowerCase();
-
-        int thisLastNameIndex = thisNameArr.length - 1;
-        int otherLastNameIndex = otherNameArr.length - 1;
-
-        String thisLastName = thisNameArr[thisLastNameIndex].toLowerCase();
-        String otherLastName = otherNameArr[otherLastNameIndex].toLowerCase();
-
-        int firstNameComparison = acsiiComparison(thisFirstName,otherFirstName);
+        int firstNameComparison = acsiiComparison(this.firstNameKey, otherArtist.firstNameKey);
         if(firstNameComparison != EQUAL){
             return firstNameComparison;
         }
 
-        int lastNameComparison = acsiiComparison(thisLastName, otherLastName);
+        int lastNameComparison = acsiiComparison(this.lastNameKey, otherArtist.lastNameKey);
         if (lastNameComparison != EQUAL){
             return lastNameComparison;
         }
@@ -145,10 +169,16 @@ public class Artist implements Comparable<Artist> {
      */
     @Override
     public String toString(){
-        int day = this.getBorn().get_day();
-        int month = this.getBorn().get_month();
-        int year = this.getBorn().get_year();
-        return this.getName() + ":" + month + "/" + day + "/" + year;
+        return appendTo(new StringBuilder()).toString();
+    }
+    /**
+    Appends the artist formatted as "{artist's name}:{month}/{day}/{year}", used by toString and by output that is built without Strings
+    @param sb: the StringBuilder to append to
+    @return sb, so calls can be chained
+     */
+    public StringBuilder appendTo(StringBuilder sb){
+        sb.append(this.getName()).append(':');
+        return this.getBorn().appendTo(sb);
     }
 
     public static void main(String[] args){
@@ -0,0 +1,137 @@
+package album;
+/**
+The ArtistRegistry class which hands out one shared Artist object for each name and date of birth
+Albums by the same artist then share one Artist and one Date, and the artist's name sort keys are computed once
+An artist can be looked up straight from a char buffer, so finding an artist that is already registered creates no objects
+The shared artists must not be changed with setName or setBorn, since every album by the artist would see the change
+@author Rohan Sharma
+ */
+public class ArtistRegistry {
+    private static final int INITIAL_CAPACITY = 16; //a power of two
+    private static final int HASH_MULTIPLIER = 31;
+    private Artist[] table; //open addressing table with linear probing
+    private int size;
+
+    /**
+    Constructor for the ArtistRegistry class which starts with no artists
+     */
+    public ArtistRegistry(){
+        this.table = new Artist[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+    Getter method for the number of artists registered
+    @return size: an int
+     */
+    public int getSize(){
+        return size;
+    }
+
+    /**
+    Finds the registered artist with a name given as a range of a char buffer and a date of birth given as its fields
+    @param chars: the buffer holding the name
+    @param offset: the index of the first char of the name
+    @param length: the number of chars in the name
+    @param year: the year the artist was born
+    @param month: the month the artist was born
+    @param day: the day the artist was born
+    @return the shared Artist, or null if no artist with that exact name and date of birth is registered
+     */
+    public Artist find(char[] chars, int offset, int length, int year, int month, int day){
+        int hash = HASH_MULTIPLIER * nameHash(chars, offset, length) + dateHash(year, month, day);
+        int mask = table.length - 1;
+        for(int i = HashTables.spread(hash) & mask; table[i] != null; i = (i + 1) & mask){
+            Artist artist = table[i];
+            if(sameBorn(artist.getBorn(), year, month, day) && sameName(artist.getName(), chars, offset, length)){
+                return artist;
+            }
+        }
+        return null;
+    }
+
+    /**
+    Returns the registered artist with the same name and date of birth, registering a new one if there is none
+    @param name: the name of the artist
+    @param born: the date of birth of the artist
+    @return the shared Artist
+     */
+    public Artist intern(String name, Date born){
+        int hash = HASH_MULTIPLIER * name.hashCode() + dateHash(born.get_year(), born.get_month(), born.get_day());
+        int mask = table.length - 1;
+        int i = HashTables.spread(hash) & mask;
+        for(; table[i] != null; i = (i + 1) & mask){
+            Artist artist = table[i];
+            if(sameBorn(artist.getBorn(), born.get_year(), born.get_month(), born.get_day()) && artist.getName().equals(name)){
+                return artist;
+            }
+        }
+        Artist artist = new Artist(name, born);
+        table[i] = artist;
+        size++;
+        if(size * 2 > table.length){
+            grow();
+        }
+        return artist;
+    }
+
+    /**
+    Helper method that doubles the table once it is half full and places every artist again
+     */
+    private void grow(){
+        Artist[] old = table;
+        table = new Artist[old.length * 2];
+        int mask = table.length - 1;
+        for(Artist artist : old){
+            if(artist != null){
+                Date born = artist.getBorn();
+                int hash = HASH_MULTIPLIER * artist.getName().hashCode() + dateHash(born.get_year(), born.get_month(), born.get_day());
+                int i = HashTables.spread(hash) & mask;
+                while(table[i] != null){
+                    i = (i + 1) & mask;
+                }
+                table[i] = artist;
+            }
+        }
+    }
+
+    /**
+    Helper method that hashes a range of chars the same way String.hashCode hashes a String with those chars
+     */
+    private static int nameHash(char[] chars, int offset, int length){
+        int hash = 0;
+        for(int i = offset; i < offset + length; i++){
+            hash = HASH_MULTIPLIER * hash + chars[i];
+        }
+        return hash;
+    }
+
+    /**
+    Helper method that hashes the fields of a date
+     */
+    private static int dateHash(int year, int month, int day){
+        return (year * HASH_MULTIPLIER + month) * HASH_MULTIPLIER + day;
+    }
+
+    /**
+    Helper method that tells if a date has the given fields
+     */
+    private static boolean sameBorn(Date born, int year, int month, int day){
+        return born.get_year() == year && born.get_month() == month && born.get_day() == day;
+    }
+
+    /**
+    Helper method that tells if a name has exactly the chars in a range of a buffer
+     */
+    private static boolean sameName(String name, char[] chars, int offset, int length){
+        if(name.length() != length){
+            return false;
+        }
+        for(int i = 0; i < length; i++){
+            if(name.charAt(i) != chars[offset + i]){
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,199 @@
+package album;
+import java.util.Arrays;
+import java.util.BitSet;
+/**
+ * The CatalogSnapshot class which holds the state of a Collection captured to be written as a MappedCatalog
+ * Capturing a Collection only copies its array of entries, so it is cheap for the thread that owns the collection,
+ * and resolve works out the rating counts and the orders on the thread that writes the file, while the collection keeps changing
+ * The counts of albums rated since the capture are the ones its FrozenRatings kept
+ * The albums are the ones the collection holds as objects, and for a MappedCollection the catalog it was opened on
+ * is captured too, with the records of it that were removed or replaced since
+ @author Rohan Sharma
+ */
+final class CatalogSnapshot {
+    private final MappedCatalog base;
+    private final BitSet removed;
+    private AlbumEntry[] entries; //entries captured in slot order with tombstones as null, null once resolved
+    private FrozenRatings ratings; //counts of the captured albums rated since, null once resolved
+    private Album[] albums; //albums in the order they were added
+    private long[] sequences; //sequence number of each album, null for a snapshot made from albums
+    private long[] starCounts;
+    private int[][] orders;
+
+    /**
+     * Parameterized constructor for the CatalogSnapshot class
+     * @param base: the catalog whose live records are part of the state, or null
+     * @param removed: the records of base that are not part of the state, or null if none are
+     * @param albums: the albums held as objects, in the order they were added
+     * @param starCounts: MAX_STAR rating counts for each album, from one star up, counted when the state was captured
+     * @param orders: for each SortOrder by ordinal, the indexes of the albums in that order
+     */
+    CatalogSnapshot(MappedCatalog base, BitSet removed, Album[] albums, long[] starCounts, int[][] orders){
+        this.base = base;
+        this.removed = removed;
+        this.albums = albums;
+        this.starCounts = starCounts;
+        this.orders = orders;
+    }
+
+    /**
+     * Parameterized constructor for a snapshot that resolve finishes later
+     * @param entries: a copy of the entries array of a Collection, tombstones included
+     * @param ratings: the FrozenRatings the collection keeps the counts of rated albums in until the snapshot is resolved
+     */
+    CatalogSnapshot(AlbumEntry[] entries, FrozenRatings ratings){
+        this.base = null;
+        this.removed = null;
+        this.entries = entries;
+        this.ratings = ratings;
+    }
+
+    /**
+     * Helper constructor of withBase that copies a snapshot, resolved or not
+     */
+    private CatalogSnapshot(CatalogSnapshot snapshot, MappedCatalog base, BitSet removed){
+        this.base = base;
+        this.removed = removed;
+        this.entries = snapshot.entries;
+        this.ratings = snapshot.ratings;
+        this.albums = snapshot.albums;
+        this.sequences = snapshot.sequences;
+        this.starCounts = snapshot.starCounts;
+        this.orders = snapshot.orders;
+    }
+
+    /**
+     * Creates a snapshot of the same albums on top of the live records of a catalog
+     * @param base: the catalog
+     * @param removed: the records of base that are not part of the state
+     * @return the new snapshot
+     */
+    CatalogSnapshot withBase(MappedCatalog base, BitSet removed){
+        return new CatalogSnapshot(this, base, removed);
+    }
+
+    /**
+     * Works out the albums, their rating counts and their place in each order from the captured entries,
+     * and releases the FrozenRatings, it does nothing if the snapshot is resolved already
+     * The albums are put in the order they were added, by sequence number, and sorted with the same comparisons as the sorted views of the Collection, the rating order by the captured counts,
+     * so each order is the one the collection listed when it was captured
+     * Must be called once, before the getters below, by the thread that writes the snapshot
+     */
+    void resolve(){
+        if (entries == null) {
+            return;
+        }
+        int size = 0;
+        for (AlbumEntry entry : entries) {
+            if (entry != null) {
+                entries[size++] = entry;
+            }
+        }
+        entries = Arrays.copyOf(entries, size);
+        Arrays.sort(entries, (one, two) -> Long.compare(one.getSequence(), two.getSequence()));
+        albums = new Album[size];
+        sequences = new long[size];
+        starCounts = new long[size * RatingStats.MAX_STAR];
+        AlbumEntry[] ranked = new AlbumEntry[size];
+        long[] counts = new long[RatingStats.MAX_STAR + 1];
+        int album = 0;
+        for (AlbumEntry entry : entries) {
+            ratings.read(entry, counts);
+            long sum = 0;
+            long count = 0;
+            for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+                starCounts[album * RatingStats.MAX_STAR + star - RatingStats.MIN_STAR] = counts[star];
+                sum += star * counts[star];
+                count += counts[star];
+            }
+            albums[album] = entry.getAlbum();
+            sequences[album] = entry.getSequence();
+            ranked[album] = new AlbumEntry(entry.getAlbum(), entry.getSequence(), album, RatingStats.average(sum, count));
+            album++;
+        }
+        ratings.release();
+        orders = new int[SortOrder.values().length][];
+        for (SortOrder order : SortOrder.values()) {
+            Arrays.sort(ranked, order::compareEntries);
+            int[] positions = new int[size];
+            for (int rank = 0; rank < size; rank++) {
+                positions[rank] = ranked[rank].getPosition();
+            }
+            orders[order.ordinal()] = positions;
+        }
+        entries = null;
+        ratings = null;
+    }
+
+    /**
+     * Captures the rating counts of albums
+     * @param albums: the albums
+     * @return MAX_STAR counts for each album, from one star up
+     */
+    static long[] countStars(Album[] albums){
+        long[] starCounts = new long[albums.length * RatingStats.MAX_STAR];
+        for (int i = 0; i < albums.length; i++) {
+            RatingStats stats = albums[i].getStats();
+            for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+                starCounts[i * RatingStats.MAX_STAR + star - RatingStats.MIN_STAR] = stats.getCount(star);
+            }
+        }
+        return starCounts;
+    }
+
+    MappedCatalog getBase(){
+        return base;
+    }
+
+    /**
+     * @param record: a record of the base catalog
+     * @return true if the record is not part of the state
+     */
+    boolean isRemoved(int record){
+        return removed != null && removed.get(record);
+    }
+
+    Album[] getAlbums(){
+        return albums;
+    }
+
+    /**
+     * @param album: the index of an album
+     * @return the sequence number the album had in its collection, its index for a snapshot made from albums
+     */
+    long getSequence(int album){
+        return sequences == null ? album : sequences[album];
+    }
+
+    /**
+     * @param album: the index of an album
+     * @param star: a star from 1 to 5
+     * @return how many ratings of that star the album had when the state was captured
+     */
+    long getStarCount(int album, int star){
+        return starCounts[album * RatingStats.MAX_STAR + star - RatingStats.MIN_STAR];
+    }
+
+    /**
+     * @param album: the index of an album
+     * @return the average rating the album had when the state was captured, 0.0 if it had none
+     */
+    double getAverage(int album){
+        long sum = 0;
+        long count = 0;
+        for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+            long stars = getStarCount(album, star);
+            sum += star * stars;
+            count += stars;
+        }
+        return count == 0 ? 0.0 : (double) sum / count;
+    }
+
+    /**
+     * @param order: a SortOrder
+     * @return the indexes of the albums in that order
+     */
+    int[] getOrder(SortOrder order){
+        return orders[order.ordinal()];
+    }
+}
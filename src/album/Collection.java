@@ -1,22 +1,55 @@
 package album;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.TreeSet;
 /**
  * The Collection class which creates an array to store the Album objects
  * Has the functionality of sorting, rating, adding, and removing albums in the array
+ * Sorting is done by a pluggable stable sort engine, TimSort by default
+ * Albums are also indexed by their identity (title, artist name, artist birthdate) so lookups do not scan the array
+ * A sorted view is kept for each SortOrder and updated on add, remove and rate, so printing walks a view instead of sorting
+ * and the albums array stays in the order the albums were added
+ * Removing an album leaves a tombstone (a null slot) instead of shifting the albums after it, and the array is compacted
+ * once the share of tombstones passes the compaction threshold
  @author Rohan Sharma
  */
 
 public class Collection {
-    private Album[] albums; //list of albums
-    private int size;
+    private Album[] albums; //list of albums, removed albums leave null tombstones until the array is compacted
+    private AlbumEntry[] entries; //entry of the album in the same slot of the albums array
+    private int size; //number of albums in the collection
+    private int end; //number of slots used in the albums array, albums and tombstones
+    private double compactionThreshold; //share of used slots that may be tombstones before compacting
+    private HashMap<AlbumKey, AlbumEntry> lookup; //album identity to its entry
+    private EnumMap<SortOrder, TreeSet<AlbumEntry>> views; //entries in each of the orderings
+    private EnumMap<Genre, TreeSet<AlbumEntry>> genreIndex; //entries of each genre by release date and title, null until the first query by genre
+    private HashMap<AlbumKey, TreeSet<AlbumEntry>> artistIndex; //entries of each artist by release date and title, by AlbumKey.ofArtist, null until the first query by artist
+    private long nextSequence; //sequence number given to the next album added
+    private AlbumSorter sorter; //sort engine used by the sort method
+    private AlbumSorter.Mode lastSortMode; //how the last sort was done, null before the first
+    private OutputSink out; //where the print methods write
+    private volatile FrozenRatings frozenRatings; //rating counts kept for the last capture, null before the first capture
 
     public static final int INITIAL_CAPACITY = 4;
-    public static final int ARRAY_GROWTH_SIZE = 4;
+    public static final int ALL = Integer.MAX_VALUE; //limit of a print that lists every album
+    public static final int ARRAY_GROWTH_SIZE = 4; //smallest number of slots added when the array grows
+    private static final float LOAD_FACTOR = 0.75f; //default load factor of the lookup table
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.25;
 
     public static final int NOT_FOUND = -1;
 
-    private static final int COMES_BEFORE = -1;
-    private static final int EQUAL = 0;
-
 
     /**
      * Constructor for the collection class that initializes the array to store albums, named albums
@@ -24,15 +57,45 @@ public class Collection {
      * The size of the array is initially set to 0 because the array does not yet house any album objects
      */
     public Collection(){
-        this.albums = new Album[INITIAL_CAPACITY];
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor for the collection class that sizes the albums array and the lookup table for an expected number of albums
+     * Useful when the number of albums about to be loaded is known, so neither has to grow while they are added
+     * @param expectedSize: how many albums the collection is expected to hold
+     */
+    public Collection(int expectedSize){
+        int capacity = Math.max(expectedSize, INITIAL_CAPACITY);
+        this.albums = new Album[capacity];
+        this.entries = new AlbumEntry[capacity];
         this.size = 0;
+        this.end = 0;
+        this.compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+        this.lookup = new HashMap<>((int) (capacity / LOAD_FACTOR) + 1);
+        this.views = new EnumMap<>(SortOrder.class);
+        for(SortOrder order : SortOrder.values()){
+            views.put(order, new TreeSet<>(order::compareEntries));
+        }
+        this.nextSequence = 0;
+        this.sorter = AlbumSorter.DEFAULT;
+        this.out = new OutputSink(System.out, OutputSink.UNBUFFERED);
     }
 
     //Setters and Getters
 
+    /**
+     * Setter method for the sequence number given to the next album added
+     * Useful for a subclass that holds albums outside the array, so they can be given the numbers below it
+     * @param nextSequence: a long greater than the sequence number of every album in the collection
+     */
+    void setNextSequence(long nextSequence){
+        this.nextSequence = nextSequence;
+    }
+
     /**
      * Getter method for the size variable
-     * Useful for determining the stopping point of for loops iterating through the albums array
+     * Useful for determining the stopping point of for loops iterating through the array returned by getAlbums
      * @return size: an int representing how many albums are in the array, not the length of the array
      */
     public int getSize(){
@@ -41,29 +104,188 @@ public class Collection {
 
     /**
      * Setter method for the size variable
-     * Useful when the albums array's capacity needs to be incremented by 4
-     * @param size: an integer value representing how many albums are in the albums array
+     * The lookup table and the sorted views are rebuilt because the set of albums in use has changed
+     * @param size: an integer value representing how many slots of the albums array are in use
      */
     public void setSize(int size){
-        this.size = size;
+        this.end = size;
+        rebuildIndex();
     }
 
     /**
      * Getter method for the Album[] albums data structure
      * Important in accessing the albums because iterating through the array is the only way to directly access them
+     * The array is compacted first, so the first getSize() slots hold every album and none of them is a tombstone
      * @return albums: an array of type Album holding all the albums added
      */
     public Album[] getAlbums(){
+        compactSlots();
         return this.albums;
     }
 
     /**
      * Setter method for Album[] albums data structure
-     * Useful in updating the albums variable after the capacity is increased by 4
+     * Useful in replacing all of the albums at once
+     * The lookup table and the sorted views are rebuilt because the array may hold different albums
      * @param albums: an array of type Album
      */
     public void setAlbums(Album[] albums) {
         this.albums = albums;
+        this.end = Math.min(end, albums.length);
+        rebuildIndex();
+    }
+
+    /**
+     * Getter method for the compaction threshold
+     * @return compactionThreshold: the share of used slots that may be tombstones before the array is compacted
+     */
+    public double getCompactionThreshold(){
+        return this.compactionThreshold;
+    }
+
+    /**
+     * Setter method for the compaction threshold
+     * A lower threshold keeps the array dense, a higher one makes bursts of removals cheaper
+     * @param compactionThreshold: a double from 0 up to but not including 1, 0 compacts after every removal
+     * @throws IllegalArgumentException if the threshold is negative, 1 or more, or NaN
+     */
+    public void setCompactionThreshold(double compactionThreshold){
+        if (!(compactionThreshold >= 0 && compactionThreshold < 1)) {
+            throw new IllegalArgumentException("Compaction threshold " + compactionThreshold + " is not from 0 up to 1");
+        }
+        this.compactionThreshold = compactionThreshold;
+        compactIfNeeded();
+    }
+
+    /**
+     * Rebuilds the lookup table and the sorted views from the albums currently in the array
+     * Used when the array or the size is replaced from outside the class, the array is compacted as it is scanned
+     */
+    private void rebuildIndex(){
+        lookup.clear();
+        for(TreeSet<AlbumEntry> view : views.values()){
+            view.clear();
+        }
+        genreIndex = null;
+        artistIndex = null;
+        if(entries.length != albums.length){
+            entries = new AlbumEntry[albums.length];
+        }
+        int live = 0;
+        for(int i = 0; i < end; i++){
+            Album album = albums[i];
+            if(album == null){
+                continue;
+            }
+            AlbumKey key = AlbumKey.of(album);
+            if(!lookup.containsKey(key)){
+                AlbumEntry entry = new AlbumEntry(album, nextSequence++, live);
+                lookup.put(key, entry);
+                addToViews(entry);
+                albums[live] = album;
+                entries[live] = entry;
+                live++;
+            }
+        }
+        Arrays.fill(albums, live, end, null);
+        Arrays.fill(entries, live, entries.length, null);
+        this.size = live;
+        this.end = live;
+    }
+
+    /**
+     * A method that removes the tombstones from the albums array by sliding the albums after them down
+     * The albums keep their order, and the method does nothing if there are no tombstones
+     */
+    public void compact(){
+        compactSlots();
+    }
+
+    /**
+     * Helper method that does the work of compact, called directly by the other methods of the class
+     * so a subclass that guards compact is not entered twice
+     */
+    private void compactSlots(){
+        if(end == size){
+            return;
+        }
+        int live = 0;
+        for(int i = 0; i < end; i++){
+            if(albums[i] != null){
+                if(i != live){
+                    albums[live] = albums[i];
+                    entries[live] = entries[i];
+                    entries[live].setPosition(live);
+                }
+                live++;
+            }
+        }
+        Arrays.fill(albums, live, end, null);
+        Arrays.fill(entries, live, end, null);
+        this.end = live;
+    }
+
+    /**
+     * Helper method that compacts the albums array once the share of tombstones passes the compaction threshold
+     */
+    private void compactIfNeeded(){
+        int dead = end - size;
+        if(dead > 0 && dead > end * compactionThreshold){
+            compactSlots();
+        }
+    }
+
+    /**
+     * Helper method that inserts an entry into every sorted view and into the genre and artist indexes that have been built
+     * @param entry: the AlbumEntry of an album being added
+     */
+    private void addToViews(AlbumEntry entry){
+        for(TreeSet<AlbumEntry> view : views.values()){
+            view.add(entry);
+        }
+        if(genreIndex != null){
+            indexGenre(entry);
+        }
+        if(artistIndex != null){
+            indexArtist(entry);
+        }
+    }
+
+    /**
+     * Helper method that takes an entry out of every sorted view and out of the genre and artist indexes that have been built
+     * @param entry: the AlbumEntry of an album being removed
+     */
+    private void removeFromViews(AlbumEntry entry){
+        for(TreeSet<AlbumEntry> view : views.values()){
+            view.remove(entry);
+        }
+        Album album = entry.getAlbum();
+        if(genreIndex != null){
+            genreIndex.get(album.getGenre()).remove(entry);
+        }
+        if(artistIndex != null){
+            AlbumKey artist = AlbumKey.ofArtist(album.getArtist());
+            TreeSet<AlbumEntry> byArtist = artistIndex.get(artist);
+            byArtist.remove(entry);
+            if(byArtist.isEmpty()){
+                artistIndex.remove(artist);
+            }
+        }
+    }
+
+    /**
+     * Helper method that adds an entry to the bucket of its genre
+     */
+    private void indexGenre(AlbumEntry entry){
+        genreIndex.computeIfAbsent(entry.getAlbum().getGenre(), genre -> new TreeSet<>(SortOrder.DATE::compareEntries)).add(entry);
+    }
+
+    /**
+     * Helper method that adds an entry to the albums of its artist
+     */
+    private void indexArtist(AlbumEntry entry){
+        AlbumKey artist = AlbumKey.ofArtist(entry.getAlbum().getArtist());
+        artistIndex.computeIfAbsent(artist, key -> new TreeSet<>(SortOrder.DATE::compareEntries)).add(entry);
     }
 
 
@@ -74,15 +296,7 @@ public class Collection {
      * @return false: the album does not exist in the albums array
      */
     public boolean contains(Album album){
-        for(int i = 0; i < getSize(); i++) {
-            boolean title = album.getTitle().equalsIgnoreCase(albums[i].getTitle());
-            boolean artistName = album.getArtist().getName().equalsIgnoreCase(albums[i].getArtist().getName());
-            int artistDate = album.getArtist().getBorn().compareTo(albums[i].getArtist().getBorn());
-            if(title && artistName && artistDate == 0) {
-                return true;
-            }
-        }
-        return false;
+        return lookup.containsKey(AlbumKey.of(album));
     }
 
     /**
@@ -92,48 +306,104 @@ public class Collection {
      * @return false: the album already exists in the array and was not added
      */
     public boolean add(Album album){
-        if(this.contains(album)){
+        if(!add(album, nextSequence)){
             return false;
         }
-        int albumsArrayLength = this.getAlbums().length;
-        if(this.getSize() == albumsArrayLength){
-            this.grow();
+        nextSequence++;
+        return true;
+    }
+
+    /**
+     * Adds an album with a sequence number chosen by a subclass, so the album keeps its place among the albums it is tied with
+     * @param album: an album object
+     * @param sequence: a sequence number no other album of the collection has
+     * @return true: the album does not already exist in the array and was added
+     */
+    boolean add(Album album, long sequence){
+        AlbumKey key = AlbumKey.of(album);
+        if(lookup.containsKey(key)){
+            return false;
         }
-        this.getAlbums()[getSize()] = album;
-        setSize(getSize() + 1);
+        if(end == albums.length){
+            this.grow(end + 1);
+        }
+        AlbumEntry entry = new AlbumEntry(album, sequence, end);
+        albums[end] = album;
+        entries[end] = entry;
+        lookup.put(key, entry);
+        addToViews(entry);
+        end++;
+        size++;
         return true;
     }
 
+    /**
+     * A method to add a batch of albums at once, albums already in the collection or repeated in the batch are not added
+     * The batch is deduplicated in one pass and the albums accepted are copied into the albums array with a single copy
+     * @param batch: an array of Album objects
+     * @return added: how many albums from the batch were added
+     */
+    public int addAll(Album[] batch){
+        Album[] accepted = new Album[batch.length];
+        AlbumEntry[] acceptedEntries = new AlbumEntry[batch.length];
+        int added = 0;
+        for(Album album : batch){
+            AlbumKey key = AlbumKey.of(album);
+            if(!lookup.containsKey(key)){
+                AlbumEntry entry = new AlbumEntry(album, nextSequence++, end + added);
+                lookup.put(key, entry);
+                addToViews(entry);
+                accepted[added] = album;
+                acceptedEntries[added] = entry;
+                added++;
+            }
+        }
+        if(end + added > albums.length){
+            this.grow(end + added);
+        }
+        System.arraycopy(accepted, 0, albums, end, added);
+        System.arraycopy(acceptedEntries, 0, entries, end, added);
+        end += added;
+        size += added;
+        return added;
+    }
+
+    /**
+     * A method that makes sure the albums array can hold a number of albums without growing
+     * @param minCapacity: how many slots the array must have, tombstones included
+     */
+    public void ensureCapacity(int minCapacity){
+        if(minCapacity > albums.length){
+            this.grow(minCapacity);
+        }
+    }
+
     /**
      * A method used to grow the capacity of the albums array once it is full
-     * The capacity is increased by 4 stored as the constant ARRAY_GROWTH_SIZE
+     * The capacity grows by half of its current length, and by at least ARRAY_GROWTH_SIZE, so adding n albums copies O(n) albums in total
      * It is a helper method of the add method
+     * @param minCapacity: the smallest capacity the array must have after growing
      */
-    private void grow(){
-        //this.setAlbums(Arrays.copyOf(this.getAlbums(), this.getSize() + ARRAY_GROWTH_SIZE));
-        Album[] expandedAlbums = new Album[this.getSize() + ARRAY_GROWTH_SIZE];
-        for(int i = 0; i < getSize(); i++){
-            expandedAlbums[i] = getAlbums()[i];
-        }
-        setAlbums(expandedAlbums);
+    private void grow(int minCapacity){
+        int capacity = albums.length + Math.max(albums.length >> 1, ARRAY_GROWTH_SIZE);
+        capacity = Math.max(capacity, minCapacity);
+        this.albums = Arrays.copyOf(albums, capacity);
+        this.entries = Arrays.copyOf(entries, capacity);
     }
 
     /**
      * A helper method of the rate and remove class used to find the specific album object inputted
+     * The lookup table is used so the albums array is not scanned
      * @param album: an Album object
      * @return i: returns the index that the album is located at in the albums array
      * @return NOT_FOUND: a constant representing -1, meaning the album does not exist in the arrau
      */
     private int find(Album album){
-        for(int i = 0; i < getSize(); i++) {
-            boolean title = album.getTitle().equalsIgnoreCase(albums[i].getTitle());
-            boolean artistName = album.getArtist().getName().equalsIgnoreCase(albums[i].getArtist().getName());
-            int artistDate = album.getArtist().getBorn().compareTo(albums[i].getArtist().getBorn());
-            if(title && artistName && artistDate == 0) {
-                return i;
-            }
+        AlbumEntry entry = lookup.get(AlbumKey.of(album));
+        if(entry == null){
+            return NOT_FOUND;
         }
-        return NOT_FOUND;
+        return entry.getPosition();
     }
 
     public Album returnAlbum(Album album) {
@@ -146,181 +416,631 @@ public class Collection {
     }
     /**
      * A method that removes the inputted album from the albums array if it is present
+     * The slot of the album becomes a tombstone, so no other album moves unless the removal triggers a compaction
      * @param album: an Album object
      * @return true: the album existed in the albums array and was removed
      * @return false: the album does not exist in the albums array
      */
     public boolean remove(Album album){
-        Album[] albums = this.getAlbums();
-        int size = this.getSize();
-        if(this.contains(album)){
-            int index = this.find(album);
-            if(index == size - 1){
-                albums[index] = null;
-            }
-            else{
-                for(int i = index; i < size - 1; i++){
-                    albums[i] = albums[i + 1];
-                }
-                albums[size - 1] = null;
-            }
-            this.setSize(size - 1);
-            return true;
+        AlbumEntry entry = lookup.remove(AlbumKey.of(album));
+        if(entry == null){
+            return false;
+        }
+        removeFromViews(entry);
+        int position = entry.getPosition();
+        albums[position] = null;
+        entries[position] = null;
+        size--;
+        while(end > 0 && albums[end - 1] == null){
+            end--;
         }
-        return false;
+        compactIfNeeded();
+        return true;
     }
 
     /**
      * A method that assigns a rating to an album if it exists in the albums array
+     * The album is taken out of the rating view while its average changes and put back in its new place
      * @param album: an Album object
      * @param rating: an int ranging from 1 to 5
      */
     public void rate(Album album, int rating){
-        if(this.contains(album)){
-            int index = this.find(album);
-            this.getAlbums()[index].rate(rating);
+        AlbumEntry entry = lookup.get(AlbumKey.of(album));
+        if(entry != null){
+            TreeSet<AlbumEntry> ratingView = views.get(SortOrder.RATING);
+            ratingView.remove(entry);
+            keepRatings(entry);
+            entry.getAlbum().rate(rating);
+            entry.refreshRankedAverage();
+            ratingView.add(entry);
         }
     }
 
     /**
-     * A method that implements the selection sort algorithm prioritizing the average rating
-     * If average rating is equal then the title is used to break the tie
-     * @param albums: an array holding Album objects
+     * Keeps the rating counts of an album for the snapshot captured last, before the album is rated
+     * The counts are only copied if that snapshot has not read them yet
+     * @param entry: the AlbumEntry of the album about to be rated
      */
-    public void selectionSortRating(Album[] albums){
-        int lastIndexOfArray = getSize() - 1;
-
-        for(int i = 0; i < lastIndexOfArray ; i++){
-            Album max = albums[i];
-            int indexOfMax = i;
-            for(int j = i + 1; j < getSize(); j++){
-                Album currentAlbum = albums[j];
-                boolean currentAlbumRatingsGreaterThanMax = currentAlbum.avgRatings() > max.avgRatings();
-                boolean ratingsEqualButTitleComesBefore = currentAlbum.avgRatings() == max.avgRatings() && currentAlbum.compareTitles(max) == COMES_BEFORE;
-                boolean maxRatingsNaNAndCurrentAlbumRatingsNotNaN = Double.isNaN(max.avgRatings()) && !Double.isNaN(currentAlbum.avgRatings());
-                boolean bothRatingsNaNAndTitleComesBefore = Double.isNaN(max.avgRatings()) && Double.isNaN(currentAlbum.avgRatings()) && currentAlbum.compareTitles(max) == COMES_BEFORE;
+    void keepRatings(AlbumEntry entry){
+        FrozenRatings ratings = frozenRatings;
+        if (ratings != null) {
+            ratings.keep(entry);
+        }
+    }
 
-                if(currentAlbumRatingsGreaterThanMax || ratingsEqualButTitleComesBefore ||
-                        maxRatingsNaNAndCurrentAlbumRatingsNotNaN || bothRatingsNaNAndTitleComesBefore)
-                {
-                    max = currentAlbum;
-                    indexOfMax = j;
-                    }
-                }
-            swap(albums, i, indexOfMax);
-            }
+    /**
+     * Getter method for the entry of an album, for subclasses that change an album without going through the methods above
+     * @param album: an Album object
+     * @return the AlbumEntry of the equal album in the collection, or null if there is none
+     */
+    AlbumEntry entryOf(Album album){
+        return lookup.get(AlbumKey.of(album));
+    }
 
+    /**
+     * Moves an entry to the place in the rating view of its album's current average, for albums rated without rate
+     * The entry is left alone if it is no longer in the collection
+     * @param entry: an AlbumEntry of the collection
+     */
+    void rerank(AlbumEntry entry){
+        int position = entry.getPosition();
+        if(position >= entries.length || entries[position] != entry){
+            return;
         }
+        TreeSet<AlbumEntry> ratingView = views.get(SortOrder.RATING);
+        ratingView.remove(entry);
+        entry.refreshRankedAverage();
+        ratingView.add(entry);
+    }
+
     /**
-     * A method that implements the selection sort algorithm prioritizing the Genre
-     * If Genre is equal then the artist is used to break the tie
-     * @param albums: an array holding Album objects
+     * Getter method for the sort engine
+     * @return sorter: the AlbumSorter used to order the albums array
      */
-    public void selectionSortGenre(Album[] albums){
-        int lastIndexOfArray = getSize() - 1;
+    public AlbumSorter getSorter(){
+        return this.sorter;
+    }
 
-        for(int i = 0; i < lastIndexOfArray ; i++){
-            Album max = albums[i];
-            int indexOfMax = i;
-            for(int j = i + 1; j < getSize(); j++){
-                Album currentAlbum = albums[j];
-                if(currentAlbum.genreCompare(max) == COMES_BEFORE){
-                    max = currentAlbum;
-                    indexOfMax = j;
-                }
-            }
-            swap(albums, i, indexOfMax);
-        }
+    /**
+     * Setter method for the sort engine, so a different stable sort can be plugged in
+     * AlbumSorter.parallelAbove sets the size a sort switches to parallel at, AlbumSorter.TIMSORT never sorts in parallel
+     * @param sorter: an AlbumSorter object
+     */
+    public void setSorter(AlbumSorter sorter){
+        this.sorter = sorter;
     }
+
     /**
-     * A method that implements the selection sort algorithm prioritizing the release date
-     * If release date is equal then the album title is used to break the tie
-     * @param albums: an array holding Album objects
+     * Getter method for the mode of the last sort
+     * @return lastSortMode: whether the sort engine sorted the albums array in parallel the last time sort was called, null if it was not called
      */
-    public void selectionSortDate(Album[] albums){
-        int lastIndexOfArray = getSize() - 1;
+    public AlbumSorter.Mode getLastSortMode(){
+        return this.lastSortMode;
+    }
 
-        for(int i = 0; i < lastIndexOfArray ; i++){
-            Album max = albums[i];
-            int indexOfMax = i;
-            for(int j = i + 1; j < getSize(); j++){
-                Album currentAlbum = albums[j];
-                if(currentAlbum.getReleased().compareTo(max.getReleased()) == -1){
-                    max = currentAlbum;
-                    indexOfMax = j;
-                }
-                if(currentAlbum.getReleased().compareTo(max.getReleased()) == 0){
-                    if(currentAlbum.compareTitles(max) == -1){
-                        max = currentAlbum;
-                        indexOfMax = j;
-                    }
-                }
-            }
-            swap(albums, i, indexOfMax);
+    /**
+     * Getter method for the output sink
+     * @return out: the OutputSink the print methods write to
+     */
+    public OutputSink getOutput(){
+        return this.out;
+    }
+
+    /**
+     * Setter method for the output sink
+     * By default the collection writes straight to System.out, a buffered sink leaves flushing to whoever owns it
+     * @param out: an OutputSink object
+     */
+    public void setOutput(OutputSink out){
+        this.out = out;
+    }
+
+    /**
+     * Sorts the albums array in the given order with the sort engine, the mode it used is then read with getLastSortMode
+     * The print methods do not need this since they walk the sorted views
+     * The array is compacted first so tombstones are not sorted
+     * @param order: the ordering to sort by
+     */
+    public void sort(SortOrder order){
+        compactSlots();
+        lastSortMode = sorter.modeFor(size);
+        sorter.sort(albums, 0, size, order);
+        for(int i = 0; i < size; i++){
+            entries[i] = lookup.get(AlbumKey.of(albums[i]));
+            entries[i].setPosition(i);
+        }
+    }
+
+    /**
+     * Puts the albums array back in the order the albums were added, by sequence number, keeping their entries
+     * Useful for a subclass that added albums with sequence numbers below the ones of albums already in the array
+     */
+    void orderBySequence(){
+        compactSlots();
+        Arrays.sort(entries, 0, size, (one, two) -> Long.compare(one.getSequence(), two.getSequence()));
+        for(int i = 0; i < size; i++){
+            albums[i] = entries[i].getAlbum();
+            entries[i].setPosition(i);
         }
     }
 
     /**
-     * A helper method for the selection sort algorithm to swap values at two indices
-     * @param albums: an array of Album objects
-     * @param index1: index of an Album object
-     * @param index2: index of another Album object
+     * Getter method for the sorted view of an order, for subclasses that list albums from more than the albums array
+     * @param order: the ordering
+     * @return the entries of the albums in that order, which must not be changed
      */
-    private void swap(Album[] albums, int index1, int index2) {
-        Album temp = albums[index1];
-        albums[index1] = albums[index2];
-        albums[index2] = temp;
+    Iterable<AlbumEntry> view(SortOrder order){
+        return views.get(order);
     }
 
     /**
-     * A method to print out all Album objects in the albums array
+     * Getter method for the part of the sorted view of an order after a bookmark
+     * @param order: the ordering
+     * @param bookmark: an entry, or a copy of one, to start after, or null to start at the first entry
+     * @return an iterator over the entries after the bookmark
+     */
+    Iterator<AlbumEntry> viewAfter(SortOrder order, AlbumEntry bookmark){
+        TreeSet<AlbumEntry> view = views.get(order);
+        return bookmark == null ? view.iterator() : view.tailSet(bookmark, false).iterator();
+    }
+
+    /**
+     * Captures the albums, for saving the collection without stopping it
+     * Only the entries array is copied, the snapshot works out the rating counts and the orders when it is resolved,
+     * and until then rate keeps the counts an album had at the capture before changing them
+     * One capture is resolved at a time, and no album may be rated while the collection is being captured
+     * @return the captured state, to be resolved by the thread that writes it
+     */
+    CatalogSnapshot capture(){
+        FrozenRatings ratings = new FrozenRatings();
+        this.frozenRatings = ratings;
+        return new CatalogSnapshot(Arrays.copyOf(entries, end), ratings);
+    }
+
+    /**
+     * A method to print out all Album objects in the albums array to the output sink, skipping tombstones
      */
     public void displayAlbums(){
-        int arrSize = this.getSize();
-        for(int i = 0; i < arrSize; i++){
-            System.out.println(this.getAlbums()[i].toString());
+        displayAlbums(out);
+    }
+
+    /**
+     * Prints all Album objects in the albums array, in the order they are stored, skipping tombstones
+     * @param out: the OutputSink to print to
+     */
+    public void displayAlbums(OutputSink out){
+        for(int i = 0; i < end; i++){
+            if(albums[i] != null){
+                out.append(albums[i]).newLine();
+            }
         }
     }
 
     /**
-     * Sorts by Rating and then prints all albums
+     * Prints all albums by Rating
      */
     public void printByRating(){
-        if (getSize() == 0) {
-            System.out.println("Collection is empty!");
+        print(SortOrder.RATING, out);
+    }
+
+    /**
+     * Prints the k albums with the highest average rating, in the same order as printByRating
+     * The rating view is already in order, so only the first k of its entries are read and nothing is sorted or copied
+     * @param k: how many albums to print, at least 1
+     */
+    public void printTopRated(int k){
+        print(SortOrder.RATING, k, out);
+    }
+
+    /**
+     * Prints all the albums by Genre
+     */
+    public void printByGenre(){
+        print(SortOrder.GENRE, out);
+    }
+    
+    /**
+     * Prints all the albums by release date
+     */
+    public void printByDate(){
+        print(SortOrder.DATE, out);
+    }
+
+    /**
+     * Prints every album in an order, the same as print(order, ALL, out)
+     * @param order: the ordering to print in
+     * @param out: the OutputSink to print to
+     */
+    public void print(SortOrder order, OutputSink out){
+        print(order, ALL, out);
+    }
+
+    /**
+     * Walks the sorted view of an order and prints the first albums of it between its header and footer, used by the print methods
+     * The albums array is not reordered, and the sink can be one other than the collection's own, for example one per client
+     * The walk stops after limit albums, so a short listing takes time for the albums it prints and not for the whole collection
+     * @param order: the ordering to print in
+     * @param limit: the most albums to print, ALL for every album
+     * @param out: the OutputSink to print to
+     */
+    public void print(SortOrder order, int limit, OutputSink out){
+        if (size == 0) {
+            out.println("Collection is empty!");
             return;
         }
-        System.out.println("* Collection sorted by Rating/Title *");
-        selectionSortRating(this.getAlbums());
-        displayAlbums();
-        System.out.println("* end of list *");
+        out.println(order.getHeader());
+        walk(new AlbumCursor(this, order), limit, out);
+        out.println("* end of list *");
     }
 
     /**
-     * Sorts by Genre then prints all the albums
+     * Prints the albums a query asks for by release date and title, between the header of the query and a footer
+     * @param query: the AlbumQuery
+     * @param out: the OutputSink to print to
      */
-    public void printByGenre(){
+    public void print(AlbumQuery query, OutputSink out){
         if (getSize() == 0) {
-            System.out.println("Collection is empty!");
+            out.println("Collection is empty!");
             return;
         }
-        System.out.println("* Collection sorted by Genre/Artist *");
-        selectionSortGenre(this.getAlbums());
-        displayAlbums();
-        System.out.println("* end of list *");
+        out.println(query.getHeader());
+        walk(query, out);
+        out.println("* end of list *");
     }
-    
+
     /**
-     * Sorts by release date then prints all the albums
+     * Walks the entries that match a query, used by print
+     * @param query: the AlbumQuery
+     * @param out: the OutputSink to print to
      */
-    public void printByDate(){
-        if (getSize() == 0) {
-            System.out.println("Collection is empty!");
+    void walk(AlbumQuery query, OutputSink out){
+        walkMatches(new AlbumCursor(this, query), ALL, out);
+    }
+
+    /**
+     * Finds the entries that match a query, in release date and title order, without looking at any other entry
+     * The genre or artist index, or the release date view, is cut down to the range of dates with two searches of the tree
+     * The genre and artist indexes are built from the release date view the first time they are needed, and kept up to date after,
+     * so a collection that is never queried by genre or artist does not pay for them
+     * @param query: the AlbumQuery
+     * @param bookmark: an entry, or a copy of one, to start after, or null to start at the first match
+     * @return an iterator over the matching entries
+     */
+    Iterator<AlbumEntry> matches(AlbumQuery query, AlbumEntry bookmark){
+        buildIndex(query);
+        NavigableSet<AlbumEntry> matches;
+        if(query.getGenre() != null){
+            matches = genreIndex.get(query.getGenre());
+            if(matches == null){
+                return Collections.emptyIterator();
+            }
+        }else if(query.getArtist() != null){
+            matches = artistIndex.get(AlbumKey.ofArtist(query.getArtist()));
+            if(matches == null){
+                return Collections.emptyIterator();
+            }
+        }else{
+            matches = views.get(SortOrder.DATE);
+        }
+        if(query.getFrom() != null){
+            Date to = query.getTo();
+            if(query.getFrom().compareTo(to) > 0){
+                return Collections.emptyIterator();
+            }
+            Date dayAfter = new Date(to.get_year(), to.get_month(), to.get_day() + 1);
+            matches = matches.subSet(releasedProbe(query.getFrom()), true, releasedProbe(dayAfter), false);
+        }
+        return bookmark == null ? matches.iterator() : matches.tailSet(bookmark, false).iterator();
+    }
+
+    /**
+     * Tells if the index a query is answered from has been built
+     * @param query: the AlbumQuery
+     * @return true: answering the query does not change the collection
+     */
+    boolean hasIndex(AlbumQuery query){
+        if(query.getGenre() != null){
+            return genreIndex != null;
+        }
+        return query.getArtist() == null || artistIndex != null;
+    }
+
+    /**
+     * Builds the index a query is answered from, from the release date view, if it has not been built
+     * @param query: the AlbumQuery
+     */
+    void buildIndex(AlbumQuery query){
+        if(hasIndex(query)){
             return;
         }
-        System.out.println("* Collection sorted by Released Date/Title *");
-        selectionSortDate(this.getAlbums());
-        displayAlbums();
-        System.out.println("* end of list *");
+        if(query.getGenre() != null){
+            genreIndex = new EnumMap<>(Genre.class);
+            for(AlbumEntry entry : views.get(SortOrder.DATE)){
+                indexGenre(entry);
+            }
+        }else{
+            artistIndex = new HashMap<>();
+            for(AlbumEntry entry : views.get(SortOrder.DATE)){
+                indexArtist(entry);
+            }
+        }
+    }
+
+    /**
+     * Helper method of matches that creates an entry ordered by the release date view before every album released on or after a date
+     * @param released: the date
+     * @return the entry, which is never added to the collection
+     */
+    private static AlbumEntry releasedProbe(Date released){
+        return new AlbumEntry(new Album("", null, null, released, null), Long.MIN_VALUE, NOT_FOUND);
+    }
+
+    /**
+     * Opens a cursor that lists the albums in an order a page at a time, with AlbumCursor.next
+     * @param order: the ordering to list in
+     * @return a cursor placed before the first album
+     */
+    public AlbumCursor openCursor(SortOrder order){
+        return new AlbumCursor(this, order);
+    }
+
+    /**
+     * Opens a cursor that lists the albums that match a query a page at a time, in the order print lists them
+     * @param query: the AlbumQuery
+     * @return a cursor placed before the first match
+     */
+    public AlbumCursor openCursor(AlbumQuery query){
+        return new AlbumCursor(this, query);
+    }
+
+    /**
+     * Prints the next albums of a cursor's listing, one per line without a header or footer, and moves the cursor past them
+     * @param cursor: a cursor opened on this collection
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to
+     * @return how many albums were printed
+     */
+    public int fetch(AlbumCursor cursor, int count, OutputSink out){
+        return cursor.getQuery() == null ? walk(cursor, count, out) : walkMatches(cursor, count, out);
+    }
+
+    /**
+     * Walks the sorted view of a cursor's order from the album after its bookmark, used by print and fetch
+     * Marks the cursor done once no album is left after it
+     * @param cursor: the cursor to move
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to
+     * @return how many albums were printed
+     */
+    int walk(AlbumCursor cursor, int count, OutputSink out){
+        Iterator<AlbumEntry> inOrder = viewAfter(cursor.getOrder(), cursor.getBookmark());
+        AlbumEntry last = null;
+        int printed = 0;
+        for(; printed < count && inOrder.hasNext(); printed++){
+            last = inOrder.next();
+            out.append(last.getAlbum()).newLine();
+        }
+        if(last != null){
+            cursor.setBookmark(last);
+        }
+        cursor.setDone(!inOrder.hasNext());
+        return printed;
+    }
+
+    /**
+     * Walks the entries that match the query of a cursor from the match after its bookmark, used by walk and fetch
+     * Marks the cursor done once no match is left after it
+     * @param cursor: the cursor to move, opened on a query
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to
+     * @return how many albums were printed
+     */
+    int walkMatches(AlbumCursor cursor, int count, OutputSink out){
+        Iterator<AlbumEntry> matches = matches(cursor.getQuery(), cursor.getBookmark());
+        AlbumEntry last = null;
+        int printed = 0;
+        for(; printed < count && matches.hasNext(); printed++){
+            last = matches.next();
+            out.append(last.getAlbum()).newLine();
+        }
+        if(last != null){
+            cursor.setBookmark(last);
+        }
+        cursor.setDone(!matches.hasNext());
+        return printed;
+    }
+
+    /**
+     * Prints every listing of a collection to a String, for the testbeds to compare collections by
+     * @param collection: the collection to list
+     * @return the albums as they are stored, then the PD, PG and PR listings one after another
+     */
+    static String listings(Collection collection){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputSink out = new OutputSink(new PrintStream(bytes));
+        collection.displayAlbums(out);
+        for (SortOrder order : SortOrder.values()) {
+            collection.print(order, out);
+        }
+        out.flush();
+        return bytes.toString();
+    }
+
+    /**
+     * Testbed main for the Collection class, which makes the same changes to a Collection and to every other kind of
+     * collection and checks that they list the same albums in the same order, each test prints true when it passes
+     * The MappedCollection maps a catalog of the first albums, written to a temporary file that is deleted afterwards
+     */
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(2024);
+        ArtistRegistry artists = new ArtistRegistry();
+        Collection reference = new Collection();
+        Collection[] others = {new ConcurrentCollection(), new ColumnarCollection(artists), new OffHeapCollection(artists), null};
+        for (int i = 0; i < 600; i++) {
+            testbedChange(random, artists, reference, Arrays.copyOf(others, others.length - 1));
+        }
+        Path file = Files.createTempFile("collection", ".snapshot");
+        try {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                CatalogSnapshot state = reference.capture();
+                state.resolve();
+                MappedCatalog.write(channel, 0, state);
+            }
+            others[others.length - 1] = new MappedCollection(MappedCatalog.open(file), artists);
+            //Test 1: the listings match once the albums are added, and the catalog maps the same listings
+            System.out.println("Test 1: " + sameListings(reference, others));
+            //Test 2: the results of adds, removes and ratings match, and so do the listings after them
+            boolean same = true;
+            for (int i = 0; i < 3000; i++) {
+                same &= testbedChange(random, artists, reference, others);
+                if (i % 500 == 0) {
+                    same &= sameListings(reference, others);
+                }
+            }
+            System.out.println("Test 2: " + (same && sameListings(reference, others)));
+            //Test 3: listings printed a page at a time match while albums change between the pages
+            same = true;
+            for (SortOrder order : SortOrder.values()) {
+                AlbumCursor expected = reference.openCursor(order);
+                AlbumCursor[] cursors = new AlbumCursor[others.length];
+                for (int c = 0; c < others.length; c++) {
+                    cursors[c] = others[c].openCursor(order);
+                }
+                while (!expected.isDone()) {
+                    int count = 1 + random.nextInt(40);
+                    String page = page(expected, count);
+                    for (AlbumCursor cursor : cursors) {
+                        same &= page.equals(page(cursor, count)) && cursor.isDone() == expected.isDone();
+                    }
+                    for (int i = random.nextInt(30); i > 0; i--) {
+                        same &= testbedChange(random, artists, reference, others);
+                    }
+                }
+            }
+            System.out.println("Test 3: " + same);
+            //Test 4: the top rated albums match
+            same = true;
+            for (int k : new int[] {1, 7, 100}) {
+                String top = top(reference, k);
+                for (Collection other : others) {
+                    same &= top.equals(top(other, k));
+                }
+            }
+            System.out.println("Test 4: " + same);
+            //Test 5: the matches of queries printed a page at a time match while albums change between the pages
+            same = true;
+            for (int q = 0; q < 30; q++) {
+                int artist = random.nextInt(15);
+                Date from = new Date(1960 + random.nextInt(40), 1, 1);
+                AlbumQuery[] queries = {AlbumQuery.ofGenre(Genre.values()[random.nextInt(Genre.values().length)]),
+                        AlbumQuery.ofArtist(new Artist("Artist " + artist + " Name", new Date(1950 + artist, 1 + artist % 12, 1 + artist % 28))),
+                        AlbumQuery.releasedBetween(from, new Date(from.get_year() + random.nextInt(10), 12, 31))};
+                AlbumQuery query = q % 6 < 3 ? queries[q % 3] : queries[q % 3].released(from, new Date(from.get_year() + 5, 6, 30));
+                AlbumCursor expected = reference.openCursor(query);
+                AlbumCursor[] cursors = new AlbumCursor[others.length];
+                for (int c = 0; c < others.length; c++) {
+                    cursors[c] = others[c].openCursor(query);
+                }
+                while (!expected.isDone()) {
+                    int count = 1 + random.nextInt(20);
+                    String page = page(expected, count);
+                    for (AlbumCursor cursor : cursors) {
+                        same &= page.equals(page(cursor, count)) && cursor.isDone() == expected.isDone();
+                    }
+                    for (int i = random.nextInt(10); i > 0; i--) {
+                        same &= testbedChange(random, artists, reference, others);
+                    }
+                }
+            }
+            System.out.println("Test 5: " + same);
+            //Test 6: compacting the tombstones away does not change a listing
+            for (Collection other : others) {
+                other.compact();
+            }
+            reference.compact();
+            System.out.println("Test 6: " + sameListings(reference, others));
+            //Test 7: sorting stores the albums in the same order
+            for (Collection other : others) {
+                other.sort(SortOrder.GENRE);
+            }
+            reference.sort(SortOrder.GENRE);
+            System.out.println("Test 7: " + sameListings(reference, others));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Helper method of the testbed that makes one random change to a Collection and the same change to other collections
+     * The albums are drawn from a few titles and artists in two cases, so some adds find the album already there
+     * @return true if every collection gave the same result as the Collection
+     */
+    private static boolean testbedChange(Random random, ArtistRegistry artists, Collection reference, Collection[] others){
+        int number = random.nextInt(400);
+        String title = (random.nextBoolean() ? "title " : "Title ") + number + (number % 3 == 0 ? "  Part two" : "");
+        int artist = random.nextInt(15);
+        String name = (random.nextBoolean() ? "artist " : "Artist ") + artist + " Name";
+        Date born = new Date(1950 + artist, 1 + artist % 12, 1 + artist % 28);
+        Genre genre = Genre.values()[random.nextInt(Genre.values().length)];
+        Date released = new Date(1960 + random.nextInt(40), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        int change = random.nextInt(10);
+        int star = 1 + random.nextInt(5);
+        boolean expected = testbedChange(reference, change, title, artists.intern(name, born), genre, released, star);
+        boolean same = true;
+        for (Collection other : others) {
+            same &= testbedChange(other, change, title, artists.intern(name, born), genre, released, star) == expected;
+        }
+        return same && reference.getSize() == others[0].getSize();
+    }
+
+    /**
+     * Helper method of the testbed that adds an album, removes it or rates it, each collection is given its own Album object
+     * @return the result of the change, true for a rating of an album in the collection
+     */
+    private static boolean testbedChange(Collection collection, int change, String title, Artist artist, Genre genre, Date released, int star){
+        Album album = new Album(title, artist, genre, released, null);
+        if (change < 4) {
+            return collection.add(album);
+        } else if (change < 6) {
+            return collection.remove(album);
+        }
+        boolean found = collection.contains(album);
+        collection.rate(album, star);
+        return found;
+    }
+
+    /**
+     * Helper method of the testbed that tells if other collections print the same listings as a Collection
+     */
+    private static boolean sameListings(Collection reference, Collection[] others){
+        String expected = listings(reference);
+        for (Collection other : others) {
+            if (!expected.equals(listings(other))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method of the testbed that prints the next page of a cursor to a String
+     */
+    private static String page(AlbumCursor cursor, int count){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputSink out = new OutputSink(new PrintStream(bytes));
+        cursor.next(count, out);
+        out.flush();
+        return bytes.toString();
+    }
+
+    /**
+     * Helper method of the testbed that prints the top rated albums of a collection to a String
+     */
+    private static String top(Collection collection, int k){
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputSink out = new OutputSink(new PrintStream(bytes));
+        collection.print(SortOrder.RATING, k, out);
+        out.flush();
+        return bytes.toString();
     }
 }
@@ -0,0 +1,839 @@
+package album;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.zip.CRC32;
+/**
+ * The CollectionJournal class which keeps a Collection on disk as a snapshot and a write-ahead log of the changes made since
+ * Every add, remove and rate applied to the collection is appended to the log, and opening a journal maps the latest snapshot
+ * as a MappedCollection and replays the log after it, so the collection comes back as it was without loading every album
+ * Records are only copied into memory by the thread making the change, a writer thread writes them and forces them to disk,
+ * The writer gathers records for up to COMMIT_INTERVAL_MILLIS, or until COMMIT_BYTES are waiting, and commits them with one force
+ * (group commit), so a change is durable a few milliseconds after it is logged and the number of forces does not grow with the changes
+ * Any number of threads can log changes at once, each record is encoded and handed over under the journal's lock
+ * Once enough has been logged a snapshot is due, the owner of the collection takes it with snapshotIfDue while no change is being made,
+ * and it is written by the writer thread as a MappedCatalog, and the logs it covers are deleted
+ * The files are a snapshot, collection.snapshot, and logs named collection-N.log, where N is the generation of the log
+ * A snapshot of generation N holds every change made before log N
+ @author Rohan Sharma
+ */
+public class CollectionJournal implements Closeable {
+    public static final long DEFAULT_SNAPSHOT_THRESHOLD = 4L << 20; //log bytes appended before a snapshot is taken
+    public static final long COMMIT_INTERVAL_MILLIS = 10; //longest a record waits in memory before the writer commits it
+    private static final int COMMIT_BYTES = 1 << 20; //bytes waiting that make the writer commit without waiting out the interval
+    private static final int MAX_PENDING = 64 << 20; //bytes not yet on disk before changes wait for the writer
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    private static final String SNAPSHOT_FILE = "collection.snapshot";
+    private static final String SNAPSHOT_TEMP_FILE = "collection.snapshot.tmp";
+    private static final String LOG_PREFIX = "collection-";
+    private static final String LOG_SUFFIX = ".log";
+    //Log record types
+    private static final byte ADD = 1;
+    private static final byte REMOVE = 2;
+    private static final byte RATE = 3;
+    private static final int RECORD_HEADER = 8; //length and checksum of the record
+    private static final Genre[] GENRES = Genre.values();
+
+    private final Path directory;
+    private final Collection collection;
+    private final Object lock = new Object();
+    private final Thread writer;
+    //Used only by the thread making changes
+    private long replayed; //records replayed from the logs when the journal was opened
+    //Guarded by lock
+    private long snapshotThreshold;
+    private final RecordBuffer record = new RecordBuffer(); //the record being encoded
+    private final DataOutputStream recordData = new DataOutputStream(record);
+    private final CRC32 checksum = new CRC32();
+    private long loggedSinceSnapshot;
+    private RecordBuffer pending = new RecordBuffer(); //records not yet handed to the writer
+    private RecordBuffer sealed; //the last records of a log that a snapshot retires
+    private Snapshot snapshot; //captured state waiting to be written
+    private boolean snapshotInFlight;
+    private long logGeneration; //generation of the log new records belong to
+    private long appended; //bytes of records appended
+    private long durable; //bytes of records written and forced to disk
+    private boolean closing;
+    private IOException failure;
+    //Used only by the writer thread
+    private FileChannel log;
+
+    /**
+     * Constructor for the CollectionJournal class which starts a new log and the writer thread
+     * @param directory: the directory the files are kept in
+     * @param collection: the collection whose changes are logged
+     * @param generation: the generation of the new log, one past the last log replayed
+     * @param replayed: how many records were replayed when the collection was loaded
+     */
+    private CollectionJournal(Path directory, Collection collection, long generation, long replayed) throws IOException {
+        this.directory = directory;
+        this.collection = collection;
+        this.logGeneration = generation;
+        this.replayed = replayed;
+        this.snapshotThreshold = DEFAULT_SNAPSHOT_THRESHOLD;
+        this.log = openLog(generation);
+        this.writer = new Thread(this::writeLoop, "collection-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Opens the collection kept in a directory and starts logging the changes made to it
+     * The snapshot is mapped, not read, so only the logs written since it are replayed album by album
+     * If any record had to be replayed, a snapshot is taken right away so the next start does not replay it again
+     * @param directory: the directory the files are kept in, created if it does not exist
+     * @param artists: the registry the artists of the albums created are taken from
+     * @return the journal, whose collection is the one the changes must be made to
+     * @throws IOException if the directory cannot be used or the snapshot is damaged
+     */
+    public static CollectionJournal open(Path directory, ArtistRegistry artists) throws IOException {
+        return open(directory, artists, false);
+    }
+
+    /**
+     * Opens the collection kept in a directory and starts logging the changes made to it
+     * A concurrent collection is a ConcurrentCollection that every album of the snapshot is read into,
+     * since a MappedCollection can only be used by one thread
+     * The journal itself is still used by one thread at a time, the caller must log each change while no other change is made
+     * @param directory: the directory the files are kept in, created if it does not exist
+     * @param artists: the registry the artists of the albums created are taken from
+     * @param concurrent: true to load the collection into a ConcurrentCollection, false to map it as a MappedCollection
+     * @return the journal, whose collection is the one the changes must be made to
+     * @throws IOException if the directory cannot be used or the snapshot is damaged
+     */
+    public static CollectionJournal open(Path directory, ArtistRegistry artists, boolean concurrent) throws IOException {
+        Files.createDirectories(directory);
+        long generation = 0;
+        Collection collection;
+        Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        if (Files.exists(snapshotPath)) {
+            MappedCatalog catalog = MappedCatalog.open(snapshotPath);
+            generation = catalog.getGeneration();
+            collection = concurrent ? load(catalog, artists) : new MappedCollection(catalog, artists);
+        } else {
+            collection = concurrent ? new ConcurrentCollection() : new Collection();
+        }
+        long replayed = 0;
+        long next = generation;
+        while (Files.exists(logPath(directory, next))) {
+            replayed += replay(logPath(directory, next), collection, artists);
+            next++;
+        }
+        if (replayed == 0) {
+            //the logs after the snapshot hold nothing that was committed, so the next log can take the place of the first
+            for (long empty = generation; empty < next; empty++) {
+                Files.delete(logPath(directory, empty));
+            }
+            next = generation;
+        }
+        CollectionJournal journal = new CollectionJournal(directory, collection, next, replayed);
+        if (next > generation) {
+            journal.takeSnapshot();
+        }
+        return journal;
+    }
+
+    /**
+     * Getter method for the collection
+     * @return collection: the collection loaded from the directory, the changes logged must be made to it
+     */
+    public Collection getCollection(){
+        return collection;
+    }
+
+    /**
+     * Getter method for the number of records replayed when the journal was opened
+     * @return replayed: a long
+     */
+    public long getReplayed(){
+        return replayed;
+    }
+
+    /**
+     * Getter method for the snapshot threshold
+     * @return snapshotThreshold: how many bytes are logged before a snapshot is taken
+     */
+    public long getSnapshotThreshold(){
+        synchronized (lock) {
+            return snapshotThreshold;
+        }
+    }
+
+    /**
+     * Setter method for the snapshot threshold
+     * A lower threshold keeps the logs short so starting is faster, a higher one writes snapshots less often
+     * @param snapshotThreshold: how many bytes are logged before a snapshot is taken
+     */
+    public void setSnapshotThreshold(long snapshotThreshold){
+        synchronized (lock) {
+            this.snapshotThreshold = snapshotThreshold;
+        }
+    }
+
+    /**
+     * Logs an album that was added to the collection
+     * @param album: the album added
+     */
+    public void logAdd(Album album){
+        append(ADD, album, 0);
+    }
+
+    /**
+     * Logs an album that was removed from the collection
+     * @param album: the album removed, or any album equal to it
+     */
+    public void logRemove(Album album){
+        append(REMOVE, album, 0);
+    }
+
+    /**
+     * Logs a rating given to an album in the collection
+     * @param album: the album rated
+     * @param star: the rating given
+     */
+    public void logRate(Album album, int star){
+        append(RATE, album, star);
+    }
+
+    /**
+     * Waits until every record logged so far is on disk
+     * Changes do not need this to be durable, the writer commits them on its own a moment after they are logged
+     * @throws IOException if the writer failed to write the log
+     */
+    public void sync() throws IOException {
+        synchronized (lock) {
+            long target = appended;
+            while (durable < target && failure == null) {
+                waitForWriter();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Commits every record logged so far, waits for a snapshot being written, and stops the writer thread
+     * @throws IOException if the writer failed to write the log or a snapshot
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            closing = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while closing the journal");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Tells whether enough has been logged since the last snapshot for the next one to be taken
+     * @return true if snapshotIfDue would take a snapshot
+     */
+    public boolean isSnapshotDue(){
+        synchronized (lock) {
+            return loggedSinceSnapshot >= snapshotThreshold && !snapshotInFlight && failure == null;
+        }
+    }
+
+    /**
+     * Takes a snapshot if enough has been logged since the last one
+     * The caller must own the collection alone while it runs: a change made but not yet logged would be in the snapshot
+     * and in the log after it, so while clients are served it is called under the change lock held for writing
+     */
+    public void snapshotIfDue(){
+        if (isSnapshotDue()) {
+            takeSnapshot();
+        }
+    }
+
+    /**
+     * Encodes a record and hands it to the writer, safe to call from any number of threads at once
+     * The record is encoded under the lock, so records are logged whole and in the order their changes were handed over
+     * A record is its length, the CRC32 of its contents, and the contents: the type, the title, the artist name and date of birth,
+     * then the genre and release date for an add or the star for a rate
+     * The title and artist name are each written as the int length of their UTF-8 bytes and the bytes, so they can be of any length
+     * @param type: ADD, REMOVE or RATE
+     * @param album: the album changed
+     * @param star: the rating given, only written for RATE
+     */
+    private void append(byte type, Album album, int star){
+        synchronized (lock) {
+            try {
+                while (appended - durable > MAX_PENDING && failure == null) {
+                    waitForWriter();
+                }
+            } catch (InterruptedIOException e) {
+                //the thread stays interrupted, the record is appended without waiting any longer
+            }
+            if (failure != null) {
+                return;
+            }
+            record.reset();
+            try {
+                recordData.writeByte(type);
+                writeString(album.getTitle());
+                writeString(album.getArtist().getName());
+                recordData.writeInt(album.getArtist().getBorn().getKey());
+                if (type == ADD) {
+                    recordData.writeByte(album.getGenre().ordinal());
+                    recordData.writeInt(album.getReleased().getKey());
+                } else if (type == RATE) {
+                    recordData.writeByte(star);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e); //writing to memory does not fail
+            }
+            checksum.reset();
+            checksum.update(record.array(), 0, record.size());
+            boolean wake = pending.size() == 0;
+            pending.writeInt(record.size());
+            pending.writeInt((int) checksum.getValue());
+            pending.write(record.array(), 0, record.size());
+            appended += RECORD_HEADER + record.size();
+            //the writer only needs waking for the first record of a group and for a full group
+            if (wake || pending.size() >= COMMIT_BYTES) {
+                lock.notifyAll();
+            }
+            loggedSinceSnapshot += RECORD_HEADER + record.size();
+        }
+    }
+
+    /**
+     * Helper method of append that writes a string to the record being encoded, as its length in UTF-8 bytes and the bytes
+     * The caller must hold the lock
+     * @param text: the string
+     */
+    private void writeString(String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        recordData.writeInt(bytes.length);
+        recordData.write(bytes);
+    }
+
+    /**
+     * Captures the collection and hands it to the writer to save, unless a snapshot is already being written
+     * Only the entries of the collection are copied, the rating counts, the orders, the encoding and the disk writes
+     * are done by the writer thread, and for a MappedCollection only the albums that are not in its catalog are captured
+     * Records logged from here on go to a new log, which is the first log replayed after the snapshot
+     * The caller must own the collection alone, as for snapshotIfDue
+     */
+    private void takeSnapshot(){
+        synchronized (lock) {
+            if (snapshotInFlight || failure != null) {
+                return;
+            }
+        }
+        CatalogSnapshot state = collection.capture();
+        synchronized (lock) {
+            snapshotInFlight = true;
+            sealed = pending;
+            pending = new RecordBuffer();
+            snapshot = new Snapshot(state, ++logGeneration);
+            loggedSinceSnapshot = 0;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Helper method that waits on the lock for the writer to make progress
+     * The caller must hold the lock
+     */
+    private void waitForWriter() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the journal");
+        }
+    }
+
+    /**
+     * The loop of the writer thread
+     * Each pass waits for a record, gathers more for up to COMMIT_INTERVAL_MILLIS, writes them all to the log and forces the log once,
+     * then writes the snapshot waiting to be saved, if there is one
+     */
+    private void writeLoop(){
+        RecordBuffer spare = new RecordBuffer();
+        try {
+            while (true) {
+                RecordBuffer batch;
+                RecordBuffer retired;
+                Snapshot task;
+                long target;
+                synchronized (lock) {
+                    while (pending.size() == 0 && sealed == null && snapshot == null && !closing) {
+                        lock.wait();
+                    }
+                    long deadline = System.currentTimeMillis() + COMMIT_INTERVAL_MILLIS;
+                    long remaining = COMMIT_INTERVAL_MILLIS;
+                    while (remaining > 0 && pending.size() < COMMIT_BYTES && sealed == null && !closing) {
+                        lock.wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                    if (pending.size() == 0 && sealed == null && snapshot == null) {
+                        return;
+                    }
+                    retired = sealed;
+                    sealed = null;
+                    batch = pending;
+                    pending = spare;
+                    task = snapshot;
+                    snapshot = null;
+                    target = appended;
+                }
+                if (retired != null) {
+                    write(retired);
+                    log.force(false);
+                    log.close();
+                    log = openLog(task.generation);
+                }
+                write(batch);
+                log.force(false);
+                batch.reset();
+                spare = batch;
+                synchronized (lock) {
+                    durable = target;
+                    lock.notifyAll();
+                }
+                if (task != null) {
+                    saveSnapshot(task);
+                    deleteLogsBefore(task.generation);
+                    synchronized (lock) {
+                        snapshotInFlight = false;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new InterruptedIOException("journal writer interrupted"));
+        } finally {
+            try {
+                log.close();
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Helper method of the writer that records why it stopped and wakes up anyone waiting on it
+     * @param e: the error the writer stopped on
+     */
+    private void fail(IOException e){
+        synchronized (lock) {
+            if (failure == null) {
+                failure = e;
+                System.err.printf("Journal in %s stopped: %s\n", directory, e.getMessage());
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Helper method of the writer that writes a batch of records to the end of the current log
+     * @param batch: the encoded records
+     */
+    private void write(RecordBuffer batch) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(batch.array(), 0, batch.size());
+        while (bytes.hasRemaining()) {
+            log.write(bytes);
+        }
+    }
+
+    /**
+     * Helper method that opens a log for appending, creating it if it does not exist
+     * @param generation: the generation of the log
+     * @return the channel of the log
+     */
+    private FileChannel openLog(long generation) throws IOException {
+        FileChannel channel = FileChannel.open(logPath(directory, generation),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        syncDirectory();
+        return channel;
+    }
+
+    /**
+     * Helper method of the writer that resolves a snapshot, saves it as a MappedCatalog in a temporary file, forces it to disk,
+     * and renames it over the last snapshot
+     * @param task: the captured state
+     */
+    private void saveSnapshot(Snapshot task) throws IOException {
+        task.state.resolve();
+        Path temp = directory.resolve(SNAPSHOT_TEMP_FILE);
+        try (FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedCatalog.write(file, task.generation, task.state);
+            file.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory();
+    }
+
+    /**
+     * Helper method of the writer that deletes the logs a snapshot holds the changes of
+     * @param generation: the generation of the snapshot
+     */
+    private void deleteLogsBefore(long generation) throws IOException {
+        try (DirectoryStream<Path> logs = Files.newDirectoryStream(directory, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path path : logs) {
+                String name = path.getFileName().toString();
+                String number = name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length());
+                try {
+                    if (Long.parseLong(number) < generation) {
+                        Files.delete(path);
+                    }
+                } catch (NumberFormatException e) {
+                    //not a log of this journal
+                }
+            }
+        }
+        syncDirectory();
+    }
+
+    /**
+     * Helper method that forces the directory itself to disk, so created, renamed and deleted files survive a crash
+     * Not every platform can open a directory, there the file system is left to persist it
+     */
+    private void syncDirectory(){
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            //directories cannot be forced on this platform
+        }
+    }
+
+    /**
+     * Helper method that names the log of a generation
+     * @param directory: the directory the files are kept in
+     * @param generation: the generation of the log
+     * @return the path of the log
+     */
+    private static Path logPath(Path directory, long generation){
+        return directory.resolve(LOG_PREFIX + generation + LOG_SUFFIX);
+    }
+
+    /**
+     * Helper method of open that reads every record of a catalog into a ConcurrentCollection, in record order
+     * @param catalog: the mapped snapshot
+     * @param artists: the registry the artists of the albums created are taken from
+     * @return the collection
+     */
+    private static ConcurrentCollection load(MappedCatalog catalog, ArtistRegistry artists){
+        Album[] albums = new Album[catalog.getSize()];
+        for (int record = 0; record < albums.length; record++) {
+            albums[record] = catalog.materialize(record, artists);
+        }
+        ConcurrentCollection collection = new ConcurrentCollection(albums.length);
+        collection.addAll(albums);
+        return collection;
+    }
+
+    /**
+     * Helper method of open that applies the records of a log to the collection
+     * Replaying stops at the first record that is cut short or fails its checksum, which is where a crash interrupted the log
+     * A length longer than what is left of the file can only come from a torn record, so no record is read past the end
+     * @param path: the log file
+     * @param collection: the collection to apply the records to
+     * @param artists: the registry the artists of added albums are taken from
+     * @return the number of records applied
+     * @throws IOException if the file cannot be read
+     */
+    private static long replay(Path path, Collection collection, ArtistRegistry artists) throws IOException {
+        long applied = 0;
+        CRC32 checksum = new CRC32();
+        byte[] contents = new byte[IO_BUFFER_SIZE];
+        long remaining = Files.size(path);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), IO_BUFFER_SIZE))) {
+            while (true) {
+                int length = in.readInt();
+                int expected = in.readInt();
+                remaining -= RECORD_HEADER;
+                if (length <= 0 || length > remaining) {
+                    break;
+                }
+                remaining -= length;
+                if (length > contents.length) {
+                    contents = new byte[length];
+                }
+                in.readFully(contents, 0, length);
+                checksum.reset();
+                checksum.update(contents, 0, length);
+                if ((int) checksum.getValue() != expected) {
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(contents, 0, length)), collection, artists);
+                applied++;
+            }
+        } catch (EOFException e) {
+            //the log ends here, a record cut short by a crash was never committed
+        }
+        return applied;
+    }
+
+    /**
+     * Helper method of replay that applies one record to the collection
+     * @param record: the contents of the record
+     * @param collection: the collection to apply the record to
+     * @param artists: the registry the artists of added albums are taken from
+     */
+    private static void apply(DataInputStream record, Collection collection, ArtistRegistry artists) throws IOException {
+        byte type = record.readByte();
+        String title = readString(record);
+        String name = readString(record);
+        Date born = Date.fromKey(record.readInt());
+        if (type == ADD) {
+            Genre genre = GENRES[record.readByte()];
+            Date released = Date.fromKey(record.readInt());
+            collection.add(new Album(title, artists.intern(name, born), genre, released, null));
+        } else if (type == REMOVE) {
+            collection.remove(new Album(title, new Artist(name, born), null, null, null));
+        } else if (type == RATE) {
+            collection.rate(new Album(title, new Artist(name, born), null, null, null), record.readByte());
+        }
+    }
+
+    /**
+     * Helper method of apply that reads a string written by writeString
+     * @param record: the contents of the record, positioned at the string
+     * @return the string
+     */
+    private static String readString(DataInputStream record) throws IOException {
+        int length = record.readInt();
+        if (length < 0 || length > record.available()) {
+            throw new EOFException("string longer than its record");
+        }
+        byte[] bytes = new byte[length];
+        record.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Testbed main for the CollectionJournal class, which logs changes to a journal in a temporary directory, damages its logs,
+     * and checks that reopening it gives a collection that lists the same albums as a Collection given the changes committed
+     * Each test prints true when it passes, and the directory is deleted afterwards
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Files.createTempDirectory("journal");
+        ArtistRegistry artists = new ArtistRegistry();
+        try {
+            //Test 1: every change logged is replayed when the journal is reopened
+            CollectionJournal journal = open(directory, artists);
+            testbedChanges(journal, artists, 0, 300);
+            journal.close();
+            journal = open(directory, artists);
+            System.out.println("Test 1: " + (journal.getReplayed() == 300 && sameListings(journal, artists, 0, 300)));
+            journal.close();
+            //Test 2: the snapshot taken after the replay maps the same albums and leaves nothing to replay
+            journal = open(directory, artists);
+            boolean mapped = journal.getCollection() instanceof MappedCollection;
+            System.out.println("Test 2: " + (mapped && journal.getReplayed() == 0 && sameListings(journal, artists, 0, 300)));
+            //Test 3: a record cut short at the end of the log is left out and the records before it are replayed
+            testbedChanges(journal, artists, 300, 400);
+            journal.close();
+            try (FileChannel channel = FileChannel.open(logPath(directory, journal.logGeneration), StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 3);
+            }
+            journal = open(directory, artists);
+            System.out.println("Test 3: " + (journal.getReplayed() == 99 && sameListings(journal, artists, 0, 399)));
+            //Test 4: replaying stops at a record that fails its checksum
+            testbedChanges(journal, artists, 399, 500);
+            journal.close();
+            corrupt(logPath(directory, journal.logGeneration), 50);
+            journal = open(directory, artists);
+            System.out.println("Test 4: " + (journal.getReplayed() == 50 && sameListings(journal, artists, 0, 449)));
+            //Test 5: changes made while the snapshot of a mapped collection is written are replayed after it
+            testbedChanges(journal, artists, 500, 700);
+            journal.close();
+            journal = open(directory, artists);
+            System.out.println("Test 5: " + (journal.getReplayed() == 200 && sameListings(journal, artists, 0, 449, 500, 700)));
+            journal.close();
+            //Test 6: a snapshot written on top of a catalog maps the same albums
+            journal = open(directory, artists);
+            System.out.println("Test 6: " + (journal.getReplayed() == 0 && sameListings(journal, artists, 0, 449, 500, 700)));
+            journal.close();
+            //Test 7: a concurrent collection loaded from the snapshot lists the same albums
+            journal = open(directory, artists, true);
+            boolean concurrent = journal.getCollection() instanceof ConcurrentCollection;
+            System.out.println("Test 7: " + (concurrent && sameListings(journal, artists, 0, 449, 500, 700)));
+            journal.close();
+            //Test 8: the snapshot opens without its checksum being checked, and verify finds a byte damaged since it was written
+            Path snapshotPath = directory.resolve(SNAPSHOT_FILE);
+            boolean verified = verifies(MappedCatalog.open(snapshotPath));
+            try (FileChannel channel = FileChannel.open(snapshotPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                ByteBuffer last = ByteBuffer.allocate(1);
+                channel.read(last, channel.size() - 1);
+                last.put(0, (byte) (last.get(0) ^ 1));
+                last.rewind();
+                channel.write(last, channel.size() - 1);
+            }
+            System.out.println("Test 8: " + (verified && !verifies(MappedCatalog.open(snapshotPath))));
+        } finally {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Helper method of the testbed that makes a run of changes to the collection of a journal and logs each of them
+     * @param from: the number of the first change
+     * @param to: the number after the last change
+     */
+    private static void testbedChanges(CollectionJournal journal, ArtistRegistry artists, int from, int to){
+        for (int change = from; change < to; change++) {
+            testbedChange(journal.getCollection(), journal, artists, change);
+        }
+    }
+
+    /**
+     * Helper method of the testbed that makes a change to a collection and logs it if a journal is given
+     * The change is worked out from its number alone, so a Collection can be given the changes a journal committed,
+     * and every change is logged as one record, whether or not it changed the collection
+     * The albums are drawn from a few titles and artists in two cases, so albums are often tied or already there
+     * @param collection: the collection to change
+     * @param journal: the journal to log the change to, or null
+     * @param artists: the registry the artists are taken from
+     * @param change: the number of the change
+     */
+    private static void testbedChange(Collection collection, CollectionJournal journal, ArtistRegistry artists, int change){
+        Random random = new Random(change);
+        int number = random.nextInt(120);
+        String title = (random.nextBoolean() ? "title " : "Title ") + number;
+        int artist = random.nextInt(6);
+        String name = (random.nextBoolean() ? "artist " : "Artist ") + artist;
+        Artist by = artists.intern(name, new Date(1950 + artist, 1 + artist, 1 + artist));
+        Genre genre = GENRES[random.nextInt(GENRES.length)];
+        Date released = new Date(1960 + random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28));
+        Album album = new Album(title, by, genre, released, null);
+        int kind = random.nextInt(10);
+        if (kind < 4) {
+            collection.add(album);
+            if (journal != null) {
+                journal.logAdd(album);
+            }
+        } else if (kind < 5) {
+            collection.remove(album);
+            if (journal != null) {
+                journal.logRemove(album);
+            }
+        } else {
+            int star = 1 + random.nextInt(5);
+            collection.rate(album, star);
+            if (journal != null) {
+                journal.logRate(album, star);
+            }
+        }
+    }
+
+    /**
+     * Helper method of the testbed that tells if the collection of a journal lists the same albums as a Collection
+     * given runs of changes
+     * @param runs: the number of the first change and the number after the last change of each run
+     */
+    private static boolean sameListings(CollectionJournal journal, ArtistRegistry artists, int... runs){
+        Collection expected = new Collection();
+        for (int run = 0; run < runs.length; run += 2) {
+            for (int change = runs[run]; change < runs[run + 1]; change++) {
+                testbedChange(expected, null, artists, change);
+            }
+        }
+        return Collection.listings(expected).equals(Collection.listings(journal.getCollection()));
+    }
+
+    /**
+     * Helper method of the testbed that tells if the checksum of a catalog matches
+     */
+    private static boolean verifies(MappedCatalog catalog){
+        try {
+            catalog.verify();
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Helper method of the testbed that flips a bit of the contents of a record of a log
+     * @param log: the log file
+     * @param damaged: the index of the record to damage
+     */
+    private static void corrupt(Path log, int damaged) throws IOException {
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER);
+            long position = 0;
+            for (int record = 0; record < damaged; record++) {
+                header.clear();
+                channel.read(header, position);
+                position += RECORD_HEADER + header.getInt(0);
+            }
+            ByteBuffer contents = ByteBuffer.allocate(1);
+            channel.read(contents, position + RECORD_HEADER);
+            contents.put(0, (byte) (contents.get(0) ^ 1));
+            contents.rewind();
+            channel.write(contents, position + RECORD_HEADER);
+        }
+    }
+
+    /**
+     * The RecordBuffer class which is a byte buffer whose array can be read without copying it
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+        /**
+         * @return the array holding the bytes, the first size() of them are in use
+         */
+        byte[] array(){
+            return buf;
+        }
+
+        /**
+         * Appends an int in big-endian order, the order DataInputStream reads it in
+         * @param value: the int to append
+         */
+        void writeInt(int value){
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+    }
+
+    /**
+     * The Snapshot class which holds the state captured for the writer to save and the generation to save it with
+     */
+    private static final class Snapshot {
+        private final CatalogSnapshot state;
+        private final long generation; //the first log not held by the snapshot
+
+        Snapshot(CatalogSnapshot state, long generation){
+            this.state = state;
+            this.generation = generation;
+        }
+    }
+}
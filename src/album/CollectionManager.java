@@ -1,136 +1,815 @@
 package album;
 /**
 The CollectionManager class which manages the inputs of commands and returns whether it is invalid or not
+Commands are read from the console one at a time with run, or streamed from a file or standard input with runBatch
+With a data directory set, the collection is loaded from it at the start of a run and every change is logged to it by a CollectionJournal
+With runServer the same commands are taken from many clients at once by a CollectionServer, each of its threads runs them through a session,
+a CollectionManager that shares the collection, the artists and the journal of the server and writes to the client being served
 @author Seungjun Bae
  */
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.SocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Scanner;
+import java.util.concurrent.locks.StampedLock;
 public class CollectionManager {
     private static final int A_LENGTH = 6; 
     private static final int D_LENGTH = 4; 
     private static final int R_LENGTH = 5; 
-    private static final int DATE_LENGTH = 3; 
+    private static final int TOP_LENGTH = 2; //fields of PR,k
+    private static final int C_LENGTH = 2; 
+    private static final int S_LENGTH = 2; //fields of S,PD S,PG or S,PR
+    private static final int N_LENGTH = 2; 
+    private static final int QG_LENGTH = 2; //QG,genre, two more fields with a range of release dates
+    private static final int QA_LENGTH = 3; //QA,artist,dob, two more fields with a range of release dates
+    private static final int QD_LENGTH = 3; 
+    private static final int RANGE_LENGTH = 2; //fields of a range of release dates
+    private static final int BATCH_BUFFER_SIZE = 1 << 16; //chars read from a batch file at a time
+    private static final double NANOS_PER_SECOND = 1e9;
+    public static final String STANDARD_INPUT = "-"; //batch path that means standard input
+    private OutputSink out; //buffered output of the current run
+    private final CommandTokenizer tokens = new CommandTokenizer(); //reused for every command line
+    private ArtistRegistry artists; //shared artists of the current run
+    private Path dataDirectory; //where the collection is persisted, null to keep it only in memory
+    private CollectionJournal journal; //log of the changes of the current run, null without a data directory
+    private StampedLock changeLock; //taken by changes while clients are served, shared by ratings and held alone by adds and deletes, null otherwise
+    private AlbumCursor cursor; //listing opened by the C command, null while none is open
+    private boolean paged; //whether full listings are left open for printPage instead of printed whole, for a session of a server
+    private Listing listing; //listing a session of a server is printing a page at a time, null while none is
+    private boolean columnar; //whether an in-memory run keeps its albums in a ColumnarCollection
+    private boolean offHeap; //whether an in-memory run keeps its albums outside the heap, in an OffHeapCollection
+
+    /**
+     * Constructor for the CollectionManager class, the collection is created when a run starts
+     */
+    public CollectionManager(){
+    }
+
+    /**
+     * Constructor for a session of a server, which runs commands on the collection of the server and writes to a sink of its own
+     * @param server The manager running the server.
+     * @param out The sink the responses of the session are written to.
+     */
+    CollectionManager(CollectionManager server, OutputSink out){
+        this.out = out;
+        this.artists = server.artists;
+        this.dataDirectory = server.dataDirectory;
+        this.journal = server.journal;
+        this.changeLock = server.changeLock;
+        this.paged = true;
+    }
+
+    /**
+     * Sets the directory the collection is persisted in, used by the runs started after it is set.
+     *
+     * @param dataDirectory The directory, or null to keep the collection only in memory.
+     */
+    public void setDataDirectory(Path dataDirectory){
+        this.dataDirectory = dataDirectory;
+    }
+
+    /**
+     * Getter method for the data directory.
+     * @return The directory the collection is persisted in, or null.
+     */
+    public Path getDataDirectory(){
+        return dataDirectory;
+    }
+
+    /**
+     * Sets whether the runs started after it keep their albums in columns, with a ColumnarCollection.
+     * Only a console or batch run without a data directory uses it, a server or a journaled collection keeps Album objects.
+     *
+     * @param columnar True to keep the albums in columns.
+     */
+    public void setColumnar(boolean columnar){
+        this.columnar = columnar;
+    }
+
+    /**
+     * Sets whether the runs started after it keep their albums outside the heap, with an OffHeapCollection.
+     * Like setColumnar it is only used by a console or batch run without a data directory, and it wins over setColumnar.
+     *
+     * @param offHeap True to keep the albums outside the heap.
+     */
+    public void setOffHeap(boolean offHeap){
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Creates the collection and artist registry of a run, loading the collection from the data directory if one is set.
+     * What was loaded is reported on standard error.
+     *
+     * @param concurrent True to create a ConcurrentCollection that several threads can use.
+     * @return The collection, or null if the data directory could not be loaded.
+     */
+    private Collection openCollection(boolean concurrent){
+        artists = new ArtistRegistry();
+        journal = null;
+        Collection op;
+        if (dataDirectory == null) {
+            if (concurrent) {
+                op = new ConcurrentCollection();
+            } else if (offHeap) {
+                op = new OffHeapCollection(artists);
+            } else {
+                op = columnar ? new ColumnarCollection(artists) : new Collection();
+            }
+        } else {
+            try {
+                journal = CollectionJournal.open(dataDirectory, artists, concurrent);
+            } catch (IOException e) {
+                out.flush();
+                System.err.printf("Unable to load %s: %s\n", dataDirectory, e.getMessage());
+                return null;
+            }
+            op = journal.getCollection();
+            System.err.printf("Loaded %d albums from %s (%d log records replayed)\n", op.getSize(), dataDirectory, journal.getReplayed());
+        }
+        op.setOutput(out);
+        return op;
+    }
+
+    /**
+     * Commits the changes of the run to the data directory and stops the journal, if there is one.
+     */
+    private void closeCollection(){
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.err.printf("Unable to save %s: %s\n", dataDirectory, e.getMessage());
+        }
+        journal = null;
+    }
+
+    /**
+     * Writes the "title(artist:dob)" part of a command response followed by the rest of the message.
+     * The three parts are copied straight from the command line.
+     *
+     * @param tokens The tokenized command.
+     * @param message The text that follows the album, including the line break.
+     */
+    private void albumMessage(CommandTokenizer tokens, String message){
+        tokens.appendField(1, out);
+        out.append('(');
+        tokens.appendField(2, out);
+        out.append(':');
+        tokens.appendField(3, out);
+        out.append(')').append(message);
+    }
 
     /**
      * Processes the 'add' command, attempting to add a new album to the collection.
-     * Validates command arguments, creates album and artist objects, and adds the album to the collection if it is not already present.
+     * Validates command arguments, creates the album object, and adds the album to the collection if it is not already present.
+     * The artist is taken from the artist registry, so albums by the same artist share one Artist object.
      * 
-     * @param min The array of strings containing command arguments.
+     * @param tokens The tokenized command.
      * @param op The collection to which the album will be added.
      */
-    private void thingA(String[] min, Collection op){
-        if(min.length != A_LENGTH) {
-            System.out.println("Invalid command!");
+    private void thingA(CommandTokenizer tokens, Collection op){
+        if(tokens.fieldCount() != A_LENGTH || tokens.parseDate(3) != CommandTokenizer.OK) {
+            out.println("Invalid command!");
             return;
         }
-        String[] artist = min[3].split("/");
-        String[] release = min[5].split("/");
-        if (artist.length != DATE_LENGTH || release.length != DATE_LENGTH) {
-            System.out.println("Invalid command!");
+        int bornYear = tokens.getYear();
+        int bornMonth = tokens.getMonth();
+        int bornDay = tokens.getDay();
+        if (tokens.parseDate(5) != CommandTokenizer.OK) {
+            out.println("Invalid command!");
             return;
         }
-        Date artistDate = new Date(Integer.parseInt(artist[2]), Integer.parseInt(artist[0]), Integer.parseInt(artist[1]));
-        Date releaseDate = new Date(Integer.parseInt(release[2]), Integer.parseInt(release[0]), Integer.parseInt(release[1]));
-        if (!artistDate.isValid()) {
-            System.out.printf("Artist DOB: %s is invalid.\n", artistDate.toString());
+        Date releaseDate = new Date(tokens.getYear(), tokens.getMonth(), tokens.getDay());
+        //an artist that is already registered was registered with a valid date of birth
+        Artist artist = artists.find(tokens.getChars(), tokens.fieldStart(2), tokens.fieldLength(2), bornYear, bornMonth, bornDay);
+        Date artistDate = artist == null ? new Date(bornYear, bornMonth, bornDay) : artist.getBorn();
+        if (artist == null && !artistDate.isValid()) {
+            out.append("Artist DOB: ").append(artistDate).append(" is invalid.\n");
             return;
         } else if (!releaseDate.isValid()) {
-            System.out.printf("Date Released: %s is invalid.\n", releaseDate.toString());
+            out.append("Date Released: ").append(releaseDate).append(" is invalid.\n");
             return;
         }
-        Album album = new Album(min[1], new Artist(min[2], artistDate), Genre.toGenre(min[4]), releaseDate, null); 
+        if (artist == null) {
+            artist = artists.intern(tokens.field(2), artistDate);
+        }
+        Album album = new Album(tokens.field(1), artist, tokens.parseGenre(4), releaseDate, null); 
         if (op.add(album)) {
-            System.out.printf("%s(%s:%s) added to the collection.\n", min[1], min[2], min[3]);
+            if (journal != null) {
+                journal.logAdd(album);
+            }
+            albumMessage(tokens, " added to the collection.\n");
         } else {
-            System.out.printf("%s(%s:%s) is already in the collection.\n", min[1], min[2], min[3]);
+            albumMessage(tokens, " is already in the collection.\n");
         }
     }
     /**
      * Processes the delete command, attempting to remove an album from the collection.
      * Validates command arguments and removes the specified album if it exists in the collection.
      * 
-     * @param min The array of strings containing command arguments.
+     * @param tokens The tokenized command.
      * @param op The collection from which the album will be removed.
      */
-    private void thingD(String[] min, Collection op) {
-        if (min.length != D_LENGTH) {
-            System.out.println("Invalid command!");
+    private void thingD(CommandTokenizer tokens, Collection op) {
+        if (tokens.fieldCount() != D_LENGTH || tokens.parseDate(3) != CommandTokenizer.OK) {
+            out.println("Invalid command!");
             return;
         }
-        String[] artist = min[3].split("/");
-        if (artist.length != DATE_LENGTH) {
-            System.out.println("Invalid command!");
-            return;
-        }
-        Date artistDate = new Date(Integer.parseInt(artist[2]), Integer.parseInt(artist[0]), Integer.parseInt(artist[1]));
-        Album album = new Album(min[1], new Artist(min[2], artistDate), null, null, null);
+        Date artistDate = new Date(tokens.getYear(), tokens.getMonth(), tokens.getDay());
+        Album album = new Album(tokens.field(1), new Artist(tokens.field(2), artistDate), null, null, null);
         if (op.remove(album)) {
-            System.out.printf("%s(%s:%s) removed from the collection.\n", min[1], min[2], min[3]);
+            if (journal != null) {
+                journal.logRemove(album);
+            }
+            albumMessage(tokens, " removed from the collection.\n");
         } else {
-            System.out.printf("%s(%s:%s) is not in the collection\n", min[1], min[2], min[3]);
+            albumMessage(tokens, " is not in the collection\n");
         }
     }
     /**
      * Processes the rate command, assigning a rating to an existing album in the collection.
      * Validates command arguments and applies the specified rating to the album if it exists.
      * 
-     * @param min The array of strings containing command arguments.
+     * @param tokens The tokenized command.
      * @param op The collection containing the album to be rated.
      */
-    private void thingR(String[] min, Collection op) {
-        if (min.length != R_LENGTH) {
-            System.out.println("Invalid command!");
+    private void thingR(CommandTokenizer tokens, Collection op) {
+        if (tokens.fieldCount() != R_LENGTH || tokens.parseNumber(4) != CommandTokenizer.OK) {
+            out.println("Invalid command!");
             return;
         }
-        int rating = Integer.parseInt(min[4]);
+        int rating = tokens.getNumber();
         if (rating < 1 || rating > 5) {
-            System.out.println("Invalid rating, rating scale is 1 to 5.");
+            out.println("Invalid rating, rating scale is 1 to 5.");
             return;
         }
-        String[] artist = min[3].split("/");
-        if (artist.length != DATE_LENGTH) {
-            System.out.println("Invalid command!");
+        if (tokens.parseDate(3) != CommandTokenizer.OK) {
+            out.println("Invalid command!");
             return;
         }
-        Date artistDate = new Date(Integer.parseInt(artist[2]), Integer.parseInt(artist[0]), Integer.parseInt(artist[1]));
-        Album album = new Album(min[1], new Artist(min[2], artistDate), null, null, null);
-        if (op.contains(album)) {
+        Date artistDate = new Date(tokens.getYear(), tokens.getMonth(), tokens.getDay());
+        Album album = new Album(tokens.field(1), new Artist(tokens.field(2), artistDate), null, null, null);
+        Album found = op.returnAlbum(album);
+        if (found != null) {
             op.rate(album, rating);
-            System.out.printf("You rate %o for %s:%s(%s)\n", rating, min[1], op.returnAlbum(album).getReleased(), min[2]);
+            if (journal != null) {
+                journal.logRate(found, rating);
+            }
+            //ratings are 1 to 5, so the decimal digit is the same as the octal one the message used to be formatted with
+            out.append("You rate ").append(rating).append(" for ");
+            tokens.appendField(1, out);
+            out.append(':').append(found.getReleased()).append('(');
+            tokens.appendField(2, out);
+            out.append(")\n");
         } else {
-            System.out.printf("%s(%s:%s) is not in the collection\n", min[1], min[2], min[3]);
+            albumMessage(tokens, " is not in the collection\n");
+        }
+    }
+    /**
+     * Processes the top rated command, PR,k, printing the k albums with the highest average rating in the order PR lists them.
+     * Validates that k is a whole number of at least 1.
+     *
+     * @param tokens The tokenized command.
+     * @param op The collection to print from.
+     */
+    private void thingTop(CommandTokenizer tokens, Collection op){
+        if (tokens.parseNumber(1) != CommandTokenizer.OK || tokens.getNumber() < 1) {
+            out.println("Invalid command!");
+            return;
+        }
+        printListing(op, SortOrder.RATING, tokens.getNumber());
+    }
+
+    /**
+     * Processes the cursor command, C,PD C,PG or C,PR, opening a listing in that order that is printed a page at a time with N.
+     * The header of the listing is printed right away, and a listing that was open is dropped.
+     *
+     * @param tokens The tokenized command.
+     * @param op The collection to list.
+     */
+    private void thingC(CommandTokenizer tokens, Collection op){
+        SortOrder order = tokens.fieldCount() == C_LENGTH ? parseOrder(tokens) : null;
+        if (order == null) {
+            out.println("Invalid command!");
+            return;
+        }
+        cursor = null;
+        if (op.getSize() == 0) {
+            out.println("Collection is empty!");
+            return;
+        }
+        cursor = op.openCursor(order);
+        out.println(order.getHeader());
+    }
+
+    /**
+     * Processes the sort command, S,PD S,PG or S,PR, sorting the albums the collection stores in that order with its sort engine.
+     * The albums are printed in the order they are then stored, followed by the mode the engine sorted them in.
+     *
+     * @param tokens The tokenized command.
+     * @param op The collection to sort.
+     */
+    private void thingS(CommandTokenizer tokens, Collection op){
+        SortOrder order = tokens.fieldCount() == S_LENGTH ? parseOrder(tokens) : null;
+        if (order == null) {
+            out.println("Invalid command!");
+            return;
+        }
+        if (op.getSize() == 0) {
+            out.println("Collection is empty!");
+            return;
+        }
+        op.sort(order);
+        out.println(order.getHeader());
+        op.displayAlbums(out);
+        out.println("* end of list *");
+        out.println(op.getLastSortMode() == AlbumSorter.Mode.PARALLEL ? "Sorted in parallel." : "Sorted sequentially.");
+    }
+
+    /**
+     * Helper method that reads the order named by the second field of a command, PD, PG or PR.
+     *
+     * @param tokens The tokenized command.
+     * @return The SortOrder, or null if the field names none.
+     */
+    private SortOrder parseOrder(CommandTokenizer tokens){
+        if (tokens.fieldIs(1, "PD")) {
+            return SortOrder.DATE;
+        } else if (tokens.fieldIs(1, "PG")) {
+            return SortOrder.GENRE;
+        } else if (tokens.fieldIs(1, "PR")) {
+            return SortOrder.RATING;
+        }
+        return null;
+    }
+
+    /**
+     * Processes the next command, N,n, printing the next n albums of the open listing.
+     * Once the listing has been printed to its end its footer is printed and it is closed.
+     *
+     * @param tokens The tokenized command.
+     */
+    private void thingN(CommandTokenizer tokens){
+        if (tokens.fieldCount() != N_LENGTH || tokens.parseNumber(1) != CommandTokenizer.OK || tokens.getNumber() < 1) {
+            out.println("Invalid command!");
+            return;
+        }
+        if (cursor == null) {
+            out.println("No listing is open.");
+            return;
+        }
+        if (paged) {
+            listing = new Listing(cursor, tokens.getNumber(), true);
+            return;
+        }
+        cursor.next(tokens.getNumber(), out);
+        if (cursor.isDone()) {
+            out.println("* end of list *");
+            cursor = null;
+        }
+    }
+
+    /**
+     * Processes the genre query command, QG,genre or QG,genre,from,to, listing the albums of a genre by release date,
+     * only those released from one date to another if the dates are given.
+     *
+     * @param tokens The tokenized command.
+     * @param op The collection to query.
+     */
+    private void thingQG(CommandTokenizer tokens, Collection op){
+        AlbumQuery query = ranged(tokens, QG_LENGTH, AlbumQuery.ofGenre(tokens.parseGenre(1)));
+        if (query != null) {
+            printListing(op, query);
+        }
+    }
+
+    /**
+     * Processes the artist query command, QA,artist,dob or QA,artist,dob,from,to, listing the albums of an artist by release date,
+     * only those released from one date to another if the dates are given.
+     *
+     * @param tokens The tokenized command.
+     * @param op The collection to query.
+     */
+    private void thingQA(CommandTokenizer tokens, Collection op){
+        if (tokens.fieldCount() < QA_LENGTH || tokens.parseDate(2) != CommandTokenizer.OK) {
+            out.println("Invalid command!");
+            return;
+        }
+        Artist artist = new Artist(tokens.field(1), new Date(tokens.getYear(), tokens.getMonth(), tokens.getDay()));
+        AlbumQuery query = ranged(tokens, QA_LENGTH, AlbumQuery.ofArtist(artist));
+        if (query != null) {
+            printListing(op, query);
+        }
+    }
+
+    /**
+     * Processes the release date query command, QD,from,to, listing every album released from one date to another by release date.
+     *
+     * @param tokens The tokenized command.
+     * @param op The collection to query.
+     */
+    private void thingQD(CommandTokenizer tokens, Collection op){
+        if (tokens.fieldCount() != QD_LENGTH) {
+            out.println("Invalid command!");
+            return;
+        }
+        AlbumQuery query = ranged(tokens, QD_LENGTH - RANGE_LENGTH, null);
+        if (query != null) {
+            printListing(op, query);
+        }
+    }
+
+    /**
+     * Helper method of the query commands that reads the optional range of release dates after the fixed fields.
+     * A date that does not exist is answered the way A answers one, and a range that ends before it starts with Invalid command!
+     *
+     * @param tokens The tokenized command.
+     * @param fixed The number of fields before the range.
+     * @param query The query without a range, or null for a query of the range alone.
+     * @return The query, with the range if the command has one, or null if the command was answered with an error.
+     */
+    private AlbumQuery ranged(CommandTokenizer tokens, int fixed, AlbumQuery query){
+        if (tokens.fieldCount() == fixed) {
+            return query;
+        }
+        if (tokens.fieldCount() != fixed + RANGE_LENGTH || tokens.parseDate(fixed) != CommandTokenizer.OK) {
+            out.println("Invalid command!");
+            return null;
+        }
+        Date from = new Date(tokens.getYear(), tokens.getMonth(), tokens.getDay());
+        if (tokens.parseDate(fixed + 1) != CommandTokenizer.OK) {
+            out.println("Invalid command!");
+            return null;
+        }
+        Date to = new Date(tokens.getYear(), tokens.getMonth(), tokens.getDay());
+        if (!from.isValid()) {
+            out.append("Released From: ").append(from).append(" is invalid.\n");
+            return null;
+        } else if (!to.isValid()) {
+            out.append("Released To: ").append(to).append(" is invalid.\n");
+            return null;
+        } else if (from.compareTo(to) > 0) {
+            out.println("Invalid command!");
+            return null;
+        }
+        return query == null ? AlbumQuery.releasedBetween(from, to) : query.released(from, to);
+    }
+
+    /**
+     * Helper method that prints the albums in an order, or for a session of a server prints the header and leaves the listing
+     * open for printPage, so a long listing is printed as the client reads it.
+     *
+     * @param op The collection to print.
+     * @param order The ordering to print in.
+     * @param limit The most albums to print, Collection.ALL for every album.
+     */
+    private void printListing(Collection op, SortOrder order, int limit){
+        if (!paged) {
+            op.print(order, limit, out);
+            return;
+        }
+        if (op.getSize() == 0) {
+            out.println("Collection is empty!");
+            return;
+        }
+        out.println(order.getHeader());
+        listing = new Listing(op.openCursor(order), limit, false);
+    }
+
+    /**
+     * Helper method that prints the albums that match a query, or for a session of a server prints the header and leaves the listing
+     * open for printPage.
+     *
+     * @param op The collection to query.
+     * @param query The query.
+     */
+    private void printListing(Collection op, AlbumQuery query){
+        if (!paged) {
+            op.print(query, out);
+            return;
+        }
+        if (op.getSize() == 0) {
+            out.println("Collection is empty!");
+            return;
+        }
+        out.println(query.getHeader());
+        listing = new Listing(op.openCursor(query), Collection.ALL, false);
+    }
+
+    /**
+     * Prints the next page of the listing a session of a server left open, and its footer once it has been printed to its end.
+     * A listing opened by C and paged by N stays open for the next N when N's count runs out before its end.
+     *
+     * @param count The most albums to print.
+     * @return True if the listing is still open.
+     */
+    boolean printPage(int count){
+        listing.left -= listing.cursor.next(Math.min(count, listing.left), out);
+        boolean done = listing.cursor.isDone();
+        if (done || listing.left == 0) {
+            if (done || !listing.opened) {
+                out.println("* end of list *");
+            }
+            if (done && listing.opened) {
+                cursor = null;
+            }
+            listing = null;
+        }
+        return listing != null;
+    }
+
+    /**
+     * Getter method for the listing being printed a page at a time, used by a server to keep one for each client its session serves.
+     * @return The listing, or null.
+     */
+    Listing getListing(){
+        return listing;
+    }
+
+    /**
+     * Setter method for the listing being printed a page at a time.
+     * @param listing The listing, or null.
+     */
+    void setListing(Listing listing){
+        this.listing = listing;
+    }
+
+    /**
+     * Getter method for the open listing, used by a server to keep one listing for each client its session serves.
+     * @return The cursor of the listing, or null.
+     */
+    AlbumCursor getCursor(){
+        return cursor;
+    }
+
+    /**
+     * Setter method for the open listing.
+     * @param cursor The cursor of the listing, or null.
+     */
+    void setCursor(AlbumCursor cursor){
+        this.cursor = cursor;
+    }
+
+    /**
+     * Helper method that starts an add, delete or sort while clients are served, so no other change is made until endChange.
+     * The artist registry is only used by one thread at a time,
+     * and an album is never added or removed between a rating of it and the record of that rating.
+     *
+     * @return The stamp to pass to endChange, 0 if no lock was taken.
+     */
+    private long startChange(){
+        return changeLock == null ? 0 : changeLock.writeLock();
+    }
+
+    /**
+     * Helper method that ends a change started by startChange.
+     *
+     * @param stamp The stamp returned by startChange.
+     */
+    private void endChange(long stamp){
+        if (stamp != 0) {
+            changeLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Helper method that starts a rating while clients are served, ratings run alongside each other and wait only for adds and deletes.
+     * The collection rates an album from any number of threads at once and the journal logs from them,
+     * so only adds, deletes and snapshots need the change lock alone.
+     *
+     * @return The stamp to pass to endRating, 0 if no lock was taken.
+     */
+    private long startRating(){
+        return changeLock == null ? 0 : changeLock.readLock();
+    }
+
+    /**
+     * Helper method that ends a rating started by startRating.
+     *
+     * @param stamp The stamp returned by startRating.
+     */
+    private void endRating(long stamp){
+        if (stamp != 0) {
+            changeLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Helper method that takes a snapshot of the collection once enough changes have been logged.
+     * The change lock is held alone while the collection is captured, so no rating is between the collection and the log.
+     */
+    private void snapshotIfDue(){
+        if (journal == null || !journal.isSnapshotDue()) {
+            return;
         }
+        long stamp = startChange();
+        try {
+            journal.snapshotIfDue();
+        } finally {
+            endChange(stamp);
+        }
+    }
+
+    /**
+     * Interprets one tokenized command line and calls the corresponding method to handle it
+     * The command code is matched against the first field without creating a String for it.
+     * @param tokens The tokenized command line.
+     * @param op The collection the command is applied to.
+     * @return false if the line was the quit command, true otherwise.
+     */
+    private boolean execute(CommandTokenizer tokens, Collection op){
+        if(tokens.fieldCount() == 0){
+            out.println("Invalid command!");
+        }else if(tokens.fieldIs(0, "A") || tokens.fieldIs(0, "D")){
+            long stamp = startChange();
+            try {
+                if(tokens.fieldIs(0, "A")){
+                    thingA(tokens, op);
+                }else{
+                    thingD(tokens, op);
+                }
+            } finally {
+                endChange(stamp);
+            }
+            snapshotIfDue();
+        }else if(tokens.fieldIs(0, "S")){
+            long stamp = startChange();
+            try {
+                thingS(tokens, op);
+            } finally {
+                endChange(stamp);
+            }
+        }else if(tokens.fieldIs(0, "R")){
+            long stamp = startRating();
+            try {
+                thingR(tokens, op);
+            } finally {
+                endRating(stamp);
+            }
+            snapshotIfDue();
+        }else if(tokens.fieldIs(0, "PD")){
+            printListing(op, SortOrder.DATE, Collection.ALL);
+        }else if(tokens.fieldIs(0, "PG")){
+            printListing(op, SortOrder.GENRE, Collection.ALL);
+        }else if(tokens.fieldIs(0, "PR") && tokens.fieldCount() == TOP_LENGTH){
+            thingTop(tokens, op);
+        }else if(tokens.fieldIs(0, "PR")){
+            printListing(op, SortOrder.RATING, Collection.ALL);
+        }else if(tokens.fieldIs(0, "QG") && tokens.fieldCount() >= QG_LENGTH){
+            thingQG(tokens, op);
+        }else if(tokens.fieldIs(0, "QA")){
+            thingQA(tokens, op);
+        }else if(tokens.fieldIs(0, "QD")){
+            thingQD(tokens, op);
+        }else if(tokens.fieldIs(0, "C")){
+            thingC(tokens, op);
+        }else if(tokens.fieldIs(0, "N")){
+            thingN(tokens);
+        }else if(tokens.fieldIs(0, "Q")){
+            out.println("Collection Manager terminated.");
+            return false;
+        }else{
+            out.println("Invalid command!");
+        }
+        return true;
+    }
+
+    /**
+     * Runs one command line of a session, the response is left in the sink of the session.
+     *
+     * @param line The buffer holding the line.
+     * @param from The index of the first char of the line.
+     * @param to The index after the last char of the line.
+     * @param op The collection the command is applied to.
+     * @return false if the line was the quit command, true otherwise.
+     */
+    boolean execute(char[] line, int from, int to, Collection op){
+        tokens.reset(line, from, to);
+        return execute(tokens, op);
     }
+
     /**
      * Starts the collection manager, accepting and processing commands from the console until the quit command is received.
      * Continuously reads lines from the console, interprets them as commands, and calls the corresponding method to handle each command.
+     * The manager also stops when the console reaches the end of its input.
      */
     public void run(){
-        System.out.println("Collection Manager is up running.");
+        out = new OutputSink(System.out);
+        out.println("Collection Manager is up running.");
+        out.flush();
+        Collection op = openCollection(false);
+        if (op == null) {
+            return;
+        }
         Scanner sc = new Scanner(System.in);
-        Collection op = new Collection();
-        while(true){
-            String line = sc.nextLine();
-            String[] min = line.split(",");
-            String command = min[0];
-            if(command.compareTo("A") == 0){
-                thingA(min, op);
-            }else if(command.compareTo("D") == 0){
-                thingD(min, op);
-            }else if(command.compareTo("R") == 0){
-                thingR(min, op);
-            }else if(command.compareTo("PD") == 0){
-                op.printByDate();
-            }else if(command.compareTo("PG") == 0){
-                op.printByGenre();
-            }else if(command.compareTo("PR") == 0){
-                op.printByRating();
-            }else if(command.compareTo("Q") == 0){
-                System.out.println("Collection Manager terminated.");
+        while(sc.hasNextLine()){
+            tokens.reset(sc.nextLine());
+            boolean running = execute(tokens, op);
+            out.flush();
+            if(!running){
+                closeCollection();
                 System.exit(0);
-            }else{
-                System.out.println("Invalid command!");
             }
         }
+        closeCollection();
+    }
+
+    /**
+     * Runs the collection manager over a file of commands, or standard input, until the quit command or the end of the input.
+     * The input is read through a large buffer that the commands are tokenized in place, and the output is the same as if the commands were typed into run.
+     * The output is buffered across commands and only written when the buffer fills up or the batch ends.
+     * When the input ends, the number of commands and the throughput are reported on standard error.
+     *
+     * @param path The path of the command file, or STANDARD_INPUT to read standard input.
+     */
+    public void runBatch(String path){
+        out = new OutputSink(System.out);
+        out.println("Collection Manager is up running.");
+        Collection op = openCollection(false);
+        if (op == null) {
+            return;
+        }
+        long commands = 0;
+        long start = System.nanoTime();
+        try (InputStream in = STANDARD_INPUT.equals(path) ? System.in : new FileInputStream(path);
+             Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            CommandReader lines = new CommandReader(reader, BATCH_BUFFER_SIZE);
+            while(lines.nextLine()){
+                commands++;
+                tokens.reset(lines.getBuffer(), lines.getLineStart(), lines.getLineEnd());
+                if(!execute(tokens, op)){
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            out.flush();
+            System.err.printf("Unable to read %s: %s\n", path, e.getMessage());
+        }
+        out.flush();
+        closeCollection();
+        double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+        System.err.printf("Processed %d commands in %.3f s (%.0f commands/s)\n", commands, seconds, commands / seconds);
+    }
+
+    /**
+     * Serves the collection to clients connecting to an address until the process is stopped.
+     * Every client sends the same commands as the console and gets the same responses, a client that sends Q is disconnected.
+     * Adds, deletes and sorts are made one at a time, ratings run alongside each other and so do prints.
+     * With a data directory the collection is read into memory instead of being mapped, and the journal is closed when the process stops.
+     *
+     * @param address The address to listen on, an InetSocketAddress or a UnixDomainSocketAddress.
+     */
+    public void runServer(SocketAddress address){
+        out = new OutputSink(System.out);
+        changeLock = new StampedLock();
+        Collection op = openCollection(true);
+        if (op == null) {
+            return;
+        }
+        CollectionServer server;
+        try {
+            server = CollectionServer.open(this, op, address, CollectionServer.DEFAULT_LOOPS);
+        } catch (IOException e) {
+            System.err.printf("Unable to serve on %s: %s\n", address, e.getMessage());
+            closeCollection();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            } catch (IOException e) {
+                System.err.printf("Unable to close %s: %s\n", address, e.getMessage());
+            }
+            changeLock.writeLock(); //kept, no change may be made after the journal is closed
+            closeCollection();
+        }));
+        System.err.printf("Serving %d albums on %s\n", op.getSize(), address);
+        try {
+            server.run();
+        } catch (IOException e) {
+            System.err.printf("Unable to serve on %s: %s\n", address, e.getMessage());
+        }
+    }
+
+    /**
+     * The Listing class which holds a listing a session of a server is printing a page at a time: its cursor and how many albums it may still print
+     */
+    static final class Listing {
+        private final AlbumCursor cursor;
+        private int left; //albums the listing may still print
+        private final boolean opened; //the listing is the one opened by C, which has no footer until it is printed to its end
+
+        private Listing(AlbumCursor cursor, int left, boolean opened){
+            this.cursor = cursor;
+            this.left = left;
+            this.opened = opened;
+        }
     }
-    
 }
@@ -0,0 +1,455 @@
+package album;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+/**
+ * The CollectionServer class which serves the command protocol of the CollectionManager to many clients at once
+ * Clients connect over TCP or a Unix domain socket and send the same lines as the console, in UTF-8, and read the same responses
+ * The connections are non-blocking and shared out over a few event loops, one thread each with its own Selector,
+ * so a connection costs a small input buffer and no thread of its own, and tens of thousands of clients can be connected at once
+ * A client can pipeline: every complete line it has sent is run in order and the responses are written back in the same order
+ * A listing command prints its header and leaves the listing open, and the loop prints it LISTING_PAGE albums at a time through an AlbumCursor
+ * A loop stops running the lines and pages of a client once MAX_PENDING_OUTPUT bytes of responses are waiting for it to read them,
+ * stops reading from it until they are written, and goes on to its other connections between rounds,
+ * so a client that does not read cannot make the server buffer much past MAX_PENDING_OUTPUT and a long listing does not hold up the loop
+ * The one response that is not paged is the one to S, which prints every album in the order the collection stores them
+ * Every loop runs the commands through one session, a CollectionManager whose sink writes to the connection being served,
+ * and each connection keeps its own cursor and paged listing, which are handed to the session while its lines run
+ * The collection must be one that several threads can use, such as a ConcurrentCollection
+ * @author Seungjun Bae
+ */
+public class CollectionServer implements Closeable {
+    public static final int DEFAULT_LOOPS = Runtime.getRuntime().availableProcessors();
+    private static final int BACKLOG = 1 << 12; //connections waiting to be accepted
+    private static final int READ_BUFFER_SIZE = 1 << 12; //bytes each connection reads at a time
+    private static final int MAX_LINE = 1 << 16; //bytes a line may take, a client sending a longer one is disconnected
+    private static final int MAX_PENDING_OUTPUT = 1 << 20; //bytes of responses waiting before a client's lines stop running
+    private static final int LISTING_PAGE = 1 << 8; //albums of an open listing printed at a time
+    private static final int SESSION_FLUSH_THRESHOLD = 1 << 13; //chars a session buffers before writing them to the connection
+    private final ServerSocketChannel server;
+    private final SocketAddress address;
+    private final EventLoop[] loops;
+
+    /**
+     * Constructor for the CollectionServer class which starts the event loops
+     * @param manager: the manager whose collection, artists and journal the sessions share
+     * @param collection: the collection the commands are applied to
+     * @param server: the bound server channel
+     * @param address: the address the server channel is bound to
+     * @param loops: how many event loops to start
+     */
+    private CollectionServer(CollectionManager manager, Collection collection, ServerSocketChannel server, SocketAddress address, int loops) throws IOException {
+        this.server = server;
+        this.address = address;
+        this.loops = new EventLoop[loops];
+        for (int i = 0; i < loops; i++) {
+            this.loops[i] = new EventLoop(manager, collection, "collection-server-" + i);
+        }
+    }
+
+    /**
+     * Binds a server to an address and starts its event loops, connections are accepted once run is called
+     * @param manager: the manager whose collection, artists and journal the sessions share
+     * @param collection: the collection the commands are applied to, which several threads must be able to use
+     * @param address: an InetSocketAddress, or a UnixDomainSocketAddress whose file must not exist yet
+     * @param loops: how many event loops to start, at least one
+     * @return the server
+     * @throws IOException if the address cannot be bound
+     */
+    public static CollectionServer open(CollectionManager manager, Collection collection, SocketAddress address, int loops) throws IOException {
+        ServerSocketChannel server = address instanceof UnixDomainSocketAddress
+                ? ServerSocketChannel.open(StandardProtocolFamily.UNIX) : ServerSocketChannel.open();
+        try {
+            server.bind(address, BACKLOG);
+            return new CollectionServer(manager, collection, server, address, Math.max(loops, 1));
+        } catch (IOException e) {
+            server.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Accepts connections on the calling thread and hands them to the event loops in turn, until the server is closed
+     * @throws IOException if accepting fails for a reason other than the server being closed
+     */
+    public void run() throws IOException {
+        int next = 0;
+        while (true) {
+            SocketChannel channel;
+            try {
+                channel = server.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            }
+            if (channel.supportedOptions().contains(StandardSocketOptions.TCP_NODELAY)) {
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            }
+            channel.configureBlocking(false);
+            loops[next].hand(channel);
+            next = (next + 1) % loops.length;
+        }
+    }
+
+    /**
+     * Stops accepting, disconnects every client and stops the event loops, the socket file of a Unix domain socket is deleted
+     * @throws IOException if the server channel or the socket file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        for (EventLoop loop : loops) {
+            loop.stop();
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    /**
+     * The Connection class which holds the state of one client: the bytes it sent that are not run yet and the responses not yet written
+     */
+    private static final class Connection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE); //bytes read and not yet run, from 0 to its position
+        private byte[] out; //responses not yet written, from outStart to outEnd, null while there are none
+        private int outStart;
+        private int outEnd;
+        private boolean skipLineFeed; //the last line ended at \r, so a \n right after it is part of the same line break
+        private boolean endOfInput;
+        private boolean quit;
+        private AlbumCursor cursor; //the listing the client opened with C, handed to the session while its lines run
+        private CollectionManager.Listing listing; //the listing being printed a page at a time, null while none is
+
+        private Connection(SocketChannel channel){
+            this.channel = channel;
+        }
+
+        /**
+         * @return how many bytes of responses are waiting to be written
+         */
+        private int pendingOutput(){
+            return outEnd - outStart;
+        }
+
+        /**
+         * Adds bytes to the responses waiting to be written, moving or growing the buffer when they do not fit
+         */
+        private void queue(byte[] bytes, int offset, int length){
+            if (out == null) {
+                out = new byte[Math.max(length, READ_BUFFER_SIZE)];
+            } else if (outEnd + length > out.length) {
+                int pending = pendingOutput();
+                byte[] target = pending + length > out.length ? new byte[Math.max(pending + length, out.length * 2)] : out;
+                System.arraycopy(out, outStart, target, 0, pending);
+                out = target;
+                outStart = 0;
+                outEnd = pending;
+            }
+            System.arraycopy(bytes, offset, out, outEnd, length);
+            outEnd += length;
+        }
+    }
+
+    /**
+     * The EventLoop class which serves the connections handed to it on a thread of its own
+     */
+    private static final class EventLoop implements Runnable {
+        private final Collection collection;
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<SocketChannel> handed = new ConcurrentLinkedQueue<>();
+        private final OutputSink sink;
+        private final CollectionManager session;
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final Thread thread;
+        private char[] line = new char[READ_BUFFER_SIZE]; //the line being run, decoded
+        private Connection current; //the connection the sink writes to
+        private volatile boolean stopped;
+
+        /**
+         * Constructor for the EventLoop class which opens its selector and starts its thread
+         * @param manager: the manager whose collection, artists and journal the session shares
+         * @param collection: the collection the commands are applied to
+         * @param name: the name of the thread
+         */
+        private EventLoop(CollectionManager manager, Collection collection, String name) throws IOException {
+            this.collection = collection;
+            this.selector = Selector.open();
+            OutputStream toCurrent = new OutputStream() {
+                @Override
+                public void write(int b) {
+                    current.queue(new byte[] {(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] bytes, int offset, int length) {
+                    current.queue(bytes, offset, length);
+                }
+            };
+            this.sink = new OutputSink(new PrintStream(toCurrent, false, StandardCharsets.UTF_8), SESSION_FLUSH_THRESHOLD);
+            this.session = new CollectionManager(manager, sink);
+            this.thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Hands a connection to the loop, it is registered by the loop's own thread
+         * @param channel: a connected channel in non-blocking mode
+         */
+        private void hand(SocketChannel channel){
+            handed.add(channel);
+            selector.wakeup();
+        }
+
+        /**
+         * Stops the loop, which disconnects its clients
+         */
+        private void stop(){
+            stopped = true;
+            selector.wakeup();
+        }
+
+        /**
+         * Waits for connections to become readable or writable and serves them until the loop is stopped
+         */
+        @Override
+        public void run(){
+            try {
+                while (!stopped) {
+                    selector.select();
+                    for (SocketChannel channel; (channel = handed.poll()) != null; ) {
+                        accept(channel);
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (key.isValid()) {
+                            Connection connection = (Connection) key.attachment();
+                            try {
+                                serve(connection, key.isReadable());
+                            } catch (IOException e) {
+                                disconnect(connection);
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.printf("%s stopped: %s\n", thread.getName(), e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    disconnect((Connection) key.attachment());
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    //the loop is stopping anyway
+                }
+            }
+        }
+
+        /**
+         * Helper method that registers a new connection and greets the client the way the console run does
+         */
+        private void accept(SocketChannel channel){
+            Connection connection = new Connection(channel);
+            try {
+                connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                current = connection;
+                sink.println("Collection Manager is up running.");
+                sink.flush();
+                current = null;
+                serve(connection, false);
+            } catch (IOException e) {
+                disconnect(connection);
+            }
+        }
+
+        /**
+         * Helper method that reads what a client sent if it is readable, runs its complete lines and writes the responses
+         * Lines and pages of listings run until the responses waiting pass MAX_PENDING_OUTPUT, and run again once the client has read them
+         * The connection then waits to be writable while responses are waiting or more can run, and to be readable otherwise
+         * @param connection: the connection to serve
+         * @param readable: true if the channel is ready to be read
+         * @throws IOException if the channel fails, the caller disconnects the client
+         */
+        private void serve(Connection connection, boolean readable) throws IOException {
+            if (readable && !connection.endOfInput) {
+                if (!connection.in.hasRemaining()) {
+                    if (connection.in.capacity() >= MAX_LINE) {
+                        disconnect(connection); //a line this long is not a command
+                        return;
+                    }
+                    ByteBuffer larger = ByteBuffer.allocate(connection.in.capacity() * 2);
+                    connection.in.flip();
+                    larger.put(connection.in);
+                    connection.in = larger;
+                }
+                if (connection.channel.read(connection.in) < 0) {
+                    connection.endOfInput = true;
+                }
+            }
+            boolean more = runLines(connection);
+            write(connection);
+            if (connection.pendingOutput() > 0 || more) {
+                connection.key.interestOps(SelectionKey.OP_WRITE);
+            } else if (connection.quit || connection.endOfInput) {
+                disconnect(connection);
+            } else {
+                connection.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        /**
+         * Helper method that runs the complete lines a client has sent, in order, keeping the rest for when more arrives
+         * A line that opens a listing is followed by its pages before the next line runs
+         * Lines end at \n, \r or \r\n, and at the end of the input the last line needs no line break
+         * @param connection: the connection whose lines to run
+         * @return true if lines stopped running because too many responses are waiting, false if every complete line ran
+         */
+        private boolean runLines(Connection connection){
+            byte[] bytes = connection.in.array();
+            int limit = connection.in.position();
+            int position = 0;
+            boolean full = false;
+            while (!connection.quit) {
+                if (connection.pendingOutput() >= MAX_PENDING_OUTPUT) {
+                    full = true;
+                    break;
+                }
+                if (connection.listing != null) {
+                    runPage(connection);
+                    continue;
+                }
+                if (connection.skipLineFeed && position < limit) {
+                    if (bytes[position] == '\n') {
+                        position++;
+                    }
+                    connection.skipLineFeed = false;
+                }
+                int end = position;
+                while (end < limit && bytes[end] != '\n' && bytes[end] != '\r') {
+                    end++;
+                }
+                if (end < limit) {
+                    connection.skipLineFeed = bytes[end] == '\r';
+                    runLine(connection, bytes, position, end);
+                    position = end + 1;
+                } else if (connection.endOfInput && position < limit) {
+                    runLine(connection, bytes, position, limit);
+                    position = limit;
+                } else {
+                    break;
+                }
+            }
+            System.arraycopy(bytes, position, bytes, 0, limit - position);
+            connection.in.position(limit - position);
+            return full;
+        }
+
+        /**
+         * Helper method that decodes one line and runs it through the session, the response is queued on the connection
+         */
+        private void runLine(Connection connection, byte[] bytes, int from, int to){
+            if (line.length < to - from) {
+                line = new char[Math.max(to - from, line.length * 2)];
+            }
+            //a UTF-8 line never decodes to more chars than it has bytes, so the decoder cannot run out of room
+            CharBuffer chars = CharBuffer.wrap(line);
+            decoder.reset();
+            decoder.decode(ByteBuffer.wrap(bytes, from, to - from), chars, true);
+            decoder.flush(chars);
+            enter(connection);
+            try {
+                connection.quit = !session.execute(line, 0, chars.position(), collection);
+                sink.flush();
+            } finally {
+                leave(connection);
+            }
+        }
+
+        /**
+         * Helper method that prints the next page of the listing a client has open, the page is queued on the connection
+         */
+        private void runPage(Connection connection){
+            enter(connection);
+            try {
+                session.printPage(LISTING_PAGE);
+                sink.flush();
+            } finally {
+                leave(connection);
+            }
+        }
+
+        /**
+         * Helper method that hands the session the connection to write to and the listings the client has open
+         */
+        private void enter(Connection connection){
+            current = connection;
+            session.setCursor(connection.cursor);
+            session.setListing(connection.listing);
+        }
+
+        /**
+         * Helper method that takes the listings back from the session once a line or page has run
+         */
+        private void leave(Connection connection){
+            connection.cursor = session.getCursor();
+            connection.listing = session.getListing();
+            session.setCursor(null);
+            session.setListing(null);
+            current = null;
+        }
+
+        /**
+         * Helper method that writes as many waiting responses as the channel takes without blocking
+         */
+        private void write(Connection connection) throws IOException {
+            if (connection.pendingOutput() == 0) {
+                return;
+            }
+            connection.outStart += connection.channel.write(ByteBuffer.wrap(connection.out, connection.outStart, connection.pendingOutput()));
+            if (connection.pendingOutput() > 0) {
+                return;
+            }
+            //a large buffer left by a long listing is dropped instead of kept for the life of the connection
+            connection.out = connection.out.length > READ_BUFFER_SIZE ? null : connection.out;
+            connection.outStart = 0;
+            connection.outEnd = 0;
+        }
+
+        /**
+         * Helper method that closes a connection and stops watching it
+         */
+        private void disconnect(Connection connection){
+            if (connection.key != null) {
+                connection.key.cancel();
+            }
+            try {
+                connection.channel.close();
+            } catch (IOException e) {
+                //the client is gone either way
+            }
+        }
+    }
+}
@@ -0,0 +1,1105 @@
+package album;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntBinaryOperator;
+/**
+ * The ColumnarCollection class which is a Collection that keeps its albums in columns instead of Album objects
+ * The fields of the albums are held by AlbumColumns, each field in an array of its own indexed by slot: the packed release date
+ * and artist birthdate, the genre ordinal, the title and artist name as ids of a StringDictionary, and the star counts,
+ * rating sum and rating count, so listings and queries read contiguous arrays of primitives
+ * Albums are found by an open addressing hash table of slots, which compares the dictionary keys of the title and artist name
+ * and the birthdate, so two albums equal ignoring case are told apart with three int comparisons and no case folding
+ * Album objects are only created as views, for returnAlbum, getAlbums, capture and the bookmarks of cursors,
+ * and changing a view does not change the collection
+ * Each SortOrder keeps the slots in that order, sorted by a merge sort that compares ranks worked out once for every title,
+ * artist name and genre, so two slots are compared with a few int comparisons
+ * The slots added or rated since an order was sorted are sorted on their own and merged into it the next time it is read,
+ * so a listing after a few changes takes linear time
+ * Ties are broken by the order the albums were added, the same as the sorted views of Collection, so every listing matches it
+ * Removing an album leaves a tombstone the same way Collection does, and the columns are compacted once the share of
+ * tombstones passes the compaction threshold
+ * When the columns are compacted, the strings no album uses any more are dropped from the dictionary once their share
+ * of it passes the compaction threshold as well
+ * OffHeapCollection is a ColumnarCollection with its columns, strings and table outside the heap
+ @author Rohan Sharma
+ */
+public class ColumnarCollection extends Collection {
+    private static final int EQUAL = 0;
+    private static final int BEFORE = -1;
+    private static final int AFTER = 1;
+    private static final int INSERTION_SORT_SIZE = 16; //runs of the merge sort this short are sorted by insertion
+    private static final long TOMBSTONE = -1; //sequence of a slot whose album was removed
+    private static final int EMPTY_SLOT = 0; //table slots hold a slot plus one
+    private static final int HASH_MULTIPLIER = 31;
+    private static final Genre[] GENRES = Genre.values();
+    //fields of the columns that hold ids of the dictionary
+    private static final int[] STRING_FIELDS = {AlbumColumns.TITLE, AlbumColumns.NAME, AlbumColumns.TITLE_KEY, AlbumColumns.NAME_KEY};
+    private static final int[] GENRE_RANKS = genreRanks(); //place of each genre by ordinal in the order genreCompare puts them
+    private final ArtistRegistry registry; //registry the artists of views are taken from
+    private final AlbumColumns columns; //fields of the album in each slot
+    private final StringDictionary strings; //titles and artist names
+    private IntBuffer table; //slots by the hash of their album's identity, at least twice as many table slots as albums
+    private int size; //number of albums in the collection
+    private int end; //number of slots used, albums and tombstones
+    private long nextSequence;
+    private final int[][] orders; //slots of the albums in each order by ordinal, the first ordered[ordinal] of each array
+    private final int[] ordered; //number of slots in each order when it was last brought up to date
+    private int[] spareOrder; //array the next merge of an order is written to, the array it replaces becomes the spare
+    private int[] changedSlots; //reused by orderOf for the slots changed since an order was sorted
+    private int[] sortBuffer; //reused by orderOf to sort the changed slots
+    private final BitSet[] changed; //slots added, or rated for the rating order, since each order was sorted
+    private final boolean[] stale; //whether each order has to be brought up to date before it is read
+    private int[] titleRanks; //place of each string of the dictionary as a title, equal titles share a place
+    private int[] titleOrder; //ids of the strings ranked as titles, in title order
+    private int[] nameRanks; //place of each string of the dictionary as an artist name
+    private int[] nameOrder; //ids of the strings ranked as artist names, in name order
+    private final RatingStats slotStats; //reused to write the rating of a slot
+    private AlbumSorter.Mode lastSortMode;
+
+    /**
+     * Constructor for the ColumnarCollection class, empty with the default capacity and its columns on the heap
+     * @param registry: the registry the artists of views are taken from
+     */
+    public ColumnarCollection(ArtistRegistry registry){
+        this(registry, new AlbumColumns(INITIAL_CAPACITY), new StringDictionary());
+    }
+
+    /**
+     * Constructor for a ColumnarCollection that keeps its albums in the columns and dictionary given
+     * @param registry: the registry the artists of views are taken from
+     * @param columns: empty columns
+     * @param strings: an empty dictionary
+     */
+    ColumnarCollection(ArtistRegistry registry, AlbumColumns columns, StringDictionary strings){
+        super();
+        this.registry = registry;
+        this.columns = columns;
+        this.strings = strings;
+        this.table = columns.newTable(INITIAL_CAPACITY * 2);
+        int orderCount = SortOrder.values().length;
+        this.orders = new int[orderCount][];
+        this.ordered = new int[orderCount];
+        this.changed = new BitSet[orderCount];
+        this.stale = new boolean[orderCount];
+        for (int order = 0; order < orderCount; order++) {
+            orders[order] = new int[0];
+            changed[order] = new BitSet();
+        }
+        this.spareOrder = new int[0];
+        this.changedSlots = new int[0];
+        this.sortBuffer = new int[0];
+        this.titleRanks = new int[0];
+        this.titleOrder = new int[0];
+        this.nameRanks = new int[0];
+        this.nameOrder = new int[0];
+        this.slotStats = new PlainRatingStats();
+    }
+
+    @Override
+    public int getSize(){
+        return size;
+    }
+
+    /**
+     * Setter method for how many slots are in use, the albums of the slots after it are removed
+     * @param size: an integer value representing how many slots are in use
+     */
+    @Override
+    public void setSize(int size){
+        for (int slot = Math.max(size, 0); slot < end; slot++) {
+            if (columns.getSequence(slot) != TOMBSTONE) {
+                removeFromTable(slot);
+                markRemoved(slot);
+            }
+        }
+        trimEnd();
+    }
+
+    /**
+     * Creates a view of every album, in slot order, the views do not change the collection
+     * The columns are compacted first, so the index of each view is the slot of its album
+     * @return albums: an array of the getSize() views
+     */
+    @Override
+    public Album[] getAlbums(){
+        compactSlots();
+        Album[] views = new Album[size];
+        for (int slot = 0; slot < size; slot++) {
+            views[slot] = view(slot);
+        }
+        return views;
+    }
+
+    /**
+     * Replaces every album with the albums in the slots of an array that are in use
+     * @param albums: an array of type Album
+     */
+    @Override
+    public void setAlbums(Album[] albums){
+        int used = Math.min(end, albums.length);
+        setSize(0);
+        for (int i = 0; i < used; i++) {
+            if (albums[i] != null) {
+                add(albums[i]);
+            }
+        }
+    }
+
+    @Override
+    public void setCompactionThreshold(double compactionThreshold){
+        super.setCompactionThreshold(compactionThreshold);
+        compactIfNeeded();
+    }
+
+    @Override
+    public void compact(){
+        compactSlots();
+    }
+
+    @Override
+    public boolean contains(Album album){
+        return find(album) != NOT_FOUND;
+    }
+
+    /**
+     * Adds an album to the columns unless an equal album is already in the collection, along with the ratings it has
+     * @param album: an album object
+     * @return true: the album was added
+     */
+    @Override
+    public boolean add(Album album){
+        Artist artist = album.getArtist();
+        int title = strings.intern(album.getTitle());
+        int name = strings.intern(artist.getName());
+        int born = artist.getBorn().getKey();
+        if (find(strings.getKey(title), strings.getKey(name), born) != NOT_FOUND) {
+            return false;
+        }
+        if (end == columns.getCapacity()) {
+            grow(end + 1);
+        }
+        int slot = end++;
+        columns.setInt(slot, AlbumColumns.TITLE, title);
+        columns.setInt(slot, AlbumColumns.NAME, name);
+        columns.setInt(slot, AlbumColumns.TITLE_KEY, strings.getKey(title));
+        columns.setInt(slot, AlbumColumns.NAME_KEY, strings.getKey(name));
+        columns.setInt(slot, AlbumColumns.BORN, born);
+        columns.setInt(slot, AlbumColumns.RELEASED, album.getReleased().getKey());
+        columns.setGenre(slot, album.getGenre().ordinal());
+        RatingStats stats = album.getStats();
+        for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+            columns.setInt(slot, starField(star), (int) stats.getCount(star));
+        }
+        columns.setInt(slot, AlbumColumns.SUM, (int) stats.getSum());
+        columns.setInt(slot, AlbumColumns.COUNT, (int) stats.getCount());
+        columns.setSequence(slot, nextSequence++);
+        size++;
+        addToTable(slot);
+        for (SortOrder order : SortOrder.values()) {
+            changed[order.ordinal()].set(slot);
+            stale[order.ordinal()] = true;
+        }
+        return true;
+    }
+
+    @Override
+    public int addAll(Album[] batch){
+        ensureCapacity(end + batch.length);
+        int added = 0;
+        for (Album album : batch) {
+            if (add(album)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity){
+        if (minCapacity > columns.getCapacity()) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Creates a view of the album equal to the one given
+     * @param album: an Album object
+     * @return a new Album with the fields and ratings of the album in the collection, or null if there is none
+     */
+    @Override
+    public Album returnAlbum(Album album){
+        int slot = find(album);
+        return slot == NOT_FOUND ? null : view(slot);
+    }
+
+    /**
+     * Removes an album, its slot becomes a tombstone until the columns are compacted
+     * @param album: an Album object
+     * @return true: the album was in the collection and was removed
+     */
+    @Override
+    public boolean remove(Album album){
+        int slot = find(album);
+        if (slot == NOT_FOUND) {
+            return false;
+        }
+        removeFromTable(slot);
+        markRemoved(slot);
+        trimEnd();
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Rates an album by adding to its counts, the album is moved in the rating order the next time that order is read
+     * @param album: an Album object
+     * @param rating: an int ranging from 1 to 5
+     */
+    @Override
+    public void rate(Album album, int rating){
+        int slot = find(album);
+        if (slot == NOT_FOUND) {
+            return;
+        }
+        if (rating >= RatingStats.MIN_STAR && rating <= RatingStats.MAX_STAR) {
+            columns.setInt(slot, starField(rating), columns.getInt(slot, starField(rating)) + 1);
+        }
+        columns.setInt(slot, AlbumColumns.SUM, columns.getInt(slot, AlbumColumns.SUM) + rating);
+        columns.setInt(slot, AlbumColumns.COUNT, columns.getInt(slot, AlbumColumns.COUNT) + 1);
+        changed[SortOrder.RATING.ordinal()].set(slot);
+        stale[SortOrder.RATING.ordinal()] = true;
+    }
+
+    @Override
+    public AlbumSorter.Mode getLastSortMode(){
+        return lastSortMode;
+    }
+
+    /**
+     * Moves the columns into an order, so slot order is that order, the merge sort of the columns is always sequential
+     * Albums tied in the order keep their slot order, the same as the stable sort Collection sorts its array with
+     * @param order: the ordering to sort by
+     */
+    @Override
+    public void sort(SortOrder order){
+        compactSlots();
+        refreshOrders();
+        rank(order);
+        int[] sorted = new int[size];
+        for (int slot = 0; slot < size; slot++) {
+            sorted[slot] = slot;
+        }
+        mergeSort((one, two) -> compareFields(order, one, two), sorted, new int[size], 0, size);
+        int[] slotOf = new int[size];
+        for (int i = 0; i < size; i++) {
+            slotOf[sorted[i]] = i;
+        }
+        columns.permute(sorted);
+        remap(slotOf);
+        lastSortMode = AlbumSorter.Mode.SEQUENTIAL;
+    }
+
+    /**
+     * Prints the albums in slot order, skipping tombstones
+     * @param out: the OutputSink to print to
+     */
+    @Override
+    public void displayAlbums(OutputSink out){
+        for (int slot = 0; slot < end; slot++) {
+            if (columns.getSequence(slot) != TOMBSTONE) {
+                appendSlot(out, slot);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Prints the first albums of an order between its header and footer
+     * @param order: the ordering to print in
+     * @param limit: the most albums to print, ALL for every album
+     * @param out: the OutputSink to print to
+     */
+    @Override
+    public void print(SortOrder order, int limit, OutputSink out){
+        if (size == 0) {
+            out.println("Collection is empty!");
+            return;
+        }
+        out.println(order.getHeader());
+        walk(new AlbumCursor(this, order), limit, out);
+        out.println("* end of list *");
+    }
+
+    /**
+     * Walks the slots of a cursor's order from the first album after its bookmark, found with a binary search of the order,
+     * so changes made between two pages are seen the same way the sorted views of Collection show them
+     * @param cursor: the cursor to move
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to
+     * @return how many albums were printed
+     */
+    @Override
+    int walk(AlbumCursor cursor, int count, OutputSink out){
+        SortOrder order = cursor.getOrder();
+        int[] slots = orderOf(order);
+        int rank = cursor.getBookmark() == null ? 0 : firstAfter(order, slots, cursor.getBookmark());
+        int printed = 0;
+        for (; printed < count && rank < size; printed++) {
+            appendSlot(out, slots[rank++]);
+            out.newLine();
+        }
+        if (printed > 0) {
+            cursor.setBookmark(entryAt(slots[rank - 1]));
+        }
+        cursor.setDone(rank >= size);
+        return printed;
+    }
+
+    /**
+     * Helper method of walk that finds the first slot of an order that comes after a bookmark
+     * The bookmark is compared with the columns of each slot the search reads, no view is created for a slot
+     * @param order: the ordering
+     * @param slots: the slots in that order, the first getSize() of the array
+     * @param bookmark: the entry of the album a cursor printed last
+     * @return the index, getSize() if no slot comes after the bookmark
+     */
+    private int firstAfter(SortOrder order, int[] slots, AlbumEntry bookmark){
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(order, slots[middle], bookmark) > 0) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Prints the albums that match the query of a cursor from the release date order, cut down to the range of dates with two
+     * binary searches over the release date column, and the genre or artist column is scanned over what is left
+     * The scan starts after the cursor's bookmark, found with a binary search of the order as walk does
+     * @param cursor: the cursor to move, opened on a query
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to
+     * @return how many albums were printed
+     */
+    @Override
+    int walkMatches(AlbumCursor cursor, int count, OutputSink out){
+        AlbumQuery query = cursor.getQuery();
+        int[] byDate = orderOf(SortOrder.DATE);
+        int low = 0;
+        int high = size;
+        if (query.getFrom() != null) {
+            high = firstReleasedAfter(byDate, low, high, query.getTo().getKey());
+            low = firstReleasedAfter(byDate, low, high, query.getFrom().getKey() - 1);
+        }
+        if (cursor.getBookmark() != null) {
+            low = Math.max(low, firstAfter(SortOrder.DATE, byDate, cursor.getBookmark()));
+        }
+        int genre = query.getGenre() == null ? -1 : query.getGenre().ordinal();
+        Artist artist = query.getGenre() == null ? query.getArtist() : null;
+        int nameKey = artist == null ? StringDictionary.NO_ID : strings.findKey(artist.getName());
+        int born = artist == null ? 0 : artist.getBorn().getKey();
+        int printed = 0;
+        int last = NOT_FOUND;
+        int i = low;
+        for (; i < high; i++) {
+            int slot = byDate[i];
+            if ((genre < 0 || columns.getGenre(slot) == genre) && (artist == null || isArtist(slot, nameKey, born))) {
+                if (printed == count) {
+                    break;
+                }
+                appendSlot(out, slot);
+                out.newLine();
+                last = slot;
+                printed++;
+            }
+        }
+        if (last != NOT_FOUND) {
+            cursor.setBookmark(entryAt(last));
+        }
+        cursor.setDone(i >= high);
+        return printed;
+    }
+
+    /**
+     * Captures views of the albums, their rating counts and the slots of each order
+     * The columns are compacted first so the slot of each album is its index in the captured albums
+     * @return the captured state
+     */
+    @Override
+    CatalogSnapshot capture(){
+        Album[] captured = getAlbums();
+        int[][] captureOrders = new int[orders.length][];
+        for (SortOrder order : SortOrder.values()) {
+            captureOrders[order.ordinal()] = Arrays.copyOf(orderOf(order), size);
+        }
+        return new CatalogSnapshot(null, null, captured, CatalogSnapshot.countStars(captured), captureOrders);
+    }
+
+    /**
+     * Helper method that gives the slots in an order, merging the slots changed since the order was sorted into it first
+     * The slots still in place are kept in the order they were in, the changed ones are sorted and the two runs are merged
+     * The slots still in place are moved down over the removed ones in the array of the order, and the merge writes to the
+     * spare array, so an order is brought up to date without allocating once the arrays are large enough
+     * @param order: the ordering
+     * @return the slots of every album in that order in the first getSize() ints of the array, which must not be changed
+     */
+    private int[] orderOf(SortOrder order){
+        int index = order.ordinal();
+        if (!stale[index]) {
+            return orders[index];
+        }
+        rank(order);
+        BitSet moved = changed[index];
+        int[] slots = orders[index];
+        int keptCount = 0;
+        for (int i = 0; i < ordered[index]; i++) {
+            int slot = slots[i];
+            if (columns.getSequence(slot) != TOMBSTONE && !moved.get(slot)) {
+                slots[keptCount++] = slot;
+            }
+        }
+        changedSlots = reserve(changedSlots, size - keptCount);
+        int addedCount = 0;
+        for (int slot = moved.nextSetBit(0); slot >= 0 && slot < end; slot = moved.nextSetBit(slot + 1)) {
+            if (columns.getSequence(slot) != TOMBSTONE) {
+                changedSlots[addedCount++] = slot;
+            }
+        }
+        if (addedCount > 0) {
+            IntBinaryOperator comparator = (one, two) -> compare(order, one, two);
+            sortBuffer = reserve(sortBuffer, addedCount);
+            mergeSort(comparator, changedSlots, sortBuffer, 0, addedCount);
+            int[] merged = reserve(spareOrder, size);
+            merge(comparator, slots, 0, keptCount, changedSlots, 0, addedCount, merged, 0);
+            spareOrder = slots;
+            orders[index] = merged;
+        }
+        ordered[index] = size;
+        moved.clear();
+        stale[index] = false;
+        return orders[index];
+    }
+
+    /**
+     * Helper method that gives an array of at least a length, the array given if it is long enough
+     * and otherwise a new one, grown by half of the length of the old one at least
+     */
+    private static int[] reserve(int[] buffer, int length){
+        if (buffer.length >= length) {
+            return buffer;
+        }
+        return new int[Math.max(length, buffer.length + (buffer.length >> 1))];
+    }
+
+    /**
+     * Helper method that works out the ranks an order compares by, if strings were added since they were worked out
+     * Only the strings added since are sorted, and they are merged into the strings already in order, so ranking takes
+     * linear time in the size of the dictionary plus the time to sort the new strings
+     * Ranks worked out again keep the order of the strings ranked before, so the orders already sorted stay sorted
+     * @param order: the ordering about to be sorted
+     */
+    private void rank(SortOrder order){
+        int count = strings.getSize();
+        if (order == SortOrder.GENRE) {
+            if (nameOrder.length != count) {
+                IntBinaryOperator comparator = strings::compareNames;
+                int[] sorted = addIds(nameOrder, count, comparator);
+                nameRanks = places(sorted, nameOrder.length, nameRanks, comparator);
+                nameOrder = sorted;
+            }
+        } else if (titleOrder.length != count) {
+            IntBinaryOperator comparator = strings::compareTitles;
+            int[] sorted = addIds(titleOrder, count, comparator);
+            titleRanks = places(sorted, titleOrder.length, titleRanks, comparator);
+            titleOrder = sorted;
+        }
+    }
+
+    /**
+     * Helper method of rank that adds the ids given out since a list of ids was sorted to it,
+     * the new ids are sorted on their own and merged with the list
+     * @param sorted: the ids from 0 to sorted.length - 1 in the order of the comparator
+     * @param count: the number of ids, at least sorted.length
+     * @param comparator: the comparator of two ids
+     * @return the ids from 0 to count - 1 in the order of the comparator
+     */
+    private static int[] addIds(int[] sorted, int count, IntBinaryOperator comparator){
+        int added = count - sorted.length;
+        int[] ids = new int[added];
+        for (int i = 0; i < added; i++) {
+            ids[i] = sorted.length + i;
+        }
+        mergeSort(comparator, ids, new int[added], 0, added);
+        int[] merged = new int[count];
+        merge(comparator, sorted, 0, sorted.length, ids, 0, added, merged, 0);
+        return merged;
+    }
+
+    /**
+     * Helper method of rank that places ids in the order they are sorted in, ids the comparator ties share a place
+     * Two ids that were both ranked before are tied when they shared a place, so only the new ids are compared
+     * @param sorted: the ids in the order of the comparator
+     * @param ranked: how many ids, from 0, were ranked before
+     * @param places: the place of each id ranked before
+     * @param comparator: the comparator of two ids
+     * @return the place of each id
+     */
+    private static int[] places(int[] sorted, int ranked, int[] places, IntBinaryOperator comparator){
+        int[] placed = new int[sorted.length];
+        int place = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i > 0) {
+                int one = sorted[i - 1];
+                int two = sorted[i];
+                boolean tied = one < ranked && two < ranked ? places[one] == places[two] : comparator.applyAsInt(one, two) == EQUAL;
+                if (!tied) {
+                    place++;
+                }
+            }
+            placed[sorted[i]] = place;
+        }
+        return placed;
+    }
+
+    /**
+     * Helper method that compares two slots in an order, albums tied in the order by when they were added
+     * @param order: the ordering
+     * @param one: a slot
+     * @param two: another slot
+     * @return a negative number if one comes before two, a positive number if it comes after, 0 only for the same slot
+     */
+    private int compare(SortOrder order, int one, int two){
+        int comparison = compareFields(order, one, two);
+        if (comparison != EQUAL) {
+            return comparison;
+        }
+        return Long.compare(columns.getSequence(one), columns.getSequence(two));
+    }
+
+    /**
+     * Helper method that compares the albums of two slots the way the SortOrder compares albums, by the ranks of the order
+     * @param order: the ordering
+     * @param one: a slot
+     * @param two: another slot
+     * @return -1, 0 or 1 the same way order.compare does for the albums of the slots
+     */
+    private int compareFields(SortOrder order, int one, int two){
+        if (order == SortOrder.DATE) {
+            int comparison = Integer.compare(columns.getInt(one, AlbumColumns.RELEASED), columns.getInt(two, AlbumColumns.RELEASED));
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            return compareRanks(titleRanks, one, two, AlbumColumns.TITLE);
+        } else if (order == SortOrder.GENRE) {
+            int comparison = Integer.compare(GENRE_RANKS[columns.getGenre(one)], GENRE_RANKS[columns.getGenre(two)]);
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            comparison = compareRanks(nameRanks, one, two, AlbumColumns.NAME);
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            return Integer.compare(columns.getInt(one, AlbumColumns.BORN), columns.getInt(two, AlbumColumns.BORN));
+        }
+        double oneAverage = RatingStats.average(columns.getInt(one, AlbumColumns.SUM), columns.getInt(one, AlbumColumns.COUNT));
+        double twoAverage = RatingStats.average(columns.getInt(two, AlbumColumns.SUM), columns.getInt(two, AlbumColumns.COUNT));
+        if (oneAverage > twoAverage) {
+            return BEFORE;
+        } else if (oneAverage < twoAverage) {
+            return AFTER;
+        }
+        return compareRanks(titleRanks, one, two, AlbumColumns.TITLE);
+    }
+
+    /**
+     * Helper method that compares a slot with an entry in an order, by the columns of the slot and the fields of the entry,
+     * the same way order.compareEntries compares the entry of a view of the slot with it
+     * Titles and names are only read when the fields before them are tied
+     * @param order: the ordering
+     * @param slot: a slot holding an album
+     * @param entry: an AlbumEntry, for the RATING order ranked by its ranked average
+     * @return a negative number if the slot comes before the entry, a positive number if it comes after, 0 if they have
+     * the same sequence
+     */
+    private int compare(SortOrder order, int slot, AlbumEntry entry){
+        Album album = entry.getAlbum();
+        int comparison;
+        if (order == SortOrder.DATE) {
+            comparison = Date.compareKey(columns.getInt(slot, AlbumColumns.RELEASED), album.getReleased());
+        } else if (order == SortOrder.GENRE) {
+            comparison = Integer.compare(GENRE_RANKS[columns.getGenre(slot)], GENRE_RANKS[album.getGenre().ordinal()]);
+            Artist artist = album.getArtist();
+            if (comparison == EQUAL) {
+                comparison = SortKeys.compareName(strings.chars(columns.getInt(slot, AlbumColumns.NAME)),
+                        artist.getFirstNameKey(), artist.getLastNameKey());
+            }
+            if (comparison == EQUAL) {
+                comparison = Date.compareKey(columns.getInt(slot, AlbumColumns.BORN), artist.getBorn());
+            }
+        } else {
+            comparison = SortOrder.compareAverages(RatingStats.average(columns.getInt(slot, AlbumColumns.SUM),
+                    columns.getInt(slot, AlbumColumns.COUNT)), entry.getRankedAverage());
+        }
+        if (comparison == EQUAL && order != SortOrder.GENRE) {
+            comparison = SortKeys.compareTitle(strings.chars(columns.getInt(slot, AlbumColumns.TITLE)), album.getTitleKey());
+        }
+        if (comparison != EQUAL) {
+            return comparison;
+        }
+        return Long.compare(columns.getSequence(slot), entry.getSequence());
+    }
+
+    /**
+     * Helper method of compareFields that compares the ranks of the strings two slots hold in a field
+     */
+    private int compareRanks(int[] ranks, int one, int two, int field){
+        return Integer.compare(ranks[columns.getInt(one, field)], ranks[columns.getInt(two, field)]);
+    }
+
+    /**
+     * Helper method that sorts a range of ints with a stable top down merge sort, sorting short runs by insertion
+     * and skipping the merge of two runs that are already in order, so ints that are nearly in order sort in close to linear time
+     * @param comparator: compares two ints
+     * @param slots: the ints to sort
+     * @param buffer: an array at least as long as the range, used to merge
+     * @param from: the first index of the range
+     * @param to: the index after the last one of the range
+     */
+    private static void mergeSort(IntBinaryOperator comparator, int[] slots, int[] buffer, int from, int to){
+        if (to - from <= INSERTION_SORT_SIZE) {
+            for (int i = from + 1; i < to; i++) {
+                int slot = slots[i];
+                int j = i - 1;
+                for (; j >= from && comparator.applyAsInt(slots[j], slot) > 0; j--) {
+                    slots[j + 1] = slots[j];
+                }
+                slots[j + 1] = slot;
+            }
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(comparator, slots, buffer, from, middle);
+        mergeSort(comparator, slots, buffer, middle, to);
+        if (comparator.applyAsInt(slots[middle - 1], slots[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(slots, from, buffer, 0, middle - from);
+        merge(comparator, buffer, 0, middle - from, slots, middle, to, slots, from);
+    }
+
+    /**
+     * Helper method that merges two sorted runs of ints, ints of the first run go first when they tie,
+     * and the destination may be the array of the second run as long as it starts at or before the run
+     * @param comparator: compares two ints
+     * @param one: the array of the first run
+     * @param oneFrom: the first index of the first run
+     * @param oneTo: the index after the first run
+     * @param two: the array of the second run
+     * @param twoFrom: the first index of the second run
+     * @param twoTo: the index after the second run
+     * @param into: the array the merged ints are written to
+     * @param at: the index the merged ints start at
+     */
+    private static void merge(IntBinaryOperator comparator, int[] one, int oneFrom, int oneTo, int[] two, int twoFrom, int twoTo, int[] into, int at){
+        while (oneFrom < oneTo && twoFrom < twoTo) {
+            if (comparator.applyAsInt(two[twoFrom], one[oneFrom]) < 0) {
+                into[at++] = two[twoFrom++];
+            } else {
+                into[at++] = one[oneFrom++];
+            }
+        }
+        while (oneFrom < oneTo) {
+            into[at++] = one[oneFrom++];
+        }
+        while (twoFrom < twoTo) {
+            into[at++] = two[twoFrom++];
+        }
+    }
+
+    /**
+     * Helper method of walkMatches that finds the first slot of the release date order released after a packed date
+     * @param byDate: the slots in release date order
+     * @param low: the first index searched
+     * @param high: the index after the last index searched
+     * @param key: the packed date
+     * @return the index, high if every slot searched was released on or before the date
+     */
+    private int firstReleasedAfter(int[] byDate, int low, int high, int key){
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columns.getInt(byDate[middle], AlbumColumns.RELEASED) <= key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Helper method of walkMatches that tells if the album of a slot is by an artist, by the key of the name and the date of birth
+     * @param slot: a slot holding an album
+     * @param nameKey: the key of the artist name, NO_ID if no name equal to it was interned
+     * @param born: the packed birthdate of the artist
+     */
+    private boolean isArtist(int slot, int nameKey, int born){
+        return columns.getInt(slot, AlbumColumns.NAME_KEY) == nameKey && columns.getInt(slot, AlbumColumns.BORN) == born;
+    }
+
+    /**
+     * Helper method that finds the slot of an album equal to one given, the case of its title and artist name is only
+     * folded if the exact strings were never interned
+     * @param album: an Album object
+     * @return the slot, or NOT_FOUND if no album in the collection is equal to it
+     */
+    private int find(Album album){
+        Artist artist = album.getArtist();
+        int titleKey = strings.findKey(album.getTitle());
+        int nameKey = titleKey == StringDictionary.NO_ID ? StringDictionary.NO_ID : strings.findKey(artist.getName());
+        if (nameKey == StringDictionary.NO_ID) {
+            return NOT_FOUND;
+        }
+        return find(titleKey, nameKey, artist.getBorn().getKey());
+    }
+
+    /**
+     * Helper method that finds the slot of an album with the table, two albums are equal the way Album.equals compares them
+     * when the keys of their titles and artist names and the birthdates of their artists are equal
+     * @param titleKey: the key of the title
+     * @param nameKey: the key of the artist name
+     * @param born: the packed birthdate of the artist
+     * @return the slot, or NOT_FOUND if no album in the collection is equal to it
+     */
+    private int find(int titleKey, int nameKey, int born){
+        int mask = table.capacity() - 1;
+        for (int i = HashTables.spread(hash(titleKey, nameKey, born)) & mask; ; i = (i + 1) & mask) {
+            int entry = table.get(i);
+            if (entry == EMPTY_SLOT) {
+                return NOT_FOUND;
+            }
+            int slot = entry - 1;
+            if (columns.getInt(slot, AlbumColumns.TITLE_KEY) == titleKey && columns.getInt(slot, AlbumColumns.NAME_KEY) == nameKey
+                    && columns.getInt(slot, AlbumColumns.BORN) == born) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * Helper method that puts a slot in the table, growing the table first if it would be more than half full
+     */
+    private void addToTable(int slot){
+        if (size * 2 > table.capacity()) {
+            IntBuffer old = table;
+            table = columns.newTable(old.capacity() * 2);
+            for (int i = 0; i < old.capacity(); i++) {
+                if (old.get(i) != EMPTY_SLOT) {
+                    place(old.get(i) - 1);
+                }
+            }
+        }
+        place(slot);
+    }
+
+    /**
+     * Helper method of addToTable that puts a slot in the first empty table slot from the one its hash gives
+     */
+    private void place(int slot){
+        int mask = table.capacity() - 1;
+        int i = HashTables.spread(hashOf(slot)) & mask;
+        while (table.get(i) != EMPTY_SLOT) {
+            i = (i + 1) & mask;
+        }
+        table.put(i, slot + 1);
+    }
+
+    /**
+     * Helper method that takes a slot out of the table, moving back the slots after it that could not be placed
+     * where it was, so every slot can still be found by probing from its hash
+     */
+    private void removeFromTable(int slot){
+        int mask = table.capacity() - 1;
+        int hole = HashTables.spread(hashOf(slot)) & mask;
+        while (table.get(hole) != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        table.put(hole, EMPTY_SLOT);
+        for (int i = (hole + 1) & mask; table.get(i) != EMPTY_SLOT; i = (i + 1) & mask) {
+            int entry = table.get(i);
+            int home = HashTables.spread(hashOf(entry - 1)) & mask;
+            //the entry stays unless the hole lies between its home and where it is, cyclically
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table.put(hole, entry);
+                table.put(i, EMPTY_SLOT);
+                hole = i;
+            }
+        }
+    }
+
+    /**
+     * Helper method that writes a slot in the same format as Album.toString, reading every field from the columns
+     * @param out: the OutputSink to write to
+     * @param slot: a slot holding an album
+     */
+    private void appendSlot(OutputSink out, int slot){
+        out.append('[');
+        strings.appendTo(columns.getInt(slot, AlbumColumns.TITLE), out);
+        out.append("] Released ");
+        appendDate(out, columns.getInt(slot, AlbumColumns.RELEASED));
+        out.append(" [");
+        strings.appendTo(columns.getInt(slot, AlbumColumns.NAME), out);
+        out.append(':');
+        appendDate(out, columns.getInt(slot, AlbumColumns.BORN));
+        out.append("] [").append(GENRES[columns.getGenre(slot)].toString()).append("] ");
+        slotStats.clear();
+        addStars(slot, slotStats);
+        out.append(slotStats);
+    }
+
+    /**
+     * Helper method of appendSlot that writes a packed date as month/day/year
+     */
+    private static void appendDate(OutputSink out, int key){
+        out.append(Date.monthOf(key)).append('/').append(Date.dayOf(key)).append('/').append(Date.yearOf(key));
+    }
+
+    /**
+     * Helper method that records the rating counts of a slot into rating totals
+     */
+    private void addStars(int slot, RatingStats stats){
+        for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+            int count = columns.getInt(slot, starField(star));
+            if (count > 0) {
+                stats.record(star, count);
+            }
+        }
+    }
+
+    /**
+     * Helper method that creates an Album with the fields and ratings of a slot
+     * @param slot: a slot holding an album
+     * @return the view
+     */
+    private Album view(int slot){
+        String name = strings.get(columns.getInt(slot, AlbumColumns.NAME));
+        Date born = Date.fromKey(columns.getInt(slot, AlbumColumns.BORN));
+        Album album = new Album(strings.get(columns.getInt(slot, AlbumColumns.TITLE)),
+                registry == null ? new Artist(name, born) : registry.intern(name, born),
+                GENRES[columns.getGenre(slot)], Date.fromKey(columns.getInt(slot, AlbumColumns.RELEASED)), null);
+        addStars(slot, album.getStats());
+        return album;
+    }
+
+    /**
+     * Helper method that creates an entry for the view of a slot, to compare with the entries cursors keep
+     */
+    private AlbumEntry entryAt(int slot){
+        return new AlbumEntry(view(slot), columns.getSequence(slot), slot);
+    }
+
+    /**
+     * Helper method that gives the field of the count of a star rating
+     */
+    private static int starField(int star){
+        return AlbumColumns.STAR + star - RatingStats.MIN_STAR;
+    }
+
+    /**
+     * Helper method that makes a slot a tombstone, the orders drop it the next time they are read
+     */
+    private void markRemoved(int slot){
+        columns.setSequence(slot, TOMBSTONE);
+        size--;
+        Arrays.fill(stale, true);
+    }
+
+    /**
+     * Helper method that gives back the tombstones at the end of the used slots
+     */
+    private void trimEnd(){
+        while (end > 0 && columns.getSequence(end - 1) == TOMBSTONE) {
+            end--;
+        }
+    }
+
+    /**
+     * Helper method that compacts the columns once the share of tombstones passes the compaction threshold
+     */
+    private void compactIfNeeded(){
+        int dead = end - size;
+        if (dead > 0 && dead > end * getCompactionThreshold()) {
+            compactSlots();
+        }
+    }
+
+    /**
+     * Helper method that removes the tombstones by sliding the slots after them down, the albums keep their order
+     * Every order is brought up to date first, so only the slots in them have to be renumbered
+     */
+    private void compactSlots(){
+        if (end == size) {
+            return;
+        }
+        refreshOrders();
+        int[] slotOf = new int[end];
+        int live = 0;
+        for (int slot = 0; slot < end; slot++) {
+            if (columns.getSequence(slot) == TOMBSTONE) {
+                continue;
+            }
+            slotOf[slot] = live;
+            if (slot != live) {
+                columns.move(slot, live);
+            }
+            live++;
+        }
+        end = live;
+        remap(slotOf);
+        compactStrings();
+    }
+
+    /**
+     * Helper method that drops the strings of the dictionary no album uses any more, once their share of the dictionary
+     * passes the compaction threshold, so the strings of removed albums do not pile up
+     * The strings kept are renumbered, so the string fields of the columns, the ranks and the table are renumbered with them
+     * The ranks keep the places they had, so the orders stay sorted
+     */
+    private void compactStrings(){
+        int count = strings.getSize();
+        BitSet used = new BitSet(count);
+        for (int slot = 0; slot < end; slot++) {
+            for (int field : STRING_FIELDS) {
+                used.set(columns.getInt(slot, field));
+            }
+        }
+        int dead = count - used.cardinality();
+        if (dead == 0 || dead <= count * getCompactionThreshold()) {
+            return;
+        }
+        int[] idOf = strings.retain(used);
+        for (int slot = 0; slot < end; slot++) {
+            for (int field : STRING_FIELDS) {
+                columns.setInt(slot, field, idOf[columns.getInt(slot, field)]);
+            }
+        }
+        int[] keptTitles = keptIds(titleOrder, idOf);
+        titleRanks = keptPlaces(titleRanks, idOf, keptTitles.length);
+        titleOrder = keptTitles;
+        int[] keptNames = keptIds(nameOrder, idOf);
+        nameRanks = keptPlaces(nameRanks, idOf, keptNames.length);
+        nameOrder = keptNames;
+        table = columns.newTable(table.capacity());
+        for (int slot = 0; slot < end; slot++) {
+            place(slot);
+        }
+    }
+
+    /**
+     * Helper method of compactStrings that renumbers the ids of a list that were kept, in the same order
+     * @param ids: a list of ids
+     * @param idOf: the new id of each old id, NO_ID for the ids dropped
+     * @return the new ids of the ids kept
+     */
+    private static int[] keptIds(int[] ids, int[] idOf){
+        int[] kept = new int[ids.length];
+        int count = 0;
+        for (int id : ids) {
+            if (idOf[id] != StringDictionary.NO_ID) {
+                kept[count++] = idOf[id];
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    /**
+     * Helper method of compactStrings that moves the places of the ids that were kept to their new ids
+     * @param places: the place of each old id that was ranked
+     * @param idOf: the new id of each old id, NO_ID for the ids dropped
+     * @param count: how many of the ranked ids were kept
+     * @return the place of each new id that is ranked
+     */
+    private static int[] keptPlaces(int[] places, int[] idOf, int count){
+        int[] kept = new int[count];
+        for (int id = 0; id < places.length; id++) {
+            if (idOf[id] != StringDictionary.NO_ID) {
+                kept[idOf[id]] = places[id];
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * Helper method that brings every order up to date
+     */
+    private void refreshOrders(){
+        for (SortOrder order : SortOrder.values()) {
+            orderOf(order);
+        }
+    }
+
+    /**
+     * Helper method that renumbers the slots in the table and the orders after the columns were moved
+     * The orders must be up to date, since the changed slots are forgotten
+     * @param slotOf: the new slot of each old slot that holds an album
+     */
+    private void remap(int[] slotOf){
+        for (int i = 0; i < table.capacity(); i++) {
+            int entry = table.get(i);
+            if (entry != EMPTY_SLOT) {
+                table.put(i, slotOf[entry - 1] + 1);
+            }
+        }
+        for (int[] order : orders) {
+            for (int i = 0; i < size; i++) {
+                order[i] = slotOf[order[i]];
+            }
+        }
+        for (BitSet moved : changed) {
+            moved.clear();
+        }
+    }
+
+    /**
+     * Helper method that grows the columns to hold at least a number of slots, by half of their capacity or ARRAY_GROWTH_SIZE
+     */
+    private void grow(int minCapacity){
+        int capacity = columns.getCapacity();
+        columns.grow(Math.max(capacity + Math.max(capacity >> 1, ARRAY_GROWTH_SIZE), minCapacity));
+    }
+
+    /**
+     * Helper method that hashes the identity of the album in a slot
+     */
+    private int hashOf(int slot){
+        return hash(columns.getInt(slot, AlbumColumns.TITLE_KEY), columns.getInt(slot, AlbumColumns.NAME_KEY),
+                columns.getInt(slot, AlbumColumns.BORN));
+    }
+
+    /**
+     * Helper method that hashes the identity of an album, from the keys of its title and artist name and the birthdate
+     */
+    private static int hash(int titleKey, int nameKey, int born){
+        return HASH_MULTIPLIER * (HASH_MULTIPLIER * titleKey + nameKey) + born;
+    }
+
+    /**
+     * Helper method that places each genre in the order genreCompare puts them, by the words of their names
+     */
+    private static int[] genreRanks(){
+        int[] places = new int[GENRES.length];
+        for (Genre genre : GENRES) {
+            for (Genre other : GENRES) {
+                if (Album.compareWords(other.toString(), genre.toString()) < 0) {
+                    places[genre.ordinal()]++;
+                }
+            }
+        }
+        return places;
+    }
+}
@@ -0,0 +1,117 @@
+package album;
+import java.io.IOException;
+import java.io.Reader;
+/**
+ * The CommandReader class which reads lines of commands into one large reusable char buffer
+ * Each line is handed to a CommandTokenizer as a range of the buffer, so no String is created per line
+ * Lines end at \n, \r or \r\n, the same as BufferedReader.readLine
+ * @author Seungjun Bae
+ */
+final class CommandReader {
+    private final Reader in;
+    private char[] buffer;
+    private int position; //index of the next unread char
+    private int limit; //index after the last char read into the buffer
+    private boolean endOfInput;
+    private boolean skipLineFeed; //the last line ended at \r, so a \n right after it is part of the same line break
+    private int lineStart;
+    private int lineEnd;
+
+    /**
+     * @param in The Reader the commands are read from.
+     * @param bufferSize How many chars are read from the Reader at a time.
+     */
+    CommandReader(Reader in, int bufferSize) {
+        this.in = in;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Reads the next line, which is then read with getBuffer, getLineStart and getLineEnd
+     * The line stays in the buffer until the next call
+     * @return true if a line was read, false at the end of the input.
+     * @throws IOException if the Reader fails.
+     */
+    boolean nextLine() throws IOException {
+        if (skipLineFeed) {
+            if (position == limit) {
+                fill();
+            }
+            if (position < limit && buffer[position] == '\n') {
+                position++;
+            }
+            skipLineFeed = false;
+        }
+        int scan = position;
+        while (true) {
+            for (; scan < limit; scan++) {
+                char c = buffer[scan];
+                if (c == '\n' || c == '\r') {
+                    lineStart = position;
+                    lineEnd = scan;
+                    position = scan + 1;
+                    skipLineFeed = c == '\r';
+                    return true;
+                }
+            }
+            if (endOfInput) {
+                if (position < limit) {
+                    lineStart = position;
+                    lineEnd = limit;
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+            scan -= position;
+            fill();
+            scan += position;
+        }
+    }
+
+    /**
+     * Helper method that moves the unread chars to the front of the buffer and reads more after them
+     * The buffer doubles when a single line fills all of it
+     * @throws IOException if the Reader fails.
+     */
+    private void fill() throws IOException {
+        int unread = limit - position;
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, unread);
+            position = 0;
+            limit = unread;
+        }
+        if (limit == buffer.length) {
+            char[] larger = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, larger, 0, limit);
+            buffer = larger;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            endOfInput = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    /**
+     * @return the buffer holding the current line
+     */
+    char[] getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the index of the first char of the current line
+     */
+    int getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return the index after the last char of the current line, not counting the line break
+     */
+    int getLineEnd() {
+        return lineEnd;
+    }
+}
@@ -0,0 +1,320 @@
+package album;
+import java.util.Arrays;
+/**
+ * The CommandTokenizer class which splits a command line into its comma separated fields without copying them
+ * Fields are kept as ranges of one reusable char buffer, and dates, ratings and genres are parsed straight from those ranges,
+ * so a command is read without String.split, Integer.parseInt or any intermediate String
+ * Fields are counted the way String.split(",") counts them, including dropping empty fields at the end of the line
+ * @author Seungjun Bae
+ */
+final class CommandTokenizer {
+    static final int OK = 0; //result code of a field that parsed
+    static final int MALFORMED = -1; //result code of a field that could not be parsed
+    private static final char FIELD_SEPARATOR = ',';
+    private static final char DATE_SEPARATOR = '/';
+    private static final int RADIX = 10;
+    private static final int INITIAL_BUFFER_SIZE = 256;
+    private static final int INITIAL_FIELDS = 8;
+    private static final Genre[] GENRES = Genre.values();
+
+    private char[] ownBuffer = new char[INITIAL_BUFFER_SIZE]; //holds lines handed over as Strings
+    private char[] chars; //buffer the current line is in
+    private int[] starts = new int[INITIAL_FIELDS];
+    private int[] ends = new int[INITIAL_FIELDS];
+    private int fieldCount;
+    private int number; //value of the last field parsed by parseNumber
+    private int year; //parts of the last field parsed by parseDate
+    private int month;
+    private int day;
+
+    /**
+     * Tokenizes a line given as a String, copying its chars into the reusable buffer
+     * @param line The command line.
+     */
+    void reset(String line) {
+        int length = line.length();
+        if (ownBuffer.length < length) {
+            ownBuffer = new char[Math.max(length, ownBuffer.length * 2)];
+        }
+        line.getChars(0, length, ownBuffer, 0);
+        reset(ownBuffer, 0, length);
+    }
+
+    /**
+     * Tokenizes a line that is already in a char buffer, without copying it
+     * The buffer must not change until the fields have been used
+     * @param buffer The buffer holding the line.
+     * @param from The index of the first char of the line.
+     * @param to The index after the last char of the line.
+     */
+    void reset(char[] buffer, int from, int to) {
+        this.chars = buffer;
+        this.fieldCount = 0;
+        int start = from;
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == FIELD_SEPARATOR) {
+                addField(start, i);
+                start = i + 1;
+            }
+        }
+        if (fieldCount == 0) {
+            //with no separator the whole line is one field, even when it is empty
+            addField(from, to);
+            return;
+        }
+        addField(start, to);
+        while (fieldCount > 0 && starts[fieldCount - 1] == ends[fieldCount - 1]) {
+            fieldCount--;
+        }
+    }
+
+    /**
+     * Helper method that records the range of a field, growing the range arrays when needed
+     */
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            starts = Arrays.copyOf(starts, fieldCount * 2);
+            ends = Arrays.copyOf(ends, fieldCount * 2);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+
+    /**
+     * @return the number of fields in the line
+     */
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Compares a field with a text exactly, without creating a String for the field
+     * @param field The index of the field.
+     * @param text The text to compare with.
+     * @return true if the field has the same chars as the text.
+     */
+    boolean fieldIs(int field, String text) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the buffer the current line is in, for reading a field in place with fieldStart and fieldLength
+     */
+    char[] getChars() {
+        return chars;
+    }
+
+    /**
+     * @param field The index of the field.
+     * @return the index in the buffer of the first char of the field.
+     */
+    int fieldStart(int field) {
+        return starts[field];
+    }
+
+    /**
+     * @param field The index of the field.
+     * @return the number of chars in the field.
+     */
+    int fieldLength(int field) {
+        return ends[field] - starts[field];
+    }
+
+    /**
+     * Creates a String for a field, used for the title and artist name an album keeps
+     * @param field The index of the field.
+     * @return the field as a String.
+     */
+    String field(int field) {
+        return new String(chars, starts[field], ends[field] - starts[field]);
+    }
+
+    /**
+     * Writes a field to an output sink without creating a String for it
+     * @param field The index of the field.
+     * @param out The sink to write to.
+     */
+    void appendField(int field, OutputSink out) {
+        out.append(chars, starts[field], ends[field] - starts[field]);
+    }
+
+    /**
+     * Parses a field as a genre the same way Genre.toGenre does, any unknown name is Genre.Unknown
+     * @param field The index of the field.
+     * @return the Genre the field names.
+     */
+    Genre parseGenre(int field) {
+        for (Genre genre : GENRES) {
+            if (fieldEqualsIgnoreCase(field, genre.name())) {
+                return genre;
+            }
+        }
+        return Genre.Unknown;
+    }
+
+    /**
+     * Helper method that compares a field with a text ignoring case, char by char the way String.equalsIgnoreCase does
+     */
+    private boolean fieldEqualsIgnoreCase(int field, String text) {
+        int start = starts[field];
+        int length = ends[field] - start;
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char one = chars[start + i];
+            char two = text.charAt(i);
+            if (one != two) {
+                char upperOne = Character.toUpperCase(one);
+                char upperTwo = Character.toUpperCase(two);
+                if (upperOne != upperTwo && Character.toLowerCase(upperOne) != Character.toLowerCase(upperTwo)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a field as a decimal int with the same rules as Integer.parseInt, the value is then read with getNumber
+     * @param field The index of the field.
+     * @return OK if the field is a number, MALFORMED otherwise.
+     */
+    int parseNumber(int field) {
+        if (!parseInt(starts[field], ends[field])) {
+            return MALFORMED;
+        }
+        return OK;
+    }
+
+    /**
+     * @return the value of the last field parsed by parseNumber
+     */
+    int getNumber() {
+        return number;
+    }
+
+    /**
+     * Parses a field as a month/day/year date, the parts are then read with getYear, getMonth and getDay
+     * The parts are counted the way String.split("/") counts them and each part follows the rules of Integer.parseInt
+     * @param field The index of the field.
+     * @return OK if the field has three numeric parts, MALFORMED otherwise.
+     */
+    int parseDate(int field) {
+        int start = starts[field];
+        int end = ends[field];
+        int firstSlash = indexOf(DATE_SEPARATOR, start, end);
+        int secondSlash = indexOf(DATE_SEPARATOR, firstSlash + 1, end);
+        if (firstSlash == end || secondSlash == end) {
+            return MALFORMED;
+        }
+        int thirdSlash = indexOf(DATE_SEPARATOR, secondSlash + 1, end);
+        if (thirdSlash == secondSlash + 1) {
+            return MALFORMED;
+        }
+        //split drops empty parts at the end, so anything after the year may only be more separators
+        for (int i = thirdSlash; i < end; i++) {
+            if (chars[i] != DATE_SEPARATOR) {
+                return MALFORMED;
+            }
+        }
+        if (!parseInt(start, firstSlash)) {
+            return MALFORMED;
+        }
+        int parsedMonth = number;
+        if (!parseInt(firstSlash + 1, secondSlash)) {
+            return MALFORMED;
+        }
+        int parsedDay = number;
+        if (!parseInt(secondSlash + 1, thirdSlash)) {
+            return MALFORMED;
+        }
+        this.year = number;
+        this.month = parsedMonth;
+        this.day = parsedDay;
+        return OK;
+    }
+
+    /**
+     * Helper method that finds a char in a range of the buffer
+     * @return the index of the char, or the end of the range if it is not there
+     */
+    private int indexOf(char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (chars[i] == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Helper method that parses a range of the buffer into number with the rules of Integer.parseInt:
+     * an optional sign followed by at least one decimal digit, and a value that fits in an int
+     * @return true if the range is a number, false otherwise
+     */
+    private boolean parseInt(int from, int to) {
+        if (from >= to) {
+            return false;
+        }
+        boolean negative = false;
+        int i = from;
+        char first = chars[i];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == to) {
+                return false;
+            }
+        }
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int multiplyLimit = limit / RADIX;
+        int result = 0;
+        //accumulate negatively so Integer.MIN_VALUE can be parsed
+        for (; i < to; i++) {
+            int digit = Character.digit(chars[i], RADIX);
+            if (digit < 0 || result < multiplyLimit) {
+                return false;
+            }
+            result *= RADIX;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        this.number = negative ? result : -result;
+        return true;
+    }
+
+    /**
+     * @return the year of the last field parsed by parseDate
+     */
+    int getYear() {
+        return year;
+    }
+
+    /**
+     * @return the month of the last field parsed by parseDate
+     */
+    int getMonth() {
+        return month;
+    }
+
+    /**
+     * @return the day of the last field parsed by parseDate
+     */
+    int getDay() {
+        return day;
+    }
+}
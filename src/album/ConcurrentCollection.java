@@ -0,0 +1,471 @@
+package album;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntSupplier;
+/**
+ * The ConcurrentCollection class which is a Collection that several threads can use at once
+ * Every method goes through one StampedLock: getSize reads optimistically and only takes the read lock if a writer got in,
+ * lookups and prints share the read lock so any number of them run at the same time,
+ * and the methods that change what is in the collection (add, remove, sort, compact and the setters) take the write lock
+ * Rating only takes the read lock: albums added are moved onto StripedRatingStats, so threads rating even the same album
+ * do not wait for each other, and the entry is put in a set of entries whose place in the rating view is out of date
+ * Those entries are moved to their new places under the write lock just before the rating view is next read,
+ * by a print in rating order or a sort
+ * A print holds the read lock from its header to its footer, so it lists one consistent set of albums,
+ * and since the print methods walk the sorted views no print reorders anything another reader can see
+ * Ratings also pass through a second StampedLock, the rating gate, which raters share and a print in rating order holds alone
+ * while it copies the albums it lists and their counts, so the counts in a rating listing cannot move away from the order it is printed in,
+ * and the copy is printed once the gate is open again
+ * Ratings given during a print in another order can show in the counts of the albums listed after them
+ * Each client should print to its own OutputSink with print(SortOrder, OutputSink), the collection's own sink is not thread safe
+ * getAlbums returns a copy of the albums, since the array itself keeps changing under other threads
+ @author Rohan Sharma
+ */
+public class ConcurrentCollection extends Collection {
+    private final StampedLock lock = new StampedLock();
+    private final StampedLock ratingGate = new StampedLock(); //shared by raters, held alone by prints in rating order
+    private final Set<AlbumEntry> staleRatings = ConcurrentHashMap.newKeySet(); //entries rated since the rating view was updated
+
+    /**
+     * Constructor for the ConcurrentCollection class, empty with the default capacity
+     */
+    public ConcurrentCollection(){
+        super();
+    }
+
+    /**
+     * Constructor for the ConcurrentCollection class sized for an expected number of albums
+     * @param expectedSize: how many albums the collection is expected to hold
+     */
+    public ConcurrentCollection(int expectedSize){
+        super(expectedSize);
+    }
+
+    /**
+     * Getter method for the size, read without locking unless a writer changed the collection during the read
+     * @return size: an int representing how many albums are in the collection
+     */
+    @Override
+    public int getSize(){
+        long stamp = lock.tryOptimisticRead();
+        int size = super.getSize();
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                size = super.getSize();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Compacts the array and copies the albums out of it under the write lock
+     * @return a new array holding the getSize() albums, in the order of the albums array
+     */
+    @Override
+    public Album[] getAlbums(){
+        long stamp = lock.writeLock();
+        try {
+            return Arrays.copyOf(super.getAlbums(), super.getSize());
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void setSize(int size){
+        long stamp = lock.writeLock();
+        try {
+            super.setSize(size);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void setAlbums(Album[] albums){
+        long stamp = lock.writeLock();
+        try {
+            for (Album album : albums) {
+                if (album != null) {
+                    album.useStripedRatings();
+                }
+            }
+            super.setAlbums(albums);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void setCompactionThreshold(double compactionThreshold){
+        long stamp = lock.writeLock();
+        try {
+            super.setCompactionThreshold(compactionThreshold);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void compact(){
+        long stamp = lock.writeLock();
+        try {
+            super.compact();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean contains(Album album){
+        long stamp = lock.readLock();
+        try {
+            return super.contains(album);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean add(Album album){
+        long stamp = lock.writeLock();
+        try {
+            album.useStripedRatings();
+            return super.add(album);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int addAll(Album[] batch){
+        long stamp = lock.writeLock();
+        try {
+            for (Album album : batch) {
+                album.useStripedRatings();
+            }
+            return super.addAll(batch);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void ensureCapacity(int minCapacity){
+        long stamp = lock.writeLock();
+        try {
+            super.ensureCapacity(minCapacity);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Album returnAlbum(Album album){
+        long stamp = lock.readLock();
+        try {
+            return super.returnAlbum(album);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Album album){
+        long stamp = lock.writeLock();
+        try {
+            return super.remove(album);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Rates an album under the read lock, so ratings run alongside each other and alongside lookups and prints
+     * The rating view is not touched, the entry is only marked for updateRatingView
+     * @param album: an Album object
+     * @param rating: an int ranging from 1 to 5
+     */
+    @Override
+    public void rate(Album album, int rating){
+        long gate = ratingGate.readLock();
+        long stamp = lock.readLock();
+        try {
+            AlbumEntry entry = entryOf(album);
+            if (entry != null) {
+                keepRatings(entry);
+                entry.getAlbum().rate(rating);
+                staleRatings.add(entry);
+            }
+        } finally {
+            lock.unlockRead(stamp);
+            ratingGate.unlockRead(gate);
+        }
+    }
+
+    @Override
+    public void setSorter(AlbumSorter sorter){
+        long stamp = lock.writeLock();
+        try {
+            super.setSorter(sorter);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public AlbumSorter.Mode getLastSortMode(){
+        long stamp = lock.readLock();
+        try {
+            return super.getLastSortMode();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void setOutput(OutputSink out){
+        long stamp = lock.writeLock();
+        try {
+            super.setOutput(out);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void sort(SortOrder order){
+        long stamp = lock.writeLock();
+        try {
+            updateRatingView();
+            super.sort(order);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Prints the albums in the order of the albums array under the read lock
+     * @param out: the OutputSink to print to
+     */
+    @Override
+    public void displayAlbums(OutputSink out){
+        long stamp = lock.readLock();
+        try {
+            super.displayAlbums(out);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Prints one consistent state of the collection in an order, other prints run at the same time and writers wait
+     * A print in rating order copies the albums and their counts with the rating gate closed, see copyRated,
+     * and prints the copy after, so ratings only wait for the copy
+     * @param order: the ordering to print in
+     * @param limit: the most albums to print, ALL for every album
+     * @param out: the OutputSink to print to, which only this thread should be using
+     */
+    @Override
+    public void print(SortOrder order, int limit, OutputSink out){
+        if (order != SortOrder.RATING) {
+            inOrder(() -> {
+                super.print(order, limit, out);
+                return 0;
+            });
+            return;
+        }
+        RatedPage page = copyRated(new AlbumCursor(this, order), limit);
+        if (page.collectionSize == 0) {
+            out.println("Collection is empty!");
+            return;
+        }
+        out.println(order.getHeader());
+        page.print(out);
+        out.println("* end of list *");
+    }
+
+    /**
+     * Prints the albums a query asks for under the read lock, alongside other prints
+     * The first query by genre or by artist builds its index under the write lock
+     * @param query: the AlbumQuery
+     * @param out: the OutputSink to print to, which only this thread should be using
+     */
+    @Override
+    public void print(AlbumQuery query, OutputSink out){
+        matching(query, () -> {
+            super.print(query, out);
+            return 0;
+        });
+    }
+
+    /**
+     * Prints the next page of a cursor the same way as a print in its order, or a print of its query
+     * @param cursor: a cursor opened on this collection
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to, which only this thread should be using
+     * @return how many albums were printed
+     */
+    @Override
+    public int fetch(AlbumCursor cursor, int count, OutputSink out){
+        if (cursor.getQuery() != null) {
+            return matching(cursor.getQuery(), () -> super.fetch(cursor, count, out));
+        }
+        if (cursor.getOrder() != SortOrder.RATING) {
+            return inOrder(() -> super.fetch(cursor, count, out));
+        }
+        return copyRated(cursor, count).print(out);
+    }
+
+    /**
+     * Captures the collection for a snapshot under the write lock, so no album is added, removed or rated while the entries are copied
+     * The rating view is not updated, the snapshot orders the albums by the counts it reads
+     * @return the captured state
+     */
+    @Override
+    CatalogSnapshot capture(){
+        long stamp = lock.writeLock();
+        try {
+            return super.capture();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Helper method that reads the collection under the read lock, for orders other than rating
+     * @param reader: what to do with the lock held
+     * @return what the reader returned
+     */
+    private int inOrder(IntSupplier reader){
+        long stamp = lock.readLock();
+        try {
+            return reader.getAsInt();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Helper method that reads the matches of a query under the read lock, alongside other prints
+     * The first query by genre or by artist builds its index under the write lock
+     * @param query: the AlbumQuery
+     * @param reader: what to do with the lock held
+     * @return what the reader returned
+     */
+    private int matching(AlbumQuery query, IntSupplier reader){
+        long stamp = lock.readLock();
+        if (!hasIndex(query)) {
+            lock.unlockRead(stamp);
+            stamp = lock.writeLock();
+            buildIndex(query);
+            stamp = lock.tryConvertToReadLock(stamp);
+        }
+        try {
+            return reader.getAsInt();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Helper method that copies the next albums of a cursor in rating order, with the counts they are ordered by, and moves the cursor past them
+     * The rating gate is closed and the rated entries are moved first, so the counts copied are the ones of the order,
+     * and only the copy is made with the gate closed, printing it is left to the caller
+     * Prints in rating order still take turns at the gate, but each holds it for the time of an array copy
+     * @param cursor: the cursor to move, in rating order
+     * @param count: the most albums to copy
+     * @return the copied albums
+     */
+    private RatedPage copyRated(AlbumCursor cursor, int count){
+        //the gate is taken before the lock, in the same order as rate takes them
+        long gate = ratingGate.writeLock();
+        try {
+            long stamp;
+            if (staleRatings.isEmpty()) {
+                stamp = lock.readLock();
+            } else {
+                stamp = lock.writeLock();
+                updateRatingView();
+                stamp = lock.tryConvertToReadLock(stamp);
+            }
+            try {
+                int size = super.getSize();
+                RatedPage page = new RatedPage(size, Math.min(count, size));
+                Iterator<AlbumEntry> inOrder = viewAfter(SortOrder.RATING, cursor.getBookmark());
+                AlbumEntry last = null;
+                while (page.size < page.albums.length && inOrder.hasNext()) {
+                    last = inOrder.next();
+                    page.add(last.getAlbum());
+                }
+                if (last != null) {
+                    cursor.setBookmark(last);
+                }
+                cursor.setDone(!inOrder.hasNext());
+                return page;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        } finally {
+            ratingGate.unlockWrite(gate);
+        }
+    }
+
+    /**
+     * Helper method that moves every entry rated since the last update to its place in the rating view
+     * The caller must hold the write lock, so no rating is given while the entries move
+     */
+    private void updateRatingView(){
+        for (AlbumEntry entry : staleRatings) {
+            rerank(entry);
+        }
+        staleRatings.clear();
+    }
+
+    /**
+     * The RatedPage class which holds albums copied from the rating view with the counts they were ordered by, to be printed after the copy
+     */
+    private static final class RatedPage {
+        private final int collectionSize; //albums in the collection when the page was copied
+        private final Album[] albums;
+        private final long[] starCounts; //MAX_STAR counts for each album, from one star up
+        private int size;
+
+        private RatedPage(int collectionSize, int capacity){
+            this.collectionSize = collectionSize;
+            this.albums = new Album[capacity];
+            this.starCounts = new long[capacity * RatingStats.MAX_STAR];
+        }
+
+        /**
+         * Copies an album and its current counts to the end of the page
+         */
+        private void add(Album album){
+            RatingStats stats = album.getStats();
+            for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+                starCounts[size * RatingStats.MAX_STAR + star - RatingStats.MIN_STAR] = stats.getCount(star);
+            }
+            albums[size++] = album;
+        }
+
+        /**
+         * Prints the albums of the page, one per line with the counts copied with them
+         * @param out: the OutputSink to print to
+         * @return how many albums were printed
+         */
+        private int print(OutputSink out){
+            long[] counts = new long[RatingStats.MAX_STAR + 1];
+            for (int i = 0; i < size; i++) {
+                System.arraycopy(starCounts, i * RatingStats.MAX_STAR, counts, RatingStats.MIN_STAR, RatingStats.MAX_STAR);
+                out.append(albums[i], counts).newLine();
+            }
+            return size;
+        }
+    }
+}
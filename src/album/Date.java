@@ -1,8 +1,10 @@
 package album;
-import java.util.Calendar;
 
 /**
 The Date class which creates a blueprint for creating date objects
+A Date only holds its year, month and day, the current date used by isValid comes from the shared ValidationClock
+The date is also packed into a single int key, yyyymmdd, so two dates compare with one int comparison
+The static pack, yearOf, monthOf and dayOf methods let storage and indexes keep dates as ints without a Date object
 @author Rohan Sharma
  */
 public class Date implements Comparable<Date>{
@@ -18,33 +20,25 @@ public class Date implements Comparable<Date>{
     //Month constants
     private static final int JANUARY = 1;
     private static final int FEBRUARY = 2;
-    private static final int MARCH = 3;
-    private static final int APRIL = 4;
-    private static final int MAY = 5;
-    private static final int JUNE = 6;
-    private static final int JULY = 7;
-    private static final int AUGUST = 8;
-    private static final int SEPTEMBER = 9;
-    private static final int OCTOBER = 10;
-    private static final int NOVEMBER = 11;
     private static final int DECEMBER = 12;
     //Day constants
     private static final int MIN_DAY = 1;
-    private static final int MAX_DAYS_IN_LONG_MONTH = 31;
-    private static final int MAX_DAYS_IN_SHORT_MONTH = 30;
-    private static final int MAX_DAYS_IN_FEB_NON_LEAP_YEAR = 28;
     private static final int MAX_DAYS_IN_FEB_LEAP_YEAR = 29;
+    //Most days in each month of a non-leap year, indexed by month
+    private static final int[] MAX_DAYS_IN_MONTH = {0, 31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
     //Date constraints
-    Calendar calendar = Calendar.getInstance();
     private static final int MIN_YEAR = 1900;
-    private int currentYear = calendar.get(Calendar.YEAR);
-    private int currentMonth = calendar.get(Calendar.MONTH) + 1; // Note: Calendar.MONTH is zero-based
-    private int currentDay = calendar.get(Calendar.DAY_OF_MONTH);
+    //Packed key constants, a key is year * YEAR_FACTOR + month * MONTH_FACTOR + day
+    private static final int YEAR_FACTOR = 10000;
+    private static final int MONTH_FACTOR = 100;
+    private static final int MAX_PACKED_YEAR = Integer.MAX_VALUE / YEAR_FACTOR - 1;
+    public static final int NOT_PACKED = -1; //key of a date whose fields do not fit in yyyymmdd
 
     //Instance Variables
     private int year;
     private int month;
     private int day;
+    private int key; //the date packed as yyyymmdd, or NOT_PACKED
 
     /**
     Parameterized constructor for the Date class which creates a Date object
@@ -59,6 +53,75 @@ public class Date implements Comparable<Date>{
         setDay(day);
     }
 
+    /**
+    Creates a Date from a packed key
+    @param key: a date packed as yyyymmdd by pack
+    @return a Date with the year, month and day of the key
+     */
+    public static Date fromKey(int key){
+        return new Date(yearOf(key), monthOf(key), dayOf(key));
+    }
+
+    /**
+    Packs a date into an int as yyyymmdd, so packed dates are in the same order as the dates
+    Only dates with a year from 0 to 214746 and a month and day from 0 to 99 can be packed, every valid date can
+    @param year: an integer value representing the year
+    @param month: an integer value representing the month
+    @param day: an integer value representing the day
+    @return the packed date, or NOT_PACKED if the fields do not fit
+     */
+    public static int pack(int year, int month, int day){
+        if (year < 0 || year > MAX_PACKED_YEAR || month < 0 || month >= MONTH_FACTOR || day < 0 || day >= MONTH_FACTOR) {
+            return NOT_PACKED;
+        }
+        return year * YEAR_FACTOR + month * MONTH_FACTOR + day;
+    }
+
+    /**
+    @param key: a date packed as yyyymmdd
+    @return the year of the date
+     */
+    public static int yearOf(int key){
+        return key / YEAR_FACTOR;
+    }
+
+    /**
+    @param key: a date packed as yyyymmdd
+    @return the month of the date
+     */
+    public static int monthOf(int key){
+        return key / MONTH_FACTOR % MONTH_FACTOR;
+    }
+
+    /**
+    @param key: a date packed as yyyymmdd
+    @return the day of the month of the date
+     */
+    public static int dayOf(int key){
+        return key % MONTH_FACTOR;
+    }
+
+    /**
+    Getter method for the packed key
+    @return key: the date packed as yyyymmdd, or NOT_PACKED if its fields do not fit
+     */
+    public int getKey(){
+        return this.key;
+    }
+
+    /**
+    Compares a packed date with a Date the way compareTo compares two Dates, without creating a Date for the key
+    @param key: a date packed as yyyymmdd
+    @param other: a Date object
+    @return -1, 0 or 1 the same way fromKey(key).compareTo(other) does
+     */
+    public static int compareKey(int key, Date other){
+        if(other.key != NOT_PACKED){
+            return Integer.compare(key, other.key);
+        }
+        return fromKey(key).compareTo(other);
+    }
+
     /**
     A method the compares two date objects to determine their relationship in terms of chronology
     @param Date o: Another Date object meant to be compared with the Date object calling the method
@@ -68,6 +131,9 @@ public class Date implements Comparable<Date>{
      */
     @Override
     public int compareTo(Date other) {
+        if(this.key != NOT_PACKED && other.key != NOT_PACKED){
+            return Integer.compare(this.key, other.key);
+        }
         if(this.year < other.year){
             return BEFORE;
         } else if (this.year > other.year) {
@@ -92,10 +158,16 @@ public class Date implements Comparable<Date>{
      */
     @Override
     public String toString(){
-        int day = this.get_day();
-        int month = this.get_month();
-        int year = this.get_year();
-        return month + "/" + day + "/" + year;
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the date formatted as month/day/year, used by toString and by output that is built without Strings
+     * @param sb: the StringBuilder to append to
+     * @return sb, so calls can be chained
+     */
+    public StringBuilder appendTo(StringBuilder sb){
+        return sb.append(this.get_month()).append('/').append(this.get_day()).append('/').append(this.get_year());
     }
     // Setters and Getters
     /**
@@ -104,6 +176,7 @@ public class Date implements Comparable<Date>{
      */
     public void setYear(int year){
         this.year = year;
+        this.key = pack(this.year, this.month, this.day);
     }
     /**
     Getter method for the year instance variable
@@ -118,6 +191,7 @@ public class Date implements Comparable<Date>{
      */
     public void setMonth(int month){
         this.month = month;
+        this.key = pack(this.year, this.month, this.day);
     }
     /**
     Getter method for the month instance variable
@@ -132,6 +206,7 @@ public class Date implements Comparable<Date>{
      */
     public void setDay(int day){
         this.day = day;
+        this.key = pack(this.year, this.month, this.day);
     }
     /**
     Getter method for the day instance variable
@@ -142,22 +217,23 @@ public class Date implements Comparable<Date>{
     }
     /**
     A method to determine if the Date is valid
+    The number of days in the month is looked up in a table, and a date after today, as told by ValidationClock.getShared(), is not valid
     @return true, the date is valid
     @return false, the date is not valid
      */
     public boolean isValid(){
-        if (year < 1900) {
-            return false;
-        }
-        if (year > currentYear || (year == currentYear && (month > currentMonth || (month == currentMonth && day > currentDay)))) {
+        if (year < MIN_YEAR || !isValid_month()) {
             return false;
         }
-        if(is_leap_year()){
-            return isValid_month() && isValid_day_leap_year();
+        int maxDay = MAX_DAYS_IN_MONTH[month];
+        if (month == FEBRUARY && is_leap_year()) {
+            maxDay = MAX_DAYS_IN_FEB_LEAP_YEAR;
         }
-        else{
-            return isValid_month() && isValid_day();
+        if (day < MIN_DAY || day > maxDay) {
+            return false;
         }
+        //with the month and day in range the key orders like the date, a year too large to pack is in the future
+        return key != NOT_PACKED && key <= ValidationClock.getShared().today();
     }
 
 
@@ -192,53 +268,6 @@ public class Date implements Comparable<Date>{
         return this.month >= JANUARY && this.month <= DECEMBER;
     }
 
-    /**
-    A helper method for the isValid method to determine if the day is valid
-    The day's validity is dependent on the current month value and, in some cases, if it is a leap year
-    This method is for when it is not a leap year so for February the max day value is 28
-    @return true: the day is valid
-    @return false: the day is not valid
-     */
-    private boolean isValid_day(){
-        return switch (this.month) {
-
-            case JANUARY, MARCH, MAY, JULY, AUGUST, OCTOBER, DECEMBER -> // January, March, May, July, August, October, December
-                    (day >= MIN_DAY && day <= MAX_DAYS_IN_LONG_MONTH);
-
-            case APRIL, JUNE, SEPTEMBER, NOVEMBER -> // April, June, September, November
-                    (day >= MIN_DAY && day <= MAX_DAYS_IN_SHORT_MONTH);
-
-            case FEBRUARY ->  // February
-                    (day >= MIN_DAY && day <= MAX_DAYS_IN_FEB_NON_LEAP_YEAR); // Assuming a non-leap year
-            default -> {
-                yield false;
-            }
-        };
-    }
-
-    /**
-    A helper method for the isValid method to determine if the day is valid
-    The day's validity is dependent on the current month value and, in some cases, if it is a leap year
-    This method is for when it is a leap year so for February the max day value is 29
-    @return true: the day is valid
-    @return false: the day is not valid
-     */
-    private boolean isValid_day_leap_year(){
-        return switch (this.month) {
-
-            case JANUARY, MARCH, MAY, JULY, AUGUST, OCTOBER, DECEMBER -> // January, March, May, July, August, October, December
-                    (day >= MIN_DAY && day <= MAX_DAYS_IN_LONG_MONTH);
-
-            case APRIL, JUNE, SEPTEMBER, NOVEMBER -> // April, June, September, November
-                    (day >= MIN_DAY && day <= MAX_DAYS_IN_SHORT_MONTH);
-
-            case FEBRUARY ->  // February
-                    (day >= MIN_DAY && day <= MAX_DAYS_IN_FEB_LEAP_YEAR); // Assuming a non-leap year
-            default -> {
-                yield false;
-            }
-        };
-    }
     public static void main(String[] args){
         //Test 1
         Date testOne = new Date(1899, 10, 10);
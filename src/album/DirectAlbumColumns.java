@@ -0,0 +1,122 @@
+package album;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+/**
+ * The DirectAlbumColumns class which keeps the fields of the albums of a ColumnarCollection outside the heap
+ * Each slot is a fixed width record in a direct ByteBuffer: the int fields one after another, then the genre and the sequence
+ * The records are split into chunks of CHUNK_SLOTS, so growing only allocates new chunks and never copies the records,
+ * and the heap holds one ByteBuffer per chunk whatever the number of albums, so the garbage collector has nothing to trace
+ * for them and its pauses do not grow with the collection
+ * The lookup table is allocated outside the heap as well
+ @author Rohan Sharma
+ */
+final class DirectAlbumColumns extends AlbumColumns {
+    private static final int INT_BYTES = Integer.BYTES;
+    private static final int RECORD_SIZE = 64; //bytes of a record, the fields rounded up to a multiple of 8
+    private static final int GENRE = INT_FIELDS * INT_BYTES; //byte offset of the genre ordinal in a record
+    private static final int SEQUENCE = RECORD_SIZE - Long.BYTES; //byte offset of the sequence in a record, after the genre
+    private static final int CHUNK_SHIFT = 16;
+    private static final int CHUNK_SLOTS = 1 << CHUNK_SHIFT; //records in each chunk
+    private static final int SLOT_MASK = CHUNK_SLOTS - 1;
+    private ByteBuffer[] chunks;
+
+    /**
+     * Constructor for the DirectAlbumColumns class, with no chunks until the first slot is needed
+     */
+    DirectAlbumColumns(){
+        super(0);
+        this.chunks = new ByteBuffer[0];
+    }
+
+    @Override
+    int getCapacity(){
+        return chunks.length << CHUNK_SHIFT;
+    }
+
+    /**
+     * Allocates the chunks needed to hold a number of slots, the chunks already allocated are kept as they are
+     * @param capacity: the smallest capacity after growing
+     */
+    @Override
+    void grow(int capacity){
+        int count = (capacity + SLOT_MASK) >>> CHUNK_SHIFT;
+        int allocated = chunks.length;
+        chunks = Arrays.copyOf(chunks, count);
+        for (int chunk = allocated; chunk < count; chunk++) {
+            chunks[chunk] = newChunk();
+        }
+    }
+
+    @Override
+    int getInt(int slot, int field){
+        return chunks[slot >>> CHUNK_SHIFT].getInt(offset(slot) + field * INT_BYTES);
+    }
+
+    @Override
+    void setInt(int slot, int field, int value){
+        chunks[slot >>> CHUNK_SHIFT].putInt(offset(slot) + field * INT_BYTES, value);
+    }
+
+    @Override
+    int getGenre(int slot){
+        return chunks[slot >>> CHUNK_SHIFT].get(offset(slot) + GENRE);
+    }
+
+    @Override
+    void setGenre(int slot, int genre){
+        chunks[slot >>> CHUNK_SHIFT].put(offset(slot) + GENRE, (byte) genre);
+    }
+
+    @Override
+    long getSequence(int slot){
+        return chunks[slot >>> CHUNK_SHIFT].getLong(offset(slot) + SEQUENCE);
+    }
+
+    @Override
+    void setSequence(int slot, long sequence){
+        chunks[slot >>> CHUNK_SHIFT].putLong(offset(slot) + SEQUENCE, sequence);
+    }
+
+    @Override
+    void move(int from, int to){
+        chunks[to >>> CHUNK_SHIFT].put(offset(to), chunks[from >>> CHUNK_SHIFT], offset(from), RECORD_SIZE);
+    }
+
+    /**
+     * Copies the records into new chunks in their new order, the old chunks are freed once nothing refers to them
+     * @param sorted: the slots in their new order
+     */
+    @Override
+    void permute(int[] sorted){
+        ByteBuffer[] permuted = new ByteBuffer[chunks.length];
+        for (int chunk = 0; chunk < permuted.length; chunk++) {
+            permuted[chunk] = newChunk();
+        }
+        for (int i = 0; i < sorted.length; i++) {
+            int from = sorted[i];
+            permuted[i >>> CHUNK_SHIFT].put(offset(i), chunks[from >>> CHUNK_SHIFT], offset(from), RECORD_SIZE);
+        }
+        chunks = permuted;
+    }
+
+    @Override
+    IntBuffer newTable(int count){
+        return ByteBuffer.allocateDirect(count * INT_BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    /**
+     * Helper method that gives the byte offset of a slot in its chunk
+     */
+    private static int offset(int slot){
+        return (slot & SLOT_MASK) * RECORD_SIZE;
+    }
+
+    /**
+     * Helper method that allocates a chunk of records outside the heap
+     */
+    private static ByteBuffer newChunk(){
+        return ByteBuffer.allocateDirect(CHUNK_SLOTS * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+}
@@ -0,0 +1,341 @@
+package album;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.BitSet;
+/**
+ * The DirectStringDictionary class which keeps the strings of a StringDictionary outside the heap
+ * The strings are stored one after another in an arena of bytes in a direct ByteBuffer, behind a table of offsets,
+ * a string of Latin-1 chars in one byte a char and any other string in two, the same way a String picks its coder
+ * The key of every string and the hash intern finds it by are kept beside the offsets, and intern finds a string
+ * with an open addressing hash table of ids, all outside the heap, so the heap holds no String and no entry for any string,
+ * whatever the number of strings
+ * A String is only created by get, for the strings of an album that is turned into an object
+ * retain copies the strings kept into a new arena sized for them, so the memory of the strings dropped is given back
+ @author Rohan Sharma
+ */
+final class DirectStringDictionary extends StringDictionary {
+    private static final int INT_BYTES = Integer.BYTES;
+    private static final int INITIAL_STRINGS = 1 << 10;
+    private static final int INITIAL_BYTES = 1 << 14;
+    private static final byte LATIN1 = 0; //coder of a string stored in a byte a char
+    private static final byte UTF16 = 1; //coder of a string stored in two bytes a char
+    private static final char LAST_LATIN1 = 0xFF;
+    private static final int BYTE_MASK = 0xFF;
+    private static final int EMPTY_SLOT = 0; //table slots hold an id plus one
+    private ByteBuffer bytes; //arena holding every string
+    private int byteCount; //bytes in use in the arena
+    private IntBuffer offsets; //index in the arena of the first byte of each id, and of the byte after the last string
+    private ByteBuffer coders; //coder of each id, the number of bytes a char takes less one
+    private IntBuffer keys; //key of each id
+    private IntBuffer hashes; //String.hashCode of each id, so the table grows without reading the strings
+    private IntBuffer table; //open addressing hash table of ids, twice as many slots as strings at least
+    private int count; //strings in the dictionary
+    private char[] buffer; //reused by appendTo to copy a string out of the arena
+
+    /**
+     * Constructor for the DirectStringDictionary class, empty
+     */
+    DirectStringDictionary(){
+        super();
+        this.bytes = newBytes(INITIAL_BYTES);
+        this.offsets = newInts(INITIAL_STRINGS + 1);
+        this.coders = newBytes(INITIAL_STRINGS);
+        this.keys = newInts(INITIAL_STRINGS);
+        this.hashes = newInts(INITIAL_STRINGS);
+        this.table = newInts(INITIAL_STRINGS * 2);
+        this.buffer = new char[INITIAL_STRINGS];
+    }
+
+    /**
+     * Finds the id of a string with the hash table
+     * @param text: the string
+     * @return the id, or NO_ID if the string was never interned
+     */
+    @Override
+    int find(String text){
+        int hash = text.hashCode();
+        int mask = table.capacity() - 1;
+        for (int i = HashTables.spread(hash) & mask; table.get(i) != EMPTY_SLOT; i = (i + 1) & mask) {
+            int id = table.get(i) - 1;
+            if (hashes.get(id) == hash && equals(id, text)) {
+                return id;
+            }
+        }
+        return NO_ID;
+    }
+
+    /**
+     * Copies a string that is not in the dictionary into the arena, in a byte a char if every char is Latin-1
+     * @param text: the string
+     * @param key: the key of the string, NO_ID if the string is folded and is its own key
+     * @return id: the id given to the string
+     */
+    @Override
+    int add(String text, int key){
+        int length = text.length();
+        byte coder = isLatin1(text) ? LATIN1 : UTF16;
+        long needed = (long) byteCount + ((long) length << coder);
+        if (needed > bytes.capacity()) {
+            ByteBuffer grown = newBytes((int) Math.min(Math.max((long) bytes.capacity() * 2, needed), Integer.MAX_VALUE - 1));
+            grown.put(0, bytes, 0, byteCount);
+            bytes = grown;
+        }
+        for (int c = 0; c < length; c++) {
+            if (coder == LATIN1) {
+                bytes.put(byteCount + c, (byte) text.charAt(c));
+            } else {
+                bytes.putChar(byteCount + (c << coder), text.charAt(c));
+            }
+        }
+        if (count == hashes.capacity()) {
+            hashes = grow(hashes, count * 2);
+            keys = grow(keys, count * 2);
+            offsets = grow(offsets, count * 2 + 1);
+            ByteBuffer grown = newBytes(count * 2);
+            grown.put(0, coders, 0, count);
+            coders = grown;
+        }
+        int id = count++;
+        offsets.put(id, byteCount);
+        byteCount += length << coder;
+        offsets.put(id + 1, byteCount);
+        coders.put(id, coder);
+        keys.put(id, key == NO_ID ? id : key);
+        hashes.put(id, text.hashCode());
+        if (count * 2 > table.capacity()) {
+            rehash(table.capacity() * 2);
+        } else {
+            place(table, id);
+        }
+        return id;
+    }
+
+    /**
+     * Drops every string that is not in use by copying the strings kept into new buffers outside the heap, which are only as
+     * large as the strings kept need, and the old buffers are freed once they are collected
+     * @param used: the ids of the strings to keep, the key of each string kept included
+     * @return the new id of each old id, NO_ID for the strings dropped
+     */
+    @Override
+    int[] retain(BitSet used){
+        ByteBuffer oldBytes = bytes;
+        IntBuffer oldOffsets = offsets;
+        ByteBuffer oldCoders = coders;
+        IntBuffer oldKeys = keys;
+        IntBuffer oldHashes = hashes;
+        int oldCount = count;
+        int keptBytes = 0;
+        for (int id = used.nextSetBit(0); id >= 0 && id < oldCount; id = used.nextSetBit(id + 1)) {
+            keptBytes += oldOffsets.get(id + 1) - oldOffsets.get(id);
+        }
+        int capacity = Math.max(used.cardinality(), INITIAL_STRINGS);
+        bytes = newBytes(Math.max(keptBytes, INITIAL_BYTES));
+        offsets = newInts(capacity + 1);
+        coders = newBytes(capacity);
+        keys = newInts(capacity);
+        hashes = newInts(capacity);
+        byteCount = 0;
+        count = 0;
+        int[] idOf = new int[oldCount];
+        for (int id = 0; id < oldCount; id++) {
+            if (!used.get(id)) {
+                idOf[id] = NO_ID;
+                continue;
+            }
+            int start = oldOffsets.get(id);
+            int length = oldOffsets.get(id + 1) - start;
+            bytes.put(byteCount, oldBytes, start, length);
+            int kept = count++;
+            offsets.put(kept, byteCount);
+            byteCount += length;
+            offsets.put(kept + 1, byteCount);
+            coders.put(kept, oldCoders.get(id));
+            keys.put(kept, oldKeys.get(id) == id ? kept : idOf[oldKeys.get(id)]);
+            hashes.put(kept, oldHashes.get(id));
+            idOf[id] = kept;
+        }
+        int tableCapacity = INITIAL_STRINGS * 2;
+        while (count * 2 > tableCapacity) {
+            tableCapacity *= 2;
+        }
+        rehash(tableCapacity);
+        return idOf;
+    }
+
+    /**
+     * Creates a String holding a string of the arena
+     * @param id: an id given out by intern
+     * @return the string as a new String
+     */
+    @Override
+    String get(int id){
+        char[] copy = new char[length(id)];
+        getChars(id, copy);
+        return new String(copy);
+    }
+
+    @Override
+    int getKey(int id){
+        return keys.get(id);
+    }
+
+    @Override
+    int getSize(){
+        return count;
+    }
+
+    @Override
+    int length(int id){
+        return (offsets.get(id + 1) - offsets.get(id)) >> coders.get(id);
+    }
+
+    @Override
+    char charAt(int id, int index){
+        if (coders.get(id) == LATIN1) {
+            return (char) (bytes.get(offsets.get(id) + index) & BYTE_MASK);
+        }
+        return bytes.getChar(offsets.get(id) + (index << UTF16));
+    }
+
+    /**
+     * Gives a view of a string that reads its chars from the arena, so nothing is copied
+     * The view must not be kept past the next change to the dictionary
+     * @param id: an id given out by intern
+     * @return the chars of the string
+     */
+    @Override
+    CharSequence chars(int id){
+        return new ArenaChars(id);
+    }
+
+    /**
+     * Writes a string of the arena to an OutputSink through a reused buffer, without creating a String
+     * @param id: an id given out by intern
+     * @param out: the OutputSink
+     */
+    @Override
+    void appendTo(int id, OutputSink out){
+        int length = length(id);
+        if (length > buffer.length) {
+            buffer = new char[Math.max(length, buffer.length * 2)];
+        }
+        getChars(id, buffer);
+        out.append(buffer, 0, length);
+    }
+
+    /**
+     * Helper method that copies the chars of a string into a buffer
+     */
+    private void getChars(int id, char[] into){
+        int length = length(id);
+        for (int i = 0; i < length; i++) {
+            into[i] = charAt(id, i);
+        }
+    }
+
+    /**
+     * Helper method of find that compares a string of the arena with a String exactly
+     */
+    private boolean equals(int id, String text){
+        int length = length(id);
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (charAt(id, i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method of add that tells if every char of a string fits in a byte
+     */
+    private static boolean isLatin1(String text){
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > LAST_LATIN1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method that moves every id into a new table, placed by the hashes kept for them
+     */
+    private void rehash(int capacity){
+        IntBuffer grown = newInts(capacity);
+        for (int id = 0; id < count; id++) {
+            place(grown, id);
+        }
+        table = grown;
+    }
+
+    /**
+     * Helper method that puts an id in the first empty slot of a table from the one its hash gives
+     */
+    private void place(IntBuffer into, int id){
+        int mask = into.capacity() - 1;
+        int i = HashTables.spread(hashes.get(id)) & mask;
+        while (into.get(i) != EMPTY_SLOT) {
+            i = (i + 1) & mask;
+        }
+        into.put(i, id + 1);
+    }
+
+    /**
+     * Helper method that copies a table of ints into a larger one outside the heap
+     */
+    private static IntBuffer grow(IntBuffer ints, int capacity){
+        IntBuffer grown = newInts(capacity);
+        grown.put(0, ints, 0, ints.capacity());
+        return grown;
+    }
+
+    /**
+     * Helper method that allocates a table of ints outside the heap
+     */
+    private static IntBuffer newInts(int count){
+        return newBytes(count * INT_BYTES).asIntBuffer();
+    }
+
+    /**
+     * Helper method that allocates a buffer of bytes outside the heap
+     */
+    private static ByteBuffer newBytes(int count){
+        return ByteBuffer.allocateDirect(count).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * The chars of a string of the arena, read when they are asked for
+     */
+    private final class ArenaChars implements CharSequence {
+        private final int id;
+
+        ArenaChars(int id){
+            this.id = id;
+        }
+
+        @Override
+        public int length(){
+            return DirectStringDictionary.this.length(id);
+        }
+
+        @Override
+        public char charAt(int index){
+            return DirectStringDictionary.this.charAt(id, index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end){
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString(){
+            return get(id);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package album;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ * The FrozenRatings class which keeps the rating counts the albums of a Collection had when it was captured for a snapshot
+ * The first time an album is rated after the capture, its counts are copied here before the rating is recorded,
+ * so the thread writing the snapshot reads the counts of the moment of the capture while the albums keep being rated
+ * Only albums rated before the snapshot reads them are copied, and nothing more is kept once the snapshot releases it
+ @author Rohan Sharma
+ */
+final class FrozenRatings {
+    private final ConcurrentHashMap<AlbumEntry, long[]> kept = new ConcurrentHashMap<>(); //counts of the albums rated since the capture
+    private volatile boolean released;
+
+    /**
+     * Keeps the counts of an album that is about to be rated, unless they are kept already
+     * Must be called before the rating is recorded, and never while the collection is being captured
+     * @param entry: the AlbumEntry of the album
+     */
+    void keep(AlbumEntry entry){
+        if (!released) {
+            kept.computeIfAbsent(entry, FrozenRatings::countsOf);
+        }
+    }
+
+    /**
+     * Reads the counts an album had when the collection was captured
+     * The counts of an album that was not rated since are read with its mapping held, so a rating that starts meanwhile
+     * waits in keep and is only recorded after the read
+     * @param entry: the AlbumEntry of a captured album
+     * @param counts: where the count of each star is read to, indexed by star
+     */
+    void read(AlbumEntry entry, long[] counts){
+        kept.compute(entry, (key, saved) -> {
+            if (saved != null) {
+                System.arraycopy(saved, 0, counts, 0, counts.length);
+            } else {
+                readCounts(key, counts);
+            }
+            return saved;
+        });
+    }
+
+    /**
+     * Stops keeping counts, once every captured album has been read
+     */
+    void release(){
+        released = true;
+        kept.clear();
+    }
+
+    /**
+     * Helper method that copies the current counts of an album
+     * @return the count of each star, indexed by star
+     */
+    private static long[] countsOf(AlbumEntry entry){
+        long[] counts = new long[RatingStats.MAX_STAR + 1];
+        readCounts(entry, counts);
+        return counts;
+    }
+
+    /**
+     * Helper method that reads the current counts of an album into an array indexed by star
+     */
+    private static void readCounts(AlbumEntry entry, long[] counts){
+        RatingStats stats = entry.getAlbum().getStats();
+        for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+            counts[star] = stats.getCount(star);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package album;
+/**
+ * The HashTables class which holds the helpers shared by the open addressing tables of the stores
+ * @author Rohan Sharma
+ */
+final class HashTables {
+
+    private HashTables(){
+    }
+
+    /**
+     * Mixes the high bits of a hash into the low bits a table index is taken from, so hashes that differ only in their
+     * high bits still land in different slots of a small table
+     * @param hash: the hash of a key
+     * @return the mixed hash, to be masked to the size of the table
+     */
+    static int spread(int hash){
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,737 @@
+package album;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+/**
+ * The MappedCatalog class which reads a collection saved in a compact binary file through a memory mapping
+ * Opening a catalog only maps the file and checks its header against the size of the file, so it takes the same time for any number
+ * of albums, no album is loaded as an object, and the fields of an album are read from the mapping when they are needed
+ * The checksum of the file is only checked by verify, since it reads every page of the file: a snapshot is written to a temporary
+ * file, forced and renamed into place, so a torn catalog is never opened, and verify is for damage done to the file after that
+ * The file is mapped in chunks of CHUNK_SIZE bytes, each mapping a few bytes past its end so no read straddles two chunks,
+ * and positions in the file are longs, so a catalog can be larger than 2 GiB
+ * The file holds, in order and big-endian:
+ * a header with the CRC32C of everything after the checksum, and the sizes and positions of the sections,
+ * a string dictionary, where every distinct title and artist name is stored once as UTF-16 chars behind a table of long offsets,
+ * the album records, each the dictionary ids of the title and artist name, the artist date of birth and release date packed
+ * as yyyymmdd, the genre ordinal and the count of each star rating,
+ * the records in each SortOrder, so a sorted listing walks the records without sorting,
+ * and an open addressing hash table of the records by album identity, so a lookup reads a few records
+ * Every read is an absolute read of the mapping, so the catalog can be read by several threads at once
+ @author Rohan Sharma
+ */
+public final class MappedCatalog {
+    public static final int NOT_FOUND = -1;
+    private static final int EQUAL = 0;
+    private static final int MAGIC = 0x414C4243;
+    private static final int FORMAT_VERSION = 3;
+    private static final int MAX_RECORDS = 1 << 28; //more records would overflow the capacity of the index
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_SIZE = 1L << CHUNK_SHIFT; //bytes of the file each mapping starts apart
+    private static final long CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int CHUNK_OVERLAP = 8; //bytes each mapping reaches past the next chunk start, the largest read
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+    //Header fields
+    private static final int HEADER_SIZE = 80;
+    private static final int MAGIC_AT = 0;
+    private static final int VERSION_AT = 4;
+    private static final int CHECKSUM_AT = 8; //CRC32C of the file from CHECKED_AT to the end
+    private static final int CHECKED_AT = 16;
+    private static final int GENERATION_AT = 16;
+    private static final int COUNT_AT = 24;
+    private static final int STRING_COUNT_AT = 28;
+    private static final int INDEX_CAPACITY_AT = 32;
+    private static final int OFFSETS_AT = 40;
+    private static final int CHARS_AT = 48;
+    private static final int RECORDS_AT = 56;
+    private static final int ORDERS_AT = 64;
+    private static final int INDEX_AT = 72;
+    //Record fields
+    private static final int RECORD_SIZE = 64;
+    private static final int TITLE = 0;
+    private static final int NAME = 4;
+    private static final int BORN = 8;
+    private static final int RELEASED = 12;
+    private static final int GENRE = 16;
+    private static final int STARS = 24;
+    private static final int INT_BYTES = 4;
+    private static final int CHAR_BYTES = 2;
+    private static final int LONG_BYTES = 8;
+    private static final int EMPTY_SLOT = 0; //index slots hold a record plus one
+    private static final Genre[] GENRES = Genre.values();
+    private static final SortOrder[] ORDERS = SortOrder.values();
+
+    private final MappedByteBuffer[] chunks; //mapping of each chunk of the file
+    private final long size; //bytes in the file
+    private final Path path; //the file, for error messages
+    private final long generation;
+    private final int count;
+    private final int stringCount;
+    private final int indexCapacity;
+    private final long offsetsAt;
+    private final long charsAt;
+    private final long recordsAt;
+    private final long ordersAt;
+    private final long indexAt;
+
+    /**
+     * Constructor for the MappedCatalog class which reads the header of a mapped file and checks its sections fit the file
+     * @param chunks: the mappings of the chunks of the file
+     * @param size: the number of bytes in the file
+     * @param path: the file, for error messages
+     * @throws IOException if the file is not a complete catalog
+     */
+    private MappedCatalog(MappedByteBuffer[] chunks, long size, Path path) throws IOException {
+        this.chunks = chunks;
+        this.size = size;
+        this.path = path;
+        if (size < HEADER_SIZE || getInt(MAGIC_AT) != MAGIC || getInt(VERSION_AT) != FORMAT_VERSION) {
+            throw new IOException(path + " is not a collection catalog");
+        }
+        this.generation = getLong(GENERATION_AT);
+        this.count = getInt(COUNT_AT);
+        this.stringCount = getInt(STRING_COUNT_AT);
+        this.indexCapacity = getInt(INDEX_CAPACITY_AT);
+        this.offsetsAt = getLong(OFFSETS_AT);
+        this.charsAt = getLong(CHARS_AT);
+        this.recordsAt = getLong(RECORDS_AT);
+        this.ordersAt = getLong(ORDERS_AT);
+        this.indexAt = getLong(INDEX_AT);
+        if (!sectionsFit()) {
+            throw new IOException(path + " is damaged, its sections do not fit the file");
+        }
+    }
+
+    /**
+     * Maps a catalog file, chunk by chunk, and checks it is a complete catalog
+     * The mapping stays valid if the file is later replaced by a newer catalog
+     * @param path: the file
+     * @return the catalog
+     * @throws IOException if the file cannot be mapped or is not a complete catalog
+     */
+    public static MappedCatalog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int chunk = 0; chunk < chunks.length; chunk++) {
+                long start = (long) chunk << CHUNK_SHIFT;
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_SIZE + CHUNK_OVERLAP, size - start));
+            }
+            return new MappedCatalog(chunks, size, path);
+        }
+    }
+
+    //Getters
+
+    /**
+     * Getter method for the generation the catalog was saved with
+     * @return generation: a long
+     */
+    public long getGeneration(){
+        return generation;
+    }
+
+    /**
+     * Getter method for the number of album records
+     * @return count: an int
+     */
+    public int getSize(){
+        return count;
+    }
+
+    /**
+     * @param record: a record from 0 to getSize() - 1
+     * @return the dictionary id of the title
+     */
+    public int title(int record){
+        return getInt(recordAt(record) + TITLE);
+    }
+
+    /**
+     * @param record: a record from 0 to getSize() - 1
+     * @return the dictionary id of the artist name
+     */
+    public int artistName(int record){
+        return getInt(recordAt(record) + NAME);
+    }
+
+    /**
+     * @param record: a record from 0 to getSize() - 1
+     * @return the artist date of birth packed as yyyymmdd
+     */
+    public int born(int record){
+        return getInt(recordAt(record) + BORN);
+    }
+
+    /**
+     * @param record: a record from 0 to getSize() - 1
+     * @return the release date packed as yyyymmdd
+     */
+    public int released(int record){
+        return getInt(recordAt(record) + RELEASED);
+    }
+
+    /**
+     * @param record: a record from 0 to getSize() - 1
+     * @return the genre
+     */
+    public Genre genre(int record){
+        return GENRES[getInt(recordAt(record) + GENRE)];
+    }
+
+    /**
+     * @param record: a record from 0 to getSize() - 1
+     * @param star: a star from 1 to 5
+     * @return how many ratings of that star the album has
+     */
+    public long starCount(int record, int star){
+        return getLong(recordAt(record) + STARS + (star - RatingStats.MIN_STAR) * LONG_BYTES);
+    }
+
+    /**
+     * Adds the ratings of a record to a RatingStats
+     * @param record: a record from 0 to getSize() - 1
+     * @param stats: the totals to add to
+     */
+    public void addStars(int record, RatingStats stats){
+        for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+            stats.record(star, starCount(record, star));
+        }
+    }
+
+    /**
+     * @param record: a record from 0 to getSize() - 1
+     * @return the average rating, the same value Album.avgRatings gives
+     */
+    public double average(int record){
+        long sum = 0;
+        long ratings = 0;
+        for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+            long stars = starCount(record, star);
+            sum += star * stars;
+            ratings += stars;
+        }
+        return ratings == 0 ? 0.0 : (double) sum / ratings;
+    }
+
+    /**
+     * @param order: a SortOrder
+     * @param rank: a position in that order from 0 to getSize() - 1
+     * @return the record at that position
+     */
+    public int recordAt(SortOrder order, int rank){
+        return getInt(ordersAt + ((long) order.ordinal() * count + rank) * INT_BYTES);
+    }
+
+    /**
+     * @param id: a dictionary id
+     * @return the number of chars in the string
+     */
+    public int stringLength(int id){
+        return (int) (offsetOf(id + 1) - offsetOf(id));
+    }
+
+    /**
+     * Copies the chars of a string into a buffer
+     * @param id: a dictionary id
+     * @param chars: a buffer of at least stringLength(id) chars
+     */
+    public void getChars(int id, char[] chars){
+        long at = charsAt + offsetOf(id) * CHAR_BYTES;
+        int length = stringLength(id);
+        for (int i = 0; i < length; i++) {
+            chars[i] = getChar(at + (long) i * CHAR_BYTES);
+        }
+    }
+
+    /**
+     * @param id: a dictionary id
+     * @return the string as a new String
+     */
+    public String string(int id){
+        char[] chars = new char[stringLength(id)];
+        getChars(id, chars);
+        return new String(chars);
+    }
+
+    /**
+     * Creates an Album object for a record
+     * @param record: a record from 0 to getSize() - 1
+     * @param artists: the registry the artist is taken from, or null to create a new Artist
+     * @return a new Album with the fields and ratings of the record
+     */
+    public Album materialize(int record, ArtistRegistry artists){
+        String name = string(artistName(record));
+        Date born = Date.fromKey(born(record));
+        Artist artist = artists == null ? new Artist(name, born) : artists.intern(name, born);
+        Album album = new Album(string(title(record)), artist, genre(record), Date.fromKey(released(record)), null);
+        addStars(record, album.getStats());
+        return album;
+    }
+
+    /**
+     * Finds the record of an album with the hash table, comparing names the way Album.equals does
+     * @param album: an Album object with a title and an artist
+     * @return the record, or NOT_FOUND if no record is the same album
+     */
+    public int find(Album album){
+        if (indexCapacity == 0) {
+            return NOT_FOUND;
+        }
+        int born = album.getArtist().getBorn().getKey();
+        if (born == Date.NOT_PACKED) {
+            return NOT_FOUND;
+        }
+        int mask = indexCapacity - 1;
+        for (int i = HashTables.spread(AlbumKey.of(album).hashCode()) & mask; ; i = (i + 1) & mask) {
+            int slot = getInt(indexAt + (long) i * INT_BYTES);
+            if (slot == EMPTY_SLOT) {
+                return NOT_FOUND;
+            }
+            int record = slot - 1;
+            if (born(record) == born && equalsIgnoreCase(title(record), album.getTitle())
+                    && equalsIgnoreCase(artistName(record), album.getArtist().getName())) {
+                return record;
+            }
+        }
+    }
+
+    /**
+     * Finds where an album belongs among the records in an order
+     * The records are compared with the album by the fields of the order read from the mapping, the same way the comparator
+     * of the order compares two albums, for RATING with the average given, so no album is created for a record
+     * Records tied with each other are in record order, the same way a Collection orders tied albums by sequence number,
+     * so the album comes after the records it is tied with whose record is below its sequence number
+     * @param order: the SortOrder the records are in
+     * @param album: an Album object
+     * @param average: the average rating to rank the album by in the RATING order
+     * @param sequence: the sequence number of the album, the record it was read from or getSize() or more for an album added since
+     * @return the first rank whose record comes after the album, getSize() if none does
+     */
+    public int upperBound(SortOrder order, Album album, double average, long sequence){
+        MappedChars chars = new MappedChars();
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int record = recordAt(order, middle);
+            int comparison = compare(order, record, album, average, chars);
+            if (comparison > 0 || comparison == EQUAL && record > sequence) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Helper method of upperBound that compares a record with an album by the fields an order compares
+     * Titles and names are only read when the fields before them are tied
+     * @param order: the ordering
+     * @param record: a record from 0 to getSize() - 1
+     * @param album: an Album object
+     * @param average: the average rating of the album for the RATING order
+     * @param chars: reused to read the strings of the record
+     * @return -1, 0 or 1 the same way order.compare does for an album made from the record and the album
+     */
+    private int compare(SortOrder order, int record, Album album, double average, MappedChars chars){
+        if (order == SortOrder.DATE) {
+            int comparison = Date.compareKey(released(record), album.getReleased());
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+        } else if (order == SortOrder.GENRE) {
+            int comparison = Album.compareWords(genre(record).toString(), album.getGenre().toString());
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            Artist artist = album.getArtist();
+            comparison = SortKeys.compareName(chars.of(artistName(record)), artist.getFirstNameKey(), artist.getLastNameKey());
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            return Date.compareKey(born(record), artist.getBorn());
+        } else {
+            int comparison = SortOrder.compareAverages(average(record), average);
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+        }
+        return SortKeys.compareTitle(chars.of(title(record)), album.getTitleKey());
+    }
+
+    /**
+     * Helper method that gives the position in the file of a record
+     * @param record: a record from 0 to getSize() - 1
+     * @return the position of its first byte
+     */
+    private long recordAt(int record){
+        return recordsAt + (long) record * RECORD_SIZE;
+    }
+
+    /**
+     * Helper method that gives the char offset of a string in the dictionary, or of the end of the last string
+     */
+    private long offsetOf(int id){
+        return getLong(offsetsAt + (long) id * LONG_BYTES);
+    }
+
+    /**
+     * Helper method that reads an int at a position of the file
+     */
+    private int getInt(long position){
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getInt((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Helper method that reads a long at a position of the file
+     */
+    private long getLong(long position){
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getLong((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Helper method that reads a char at a position of the file
+     */
+    private char getChar(long position){
+        return chunks[(int) (position >>> CHUNK_SHIFT)].getChar((int) (position & CHUNK_MASK));
+    }
+
+    /**
+     * Checks the checksum of the file, which reads every page of it in one sequential pass
+     * @throws IOException if the file was damaged after it was written
+     */
+    public void verify() throws IOException {
+        if (getLong(CHECKSUM_AT) != checksum()) {
+            throw new IOException(path + " is damaged, its checksum does not match");
+        }
+    }
+
+    /**
+     * Helper method of the constructor that checks the sizes in the header against each other and the sections against the file,
+     * each section starting where the one before it ends and the last one ending at the end of the file
+     * Only the header and the last offset of the dictionary are read
+     * @return true if the sections fit
+     */
+    private boolean sectionsFit(){
+        if (count < 0 || count > MAX_RECORDS || stringCount < 0 || indexCapacity <= count || Integer.bitCount(indexCapacity) != 1) {
+            return false;
+        }
+        if (offsetsAt != HEADER_SIZE || charsAt != offsetsAt + (stringCount + 1L) * LONG_BYTES || charsAt > size) {
+            return false;
+        }
+        long chars = getLong(charsAt - LONG_BYTES); //the last offset of the dictionary is the number of chars in it
+        return chars >= 0 && chars <= size && recordsAt == charsAt + chars * CHAR_BYTES
+                && ordersAt == recordsAt + (long) count * RECORD_SIZE
+                && indexAt == ordersAt + (long) ORDERS.length * count * INT_BYTES
+                && indexAt + (long) indexCapacity * INT_BYTES == size;
+    }
+
+    /**
+     * Helper method of verify that works out the CRC32C of the file from CHECKED_AT to the end
+     * Each chunk is read up to the start of the next one, the bytes it maps past that are read with the next chunk
+     * @return the checksum
+     */
+    private long checksum(){
+        CRC32C crc = new CRC32C();
+        for (int chunk = 0; chunk < chunks.length; chunk++) {
+            long start = (long) chunk << CHUNK_SHIFT;
+            ByteBuffer bytes = chunks[chunk].duplicate();
+            bytes.limit((int) Math.min(CHUNK_SIZE, size - start));
+            bytes.position(chunk == 0 ? CHECKED_AT : 0);
+            crc.update(bytes);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Helper method that compares a dictionary string with a String the way String.equalsIgnoreCase does
+     * @param id: a dictionary id
+     * @param text: the String
+     * @return true if they are equal ignoring case
+     */
+    private boolean equalsIgnoreCase(int id, String text){
+        int length = stringLength(id);
+        if (length != text.length()) {
+            return false;
+        }
+        long at = charsAt + offsetOf(id) * CHAR_BYTES;
+        for (int i = 0; i < length; i++) {
+            char c = getChar(at + (long) i * CHAR_BYTES);
+            char d = text.charAt(i);
+            if (c != d && Character.toLowerCase(Character.toUpperCase(c)) != Character.toLowerCase(Character.toUpperCase(d))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the state captured in a snapshot as a catalog, from the start of an empty file
+     * The checksum is worked out while the rest of the file is written, then written into the header
+     * The records are numbered in the order the albums were added: the live records of the base catalog keep their record order,
+     * and each album held as an object comes after the records below its sequence number, so an album that was read from a record
+     * takes the place of that record and the albums added since come last
+     * The albums are placed in each order by merging them into the order of the base catalog
+     * The caller forces the file to disk
+     * @param channel: the empty file, open for writing
+     * @param generation: the generation to save with the catalog
+     * @param snapshot: the captured state, resolved
+     * @throws IOException if the file cannot be written, or the snapshot has more albums than a catalog can index
+     */
+    static void write(FileChannel channel, long generation, CatalogSnapshot snapshot) throws IOException {
+        OutputStream file = Channels.newOutputStream(channel);
+        DataOutputStream header = new DataOutputStream(file);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        header.writeLong(0); //the checksum, written once the rest is
+        CRC32C crc = new CRC32C();
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new CheckedOutputStream(file, crc), IO_BUFFER_SIZE));
+        write(out, generation, snapshot);
+        out.flush();
+        ByteBuffer checksum = ByteBuffer.allocate(LONG_BYTES).putLong(0, crc.getValue());
+        while (checksum.hasRemaining()) {
+            channel.write(checksum, CHECKSUM_AT + checksum.position());
+        }
+    }
+
+    /**
+     * Helper method of write that writes everything after the checksum
+     */
+    private static void write(DataOutputStream out, long generation, CatalogSnapshot snapshot) throws IOException {
+        MappedCatalog base = snapshot.getBase();
+        Album[] albums = snapshot.getAlbums();
+        int baseCount = base == null ? 0 : base.getSize();
+        int live = 0;
+        for (int record = 0; record < baseCount; record++) {
+            if (!snapshot.isRemoved(record)) {
+                live++;
+            }
+        }
+        if ((long) live + albums.length > MAX_RECORDS) {
+            throw new IOException("a catalog holds at most " + MAX_RECORDS + " albums");
+        }
+        int total = live + albums.length;
+        int[] newRecord = new int[baseCount]; //record in the new file of each base record, NOT_FOUND for a removed one
+        Arrays.fill(newRecord, NOT_FOUND);
+        int[] albumRecord = new int[albums.length]; //record in the new file of each album held as an object
+        int[] sources = new int[total]; //base record each new record is written from, or -1 - album for an album
+        int baseRecord = nextLive(snapshot, 0, baseCount);
+        int album = 0;
+        for (int record = 0; record < total; record++) {
+            if (baseRecord == baseCount || album < albums.length && snapshot.getSequence(album) < baseRecord) {
+                albumRecord[album] = record;
+                sources[record] = -1 - album;
+                album++;
+            } else {
+                newRecord[baseRecord] = record;
+                sources[record] = baseRecord;
+                baseRecord = nextLive(snapshot, baseRecord + 1, baseCount);
+            }
+        }
+        //Titles and names of every record, as dictionary ids
+        HashMap<String, Integer> ids = new HashMap<>();
+        ArrayList<String> strings = new ArrayList<>();
+        int[] titles = new int[total];
+        int[] names = new int[total];
+        int[] hashes = new int[total];
+        for (int record = 0; record < total; record++) {
+            int source = sources[record];
+            if (source >= 0) {
+                String title = base.string(base.title(source));
+                String name = base.string(base.artistName(source));
+                titles[record] = intern(title, ids, strings);
+                names[record] = intern(name, ids, strings);
+                hashes[record] = new AlbumKey(title, name, Date.fromKey(base.born(source))).hashCode();
+            } else {
+                Album held = albums[-1 - source];
+                titles[record] = intern(held.getTitle(), ids, strings);
+                names[record] = intern(held.getArtist().getName(), ids, strings);
+                hashes[record] = AlbumKey.of(held).hashCode();
+            }
+        }
+        long chars = 0;
+        for (String string : strings) {
+            chars += string.length();
+        }
+        int indexCapacity = Integer.highestOneBit(Math.max(total, 1)) << 2;
+        long offsetsAt = HEADER_SIZE;
+        long charsAt = offsetsAt + (long) (strings.size() + 1) * LONG_BYTES;
+        long recordsAt = charsAt + chars * CHAR_BYTES;
+        long ordersAt = recordsAt + (long) total * RECORD_SIZE;
+        long indexAt = ordersAt + (long) ORDERS.length * total * INT_BYTES;
+        //Header, after the magic number, version and checksum
+        out.writeLong(generation);
+        out.writeInt(total);
+        out.writeInt(strings.size());
+        out.writeInt(indexCapacity);
+        out.writeInt(0);
+        out.writeLong(offsetsAt);
+        out.writeLong(charsAt);
+        out.writeLong(recordsAt);
+        out.writeLong(ordersAt);
+        out.writeLong(indexAt);
+        //Dictionary
+        long offset = 0;
+        for (String string : strings) {
+            out.writeLong(offset);
+            offset += string.length();
+        }
+        out.writeLong(offset);
+        for (String string : strings) {
+            out.writeChars(string);
+        }
+        //Records
+        for (int record = 0; record < total; record++) {
+            int source = sources[record];
+            if (source >= 0) {
+                writeRecord(out, titles[record], names[record], base.born(source), base.released(source), base.genre(source));
+                for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+                    out.writeLong(base.starCount(source, star));
+                }
+            } else {
+                Album held = albums[-1 - source];
+                writeRecord(out, titles[record], names[record], held.getArtist().getBorn().getKey(), held.getReleased().getKey(), held.getGenre());
+                for (int star = RatingStats.MIN_STAR; star <= RatingStats.MAX_STAR; star++) {
+                    out.writeLong(snapshot.getStarCount(-1 - source, star));
+                }
+            }
+        }
+        //Orders
+        for (SortOrder order : ORDERS) {
+            int[] albumOrder = snapshot.getOrder(order);
+            int j = 0;
+            int position = j < albumOrder.length ? bound(base, order, snapshot, albumOrder[j]) : baseCount;
+            for (int rank = 0; rank < baseCount; rank++) {
+                while (j < albumOrder.length && position <= rank) {
+                    out.writeInt(albumRecord[albumOrder[j]]);
+                    j++;
+                    position = j < albumOrder.length ? bound(base, order, snapshot, albumOrder[j]) : baseCount;
+                }
+                int record = newRecord[base.recordAt(order, rank)];
+                if (record != NOT_FOUND) {
+                    out.writeInt(record);
+                }
+            }
+            for (; j < albumOrder.length; j++) {
+                out.writeInt(albumRecord[albumOrder[j]]);
+            }
+        }
+        //Index
+        int[] index = new int[indexCapacity];
+        int mask = indexCapacity - 1;
+        for (int record = 0; record < total; record++) {
+            int i = HashTables.spread(hashes[record]) & mask;
+            while (index[i] != EMPTY_SLOT) {
+                i = (i + 1) & mask;
+            }
+            index[i] = record + 1;
+        }
+        for (int slot : index) {
+            out.writeInt(slot);
+        }
+    }
+
+    /**
+     * Helper method of write that finds where a captured album belongs in an order of the base catalog
+     * @return the rank in the base catalog the album goes before, 0 if there is no base catalog
+     */
+    private static int bound(MappedCatalog base, SortOrder order, CatalogSnapshot snapshot, int album){
+        if (base == null) {
+            return 0;
+        }
+        return base.upperBound(order, snapshot.getAlbums()[album], snapshot.getAverage(album), snapshot.getSequence(album));
+    }
+
+    /**
+     * Helper method of write that finds the first record of the base catalog from a record on that is part of the snapshot
+     * @return the record, baseCount if there is none
+     */
+    private static int nextLive(CatalogSnapshot snapshot, int record, int baseCount){
+        while (record < baseCount && snapshot.isRemoved(record)) {
+            record++;
+        }
+        return record;
+    }
+
+    /**
+     * Helper method of write that writes the fixed fields of a record and the padding before its star counts
+     */
+    private static void writeRecord(DataOutputStream out, int title, int name, int born, int released, Genre genre) throws IOException {
+        out.writeInt(title);
+        out.writeInt(name);
+        out.writeInt(born);
+        out.writeInt(released);
+        out.writeInt(genre.ordinal());
+        out.writeInt(0);
+    }
+
+    /**
+     * Helper method of write that gives a string its dictionary id, adding it to the dictionary if it is new
+     */
+    private static int intern(String string, HashMap<String, Integer> ids, ArrayList<String> strings){
+        Integer id = ids.get(string);
+        if (id == null) {
+            id = strings.size();
+            ids.put(string, id);
+            strings.add(string);
+        }
+        return id;
+    }
+
+    /**
+     * The chars of a dictionary string read from the mapping, pointed at one string after another so a search reuses one
+     */
+    private final class MappedChars implements CharSequence {
+        private long at; //position of the first char
+        private int length;
+
+        /**
+         * Points at the chars of a string
+         * @param id: a dictionary id
+         * @return this
+         */
+        MappedChars of(int id){
+            this.at = charsAt + offsetOf(id) * CHAR_BYTES;
+            this.length = stringLength(id);
+            return this;
+        }
+
+        @Override
+        public int length(){
+            return length;
+        }
+
+        @Override
+        public char charAt(int index){
+            return getChar(at + (long) index * CHAR_BYTES);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end){
+            char[] chars = new char[end - start];
+            for (int i = start; i < end; i++) {
+                chars[i - start] = charAt(i);
+            }
+            return new String(chars);
+        }
+
+        @Override
+        public String toString(){
+            return subSequence(0, length).toString();
+        }
+    }
+}
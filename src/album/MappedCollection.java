@@ -0,0 +1,551 @@
+package album;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+/**
+ * The MappedCollection class which is a Collection opened on a MappedCatalog
+ * The albums of the catalog stay in the mapping: lookups use the hash table of the catalog and the print methods walk its
+ * orders and write the fields straight from the mapping, so opening the collection does not depend on how many albums it has
+ * Only the albums that are touched become objects: an album returned by returnAlbum is created from its record once and reused,
+ * and an album that is rated is moved into the albums array of the Collection, where its rating can change
+ * Albums added after opening go into the albums array as usual, and removing an album of the catalog only marks its record
+ * An album that moves into the array keeps its record as its sequence number, and albums added after opening are numbered
+ * after the last record, so the print methods merge the albums in the array into the orders of the catalog with ties in the
+ * order the albums were added, as a Collection lists them
+ * Methods that hand out the albums array (getAlbums, sort, setAlbums and setSize) move every album of the catalog into the array first
+ * Queries by genre or artist use lists of the release date ranks of the records of each genre and artist,
+ * built in one pass over the catalog the first time such a query is made
+ @author Rohan Sharma
+ */
+public class MappedCollection extends Collection {
+    private static final int INITIAL_CHARS = 64;
+    private final MappedCatalog catalog;
+    private final ArtistRegistry artists; //registry the artists of materialized albums are taken from
+    private final BitSet removed; //records of the catalog that were removed or moved into the albums array
+    private int removedCount;
+    private final HashMap<Integer, Album> materialized; //albums created for records that are still in the catalog
+    private final RatingStats recordStats; //reused to write the rating of a record
+    private char[] chars; //reused to copy strings out of the mapping
+    private int[][] genreRanks; //release date ranks of the records of each genre by ordinal, null until the first query by genre
+    private HashMap<AlbumKey, int[]> artistRanks; //release date ranks of the records of each artist, null until the first query by artist
+
+    /**
+     * Constructor for the MappedCollection class, the albums of the catalog are not read
+     * @param catalog: the mapped catalog holding the albums the collection starts with
+     * @param artists: the registry the artists of albums created from records are taken from
+     */
+    public MappedCollection(MappedCatalog catalog, ArtistRegistry artists){
+        super();
+        this.catalog = catalog;
+        this.artists = artists;
+        this.removed = new BitSet();
+        this.removedCount = 0;
+        this.materialized = new HashMap<>();
+        this.recordStats = new PlainRatingStats();
+        this.chars = new char[INITIAL_CHARS];
+        setNextSequence(catalog.getSize());
+    }
+
+    /**
+     * Getter method for the catalog
+     * @return catalog: the MappedCatalog the collection was opened on
+     */
+    public MappedCatalog getCatalog(){
+        return catalog;
+    }
+
+    /**
+     * Getter method for the size, the albums in the array and the records of the catalog that are still in the collection
+     * @return size: an int
+     */
+    @Override
+    public int getSize(){
+        return super.getSize() + catalog.getSize() - removedCount;
+    }
+
+    /**
+     * Moves every album of the catalog into the albums array, then returns the array
+     * @return albums: an array of type Album holding all the albums
+     */
+    @Override
+    public Album[] getAlbums(){
+        materializeAll();
+        return super.getAlbums();
+    }
+
+    /**
+     * Moves every album of the catalog into the albums array, then sets how many slots of the array are in use
+     * @param size: an integer value representing how many slots of the albums array are in use
+     */
+    @Override
+    public void setSize(int size){
+        materializeAll();
+        super.setSize(size);
+    }
+
+    /**
+     * Moves every album of the catalog into the albums array, then replaces the array
+     * @param albums: an array of type Album
+     */
+    @Override
+    public void setAlbums(Album[] albums){
+        materializeAll();
+        super.setAlbums(albums);
+    }
+
+    /**
+     * @param album: An album object
+     * @return true: the album is in the albums array or is a record of the catalog that was not removed
+     */
+    @Override
+    public boolean contains(Album album){
+        return super.contains(album) || findRecord(album) != MappedCatalog.NOT_FOUND;
+    }
+
+    /**
+     * Adds an album to the albums array unless it is already in the array or the catalog
+     * @param album: an album object
+     * @return true: the album was added
+     */
+    @Override
+    public boolean add(Album album){
+        if (findRecord(album) != MappedCatalog.NOT_FOUND) {
+            return false;
+        }
+        return super.add(album);
+    }
+
+    /**
+     * Adds a batch of albums, leaving out the ones that are records of the catalog
+     * @param batch: an array of Album objects
+     * @return added: how many albums from the batch were added
+     */
+    @Override
+    public int addAll(Album[] batch){
+        ArrayList<Album> accepted = new ArrayList<>(batch.length);
+        for (Album album : batch) {
+            if (findRecord(album) == MappedCatalog.NOT_FOUND) {
+                accepted.add(album);
+            }
+        }
+        return super.addAll(accepted.toArray(new Album[0]));
+    }
+
+    /**
+     * Finds the album equal to the one given, creating the album of a record the first time it is asked for
+     * @param album: an Album object
+     * @return the album in the collection, or null if there is none
+     */
+    @Override
+    public Album returnAlbum(Album album){
+        Album found = super.returnAlbum(album);
+        if (found != null) {
+            return found;
+        }
+        int record = findRecord(album);
+        if (record == MappedCatalog.NOT_FOUND) {
+            return null;
+        }
+        return materialize(record);
+    }
+
+    /**
+     * Removes an album from the albums array, or marks its record of the catalog as removed
+     * @param album: an Album object
+     * @return true: the album was in the collection and was removed
+     */
+    @Override
+    public boolean remove(Album album){
+        if (super.remove(album)) {
+            return true;
+        }
+        int record = findRecord(album);
+        if (record == MappedCatalog.NOT_FOUND) {
+            return false;
+        }
+        markRemoved(record);
+        return true;
+    }
+
+    /**
+     * Rates an album, an album of the catalog is moved into the albums array first so its rating can change
+     * @param album: an Album object
+     * @param rating: an int ranging from 1 to 5
+     */
+    @Override
+    public void rate(Album album, int rating){
+        int record = findRecord(album);
+        if (record != MappedCatalog.NOT_FOUND) {
+            Album moved = materialize(record);
+            markRemoved(record);
+            super.add(moved, record);
+        }
+        super.rate(album, rating);
+    }
+
+    /**
+     * Moves every album of the catalog into the albums array, then sorts the array
+     * @param order: the ordering to sort by
+     */
+    @Override
+    public void sort(SortOrder order){
+        materializeAll();
+        super.sort(order);
+    }
+
+    /**
+     * Prints the records of the catalog that are still in the collection and the albums in the array in the order they were added
+     * Once every record is in the array the array is printed as it is stored
+     * @param out: the OutputSink to print to
+     */
+    @Override
+    public void displayAlbums(OutputSink out){
+        if (removedCount == catalog.getSize()) {
+            super.displayAlbums(out);
+            return;
+        }
+        AlbumEntry[] added = entriesBySequence();
+        int next = 0;
+        for (int record = 0; record < catalog.getSize(); record++) {
+            for (; next < added.length && added[next].getSequence() < record; next++) {
+                out.append(added[next].getAlbum()).newLine();
+            }
+            if (!removed.get(record)) {
+                appendRecord(out, record);
+                out.newLine();
+            }
+        }
+        for (; next < added.length; next++) {
+            out.append(added[next].getAlbum()).newLine();
+        }
+    }
+
+    /**
+     * Captures the catalog, which records of it were removed, and the albums in the array
+     * @return the captured state
+     */
+    @Override
+    CatalogSnapshot capture(){
+        return super.capture().withBase(catalog, (BitSet) removed.clone());
+    }
+
+    /**
+     * Prints the albums in an order, the records of the catalog and the albums of the array merged as walk lists them
+     * @param order: the ordering to print in
+     * @param limit: the most albums to print, ALL for every album
+     * @param out: the OutputSink to print to
+     */
+    @Override
+    public void print(SortOrder order, int limit, OutputSink out){
+        if (getSize() == 0) {
+            out.println("Collection is empty!");
+            return;
+        }
+        out.println(order.getHeader());
+        walk(new AlbumCursor(this, order), limit, out);
+        out.println("* end of list *");
+    }
+
+    /**
+     * Walks the order of the catalog from the rank of a cursor, writing each record that is still in the collection,
+     * and writes each album of the albums array after the cursor's bookmark before the first record that comes after it
+     * @param cursor: the cursor to move
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to
+     * @return how many albums were printed
+     */
+    @Override
+    int walk(AlbumCursor cursor, int count, OutputSink out){
+        SortOrder order = cursor.getOrder();
+        Iterator<AlbumEntry> albums = viewAfter(order, cursor.getBookmark());
+        AlbumEntry next = albums.hasNext() ? albums.next() : null;
+        int position = bound(order, next);
+        int rank = cursor.getRank();
+        int printed = 0;
+        while (printed < count) {
+            if (next != null && position <= rank) {
+                out.append(next.getAlbum()).newLine();
+                printed++;
+                cursor.setBookmark(next);
+                next = albums.hasNext() ? albums.next() : null;
+                position = bound(order, next);
+            } else if (rank < catalog.getSize()) {
+                int record = catalog.recordAt(order, rank++);
+                if (!removed.get(record)) {
+                    appendRecord(out, record);
+                    out.newLine();
+                    printed++;
+                }
+            } else {
+                break;
+            }
+        }
+        while (rank < catalog.getSize() && removed.get(catalog.recordAt(order, rank))) {
+            rank++; //so the cursor is done as soon as only removed records are left
+        }
+        cursor.setRank(rank);
+        cursor.setDone(next == null && rank == catalog.getSize());
+        return printed;
+    }
+
+    /**
+     * Merges the records of the catalog that match the query of a cursor with the matching albums of the array, in release date order
+     * The records are a list of ranks of the release date order, cut down to the range of dates with two binary searches,
+     * and the cursor keeps the next index of the list as its rank, and the last album of the array it printed as its bookmark
+     * @param cursor: the cursor to move, opened on a query
+     * @param count: the most albums to print
+     * @param out: the OutputSink to print to
+     * @return how many albums were printed
+     */
+    @Override
+    int walkMatches(AlbumCursor cursor, int count, OutputSink out){
+        AlbumQuery query = cursor.getQuery();
+        int[] ranks = null; //null for every rank
+        if (query.getGenre() != null) {
+            ranks = genreRanks()[query.getGenre().ordinal()];
+        } else if (query.getArtist() != null) {
+            ranks = artistRanks().getOrDefault(AlbumKey.ofArtist(query.getArtist()), new int[0]);
+        }
+        int low = 0;
+        int high = ranks == null ? catalog.getSize() : ranks.length;
+        if (query.getFrom() != null) {
+            high = firstReleasedAfter(ranks, low, high, query.getTo());
+            low = firstReleasedAfter(ranks, low, high, dayBefore(query.getFrom()));
+        }
+        Iterator<AlbumEntry> albums = matches(query, cursor.getBookmark());
+        AlbumEntry next = albums.hasNext() ? albums.next() : null;
+        int position = bound(SortOrder.DATE, next);
+        int i = Math.max(low, cursor.getRank());
+        int printed = 0;
+        while (printed < count) {
+            int rank = i < high ? (ranks == null ? i : ranks[i]) : catalog.getSize();
+            if (next != null && position <= rank) {
+                out.append(next.getAlbum()).newLine();
+                printed++;
+                cursor.setBookmark(next);
+                next = albums.hasNext() ? albums.next() : null;
+                position = bound(SortOrder.DATE, next);
+            } else if (i < high) {
+                int record = catalog.recordAt(SortOrder.DATE, rank);
+                i++;
+                if (!removed.get(record)) {
+                    appendRecord(out, record);
+                    out.newLine();
+                    printed++;
+                }
+            } else {
+                break;
+            }
+        }
+        while (i < high && removed.get(catalog.recordAt(SortOrder.DATE, ranks == null ? i : ranks[i]))) {
+            i++; //so the cursor is done as soon as only removed records are left
+        }
+        cursor.setRank(i);
+        cursor.setDone(next == null && i >= high);
+        return printed;
+    }
+
+    /**
+     * Helper method of walkMatches that finds the first of a list of release date ranks whose record was released after a date
+     * @param ranks: ranks of the release date order in increasing order, or null for every rank
+     * @param low: the first index of the list searched
+     * @param high: the index after the last index searched
+     * @param date: the date
+     * @return the index, high if every record searched was released on or before the date
+     */
+    private int firstReleasedAfter(int[] ranks, int low, int high, Date date){
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int rank = ranks == null ? middle : ranks[middle];
+            if (Date.fromKey(catalog.released(catalog.recordAt(SortOrder.DATE, rank))).compareTo(date) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Helper method of walkMatches that gives a date ordered just before another, so records released on the date itself come after it
+     */
+    private static Date dayBefore(Date date){
+        return new Date(date.get_year(), date.get_month(), date.get_day() - 1);
+    }
+
+    /**
+     * Helper method that gives the release date ranks of the records of each genre, building them the first time
+     * @return the ranks by genre ordinal, each list in increasing order
+     */
+    private int[][] genreRanks(){
+        if (genreRanks == null) {
+            Genre[] genres = Genre.values();
+            int[] counts = new int[genres.length];
+            for (int rank = 0; rank < catalog.getSize(); rank++) {
+                counts[catalog.genre(catalog.recordAt(SortOrder.DATE, rank)).ordinal()]++;
+            }
+            int[][] ranks = new int[genres.length][];
+            for (int genre = 0; genre < genres.length; genre++) {
+                ranks[genre] = new int[counts[genre]];
+                counts[genre] = 0;
+            }
+            for (int rank = 0; rank < catalog.getSize(); rank++) {
+                int genre = catalog.genre(catalog.recordAt(SortOrder.DATE, rank)).ordinal();
+                ranks[genre][counts[genre]++] = rank;
+            }
+            genreRanks = ranks;
+        }
+        return genreRanks;
+    }
+
+    /**
+     * Helper method that gives the release date ranks of the records of each artist, building them the first time
+     * @return the ranks by AlbumKey.ofArtist, each list in increasing order
+     */
+    private HashMap<AlbumKey, int[]> artistRanks(){
+        if (artistRanks == null) {
+            HashMap<AlbumKey, int[]> ranks = new HashMap<>();
+            HashMap<AlbumKey, Integer> counts = new HashMap<>();
+            AlbumKey[] keys = new AlbumKey[catalog.getSize()];
+            for (int rank = 0; rank < keys.length; rank++) {
+                int record = catalog.recordAt(SortOrder.DATE, rank);
+                keys[rank] = new AlbumKey("", catalog.string(catalog.artistName(record)), Date.fromKey(catalog.born(record)));
+                counts.merge(keys[rank], 1, Integer::sum);
+            }
+            for (int rank = 0; rank < keys.length; rank++) {
+                int[] list = ranks.computeIfAbsent(keys[rank], key -> new int[counts.get(key)]);
+                int filled = counts.merge(keys[rank], -1, Integer::sum);
+                list[list.length - filled - 1] = rank;
+            }
+            artistRanks = ranks;
+        }
+        return artistRanks;
+    }
+
+    /**
+     * Helper method of print that finds the rank in the catalog an album of the array is printed before
+     * @param order: the ordering being printed
+     * @param entry: the entry of the album, or null
+     * @return the rank, or the size of the catalog for null
+     */
+    private int bound(SortOrder order, AlbumEntry entry){
+        if (entry == null) {
+            return catalog.getSize();
+        }
+        return catalog.upperBound(order, entry.getAlbum(), entry.getRankedAverage(), entry.getSequence());
+    }
+
+    /**
+     * Helper method that gives the entries of the albums in the array in the order they were added
+     * @return the entries by sequence number
+     */
+    private AlbumEntry[] entriesBySequence(){
+        AlbumEntry[] entries = new AlbumEntry[super.getSize()];
+        int next = 0;
+        for (AlbumEntry entry : view(SortOrder.DATE)) {
+            entries[next++] = entry;
+        }
+        Arrays.sort(entries, (one, two) -> Long.compare(one.getSequence(), two.getSequence()));
+        return entries;
+    }
+
+    /**
+     * Helper method that writes a record in the same format as Album.toString, reading every field from the mapping
+     * @param out: the OutputSink to write to
+     * @param record: a record of the catalog
+     */
+    private void appendRecord(OutputSink out, int record){
+        out.append('[');
+        appendString(out, catalog.title(record));
+        out.append("] Released ");
+        appendDate(out, catalog.released(record));
+        out.append(" [");
+        appendString(out, catalog.artistName(record));
+        out.append(':');
+        appendDate(out, catalog.born(record));
+        out.append("] [").append(catalog.genre(record).toString()).append("] ");
+        recordStats.clear();
+        catalog.addStars(record, recordStats);
+        out.append(recordStats);
+    }
+
+    /**
+     * Helper method of appendRecord that writes a string of the dictionary
+     */
+    private void appendString(OutputSink out, int id){
+        int length = catalog.stringLength(id);
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        catalog.getChars(id, chars);
+        out.append(chars, 0, length);
+    }
+
+    /**
+     * Helper method of appendRecord that writes a packed date as month/day/year
+     */
+    private static void appendDate(OutputSink out, int key){
+        out.append(Date.monthOf(key)).append('/').append(Date.dayOf(key)).append('/').append(Date.yearOf(key));
+    }
+
+    /**
+     * Helper method that finds the record of an album that is still in the collection
+     * @param album: an Album object
+     * @return the record, or NOT_FOUND
+     */
+    private int findRecord(Album album){
+        if (removedCount == catalog.getSize()) {
+            return MappedCatalog.NOT_FOUND;
+        }
+        int record = catalog.find(album);
+        if (record == MappedCatalog.NOT_FOUND || removed.get(record)) {
+            return MappedCatalog.NOT_FOUND;
+        }
+        return record;
+    }
+
+    /**
+     * Helper method that gives the album of a record, creating it the first time
+     * @param record: a record of the catalog
+     * @return the Album
+     */
+    private Album materialize(int record){
+        Album album = materialized.get(record);
+        if (album == null) {
+            album = catalog.materialize(record, artists);
+            materialized.put(record, album);
+        }
+        return album;
+    }
+
+    /**
+     * Helper method that takes a record out of the collection
+     * @param record: a record of the catalog
+     */
+    private void markRemoved(int record){
+        removed.set(record);
+        removedCount++;
+        materialized.remove(record);
+    }
+
+    /**
+     * Helper method that moves every record still in the collection into the albums array, each with its record as its sequence number
+     * The array is then put in the order the albums were added
+     */
+    private void materializeAll(){
+        if (removedCount == catalog.getSize()) {
+            return;
+        }
+        for (int record = 0; record < catalog.getSize(); record++) {
+            if (!removed.get(record)) {
+                super.add(materialize(record), record);
+            }
+        }
+        removed.set(0, catalog.getSize());
+        removedCount = catalog.getSize();
+        materialized.clear();
+        orderBySequence();
+    }
+}
@@ -0,0 +1,20 @@
+package album;
+/**
+ * The OffHeapCollection class which is a ColumnarCollection that keeps its albums outside the heap
+ * Every album is a fixed width record in direct ByteBuffers, its title and artist name are ids of a dictionary whose chars
+ * are kept in an arena outside the heap, and the table the albums are found by is outside the heap as well
+ * The heap only holds the slots of each order, the ranks of the strings and the sets of changed slots, all primitive arrays,
+ * so the work of the garbage collector stays flat however many albums are added
+ * Album objects are still created as views, for returnAlbum, getAlbums, capture and the bookmarks of cursors
+ @author Rohan Sharma
+ */
+public class OffHeapCollection extends ColumnarCollection {
+
+    /**
+     * Constructor for the OffHeapCollection class, empty
+     * @param registry: the registry the artists of views are taken from
+     */
+    public OffHeapCollection(ArtistRegistry registry){
+        super(registry, new DirectAlbumColumns(), new DirectStringDictionary());
+    }
+}
@@ -0,0 +1,152 @@
+package album;
+import java.io.PrintStream;
+/**
+ * The OutputSink class which collects output in a reusable buffer and writes it to a stream in large pieces
+ * The Collection and the CollectionManager write through a sink instead of calling System.out for every line,
+ * and the owner decides when to flush, for example after each command or after a whole batch
+ * @author Seungjun Bae
+ */
+public class OutputSink {
+    public static final int DEFAULT_FLUSH_THRESHOLD = 1 << 16; //chars buffered before the sink flushes on its own
+    public static final int UNBUFFERED = 0; //flush threshold of a sink that writes every piece as soon as it is appended
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    private final PrintStream out;
+    private final StringBuilder buffer;
+    private final int flushThreshold;
+
+    /**
+     * Creates a sink that writes to a stream and flushes on its own once DEFAULT_FLUSH_THRESHOLD chars are buffered
+     * @param out The stream the buffered output is written to.
+     */
+    public OutputSink(PrintStream out) {
+        this(out, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * Creates a sink that writes to a stream and flushes on its own once a number of chars are buffered
+     * @param out The stream the buffered output is written to.
+     * @param flushThreshold How many chars may be buffered before they are written.
+     */
+    public OutputSink(PrintStream out, int flushThreshold) {
+        this.out = out;
+        this.flushThreshold = flushThreshold;
+        this.buffer = new StringBuilder(flushThreshold);
+    }
+
+    /**
+     * @param text The text to add to the buffer.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink append(String text) {
+        buffer.append(text);
+        return flushIfFull();
+    }
+
+    /**
+     * @param c The char to add to the buffer.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink append(char c) {
+        buffer.append(c);
+        return flushIfFull();
+    }
+
+    /**
+     * @param chars The buffer holding the text to add.
+     * @param offset The index of the first char to add.
+     * @param length How many chars to add.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink append(char[] chars, int offset, int length) {
+        buffer.append(chars, offset, length);
+        return flushIfFull();
+    }
+
+    /**
+     * @param number The int to add to the buffer in decimal, without going through a format string.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink append(int number) {
+        buffer.append(number);
+        return flushIfFull();
+    }
+
+    /**
+     * @param date The date to add to the buffer as month/day/year.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink append(Date date) {
+        date.appendTo(buffer);
+        return flushIfFull();
+    }
+
+    /**
+     * @param album The album to add to the buffer in the same format as Album.toString.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink append(Album album) {
+        album.appendTo(buffer);
+        return flushIfFull();
+    }
+
+    /**
+     * @param album The album to add to the buffer in the same format as Album.toString.
+     * @param starCounts The rating counts to summarize in place of the album's current totals, indexed by star.
+     * @return this sink, so calls can be chained.
+     */
+    OutputSink append(Album album, long[] starCounts) {
+        album.appendTo(buffer, starCounts);
+        return flushIfFull();
+    }
+
+    /**
+     * @param stats The rating totals to add to the buffer in the same format as Album.rating.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink append(RatingStats stats) {
+        stats.appendSummary(buffer);
+        return flushIfFull();
+    }
+
+    /**
+     * Adds a line separator to the buffer, the same one System.out.println writes.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink newLine() {
+        buffer.append(LINE_SEPARATOR);
+        return flushIfFull();
+    }
+
+    /**
+     * Adds a line of text followed by a line separator.
+     * @param line The line to add to the buffer.
+     * @return this sink, so calls can be chained.
+     */
+    public OutputSink println(String line) {
+        buffer.append(line).append(LINE_SEPARATOR);
+        return flushIfFull();
+    }
+
+    /**
+     * Writes everything in the buffer to the stream and empties the buffer for reuse.
+     */
+    public void flush() {
+        if (buffer.length() > 0) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+        out.flush();
+    }
+
+    /**
+     * Helper method that writes the buffer once it passes the flush threshold, so a long listing uses bounded memory.
+     * @return this sink.
+     */
+    private OutputSink flushIfFull() {
+        if (buffer.length() >= flushThreshold) {
+            out.append(buffer);
+            buffer.setLength(0);
+        }
+        return this;
+    }
+}
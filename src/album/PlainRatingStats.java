@@ -0,0 +1,52 @@
+package album;
+import java.util.Arrays;
+/**
+The PlainRatingStats class which keeps the rating totals of an album as an array of counts, for albums rated by one thread at a time
+@author Seungjun Bae
+ */
+public class PlainRatingStats extends RatingStats {
+    private final long[] starCounts = new long[MAX_STAR + 1]; //indexed by star, index 0 unused
+
+    /**
+     * Adds one rating to the totals
+     * @param star: the star rating given, from 1 to 5
+     * @throws IllegalArgumentException if the star is outside 1 to 5
+     */
+    @Override
+    public void record(int star) {
+        checkStar(star);
+        starCounts[star]++;
+    }
+
+    /**
+     * Adds the same rating a number of times
+     * @param star: the star rating given, from 1 to 5
+     * @param times: how many times it was given
+     * @throws IllegalArgumentException if the star is outside 1 to 5
+     */
+    @Override
+    public void record(int star, long times) {
+        checkStar(star);
+        starCounts[star] += times;
+    }
+
+    @Override
+    public long getCount(int star) {
+        return starCounts[star];
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(starCounts, 0);
+    }
+
+    /**
+     * Appends the rating summary straight from the counts, without copying them first
+     * @param sb: the StringBuilder to append to
+     * @return sb, so calls can be chained
+     */
+    @Override
+    public StringBuilder appendSummary(StringBuilder sb) {
+        return appendSummary(sb, starCounts);
+    }
+}
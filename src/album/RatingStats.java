@@ -0,0 +1,178 @@
+package album;
+/**
+The RatingStats class which is the base of the running totals of the ratings given to an album
+The totals are the count of each star from 1 to 5, the sum and the number of ratings are worked out from them,
+so every kind of totals keeps the same state and a summary or an average always agrees with the counts it was read from
+Recording a rating is O(1) and allocates nothing, and the average and the per-star counts are read in O(1)
+A star outside 1 to 5 has no count to go in, so every kind of totals rejects it
+PlainRatingStats is for albums rated by one thread at a time, StripedRatingStats for albums many threads rate at once
+@author Seungjun Bae
+ */
+public abstract class RatingStats {
+    public static final int MIN_STAR = 1;
+    public static final int MAX_STAR = 5;
+    private static final long HUNDREDTHS = 100;
+    private static final long DECIMAL_BASE = 10;
+
+    /**
+     * Adds one rating to the totals
+     * @param star: the star rating given, from 1 to 5
+     * @throws IllegalArgumentException if the star is outside 1 to 5
+     */
+    public abstract void record(int star);
+
+    /**
+     * Adds the same rating a number of times, used to restore saved totals without recording each rating
+     * @param star: the star rating given, from 1 to 5
+     * @param times: how many times it was given
+     * @throws IllegalArgumentException if the star is outside 1 to 5
+     */
+    public abstract void record(int star, long times);
+
+    /**
+    Getter method for how many ratings of one star value were given
+    @param star: an int from 1 to 5
+    @return the number of ratings with that star value
+     */
+    public abstract long getCount(int star);
+
+    /**
+     * Empties the totals so the object can be reused for another album
+     */
+    public abstract void clear();
+
+    /**
+    Getter method for the number of ratings
+    @return count: how many ratings were recorded
+     */
+    public long getCount() {
+        long count = 0;
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            count += getCount(star);
+        }
+        return count;
+    }
+
+    /**
+    Getter method for the sum of all ratings
+    @return sum: the total of the stars recorded
+     */
+    public long getSum() {
+        long sum = 0;
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            sum += star * getCount(star);
+        }
+        return sum;
+    }
+
+    /**
+     * Appends the rating summary of an album, "Rating: none" or the count of each star followed by the average
+     * Each count is read once, so the average printed is the one of the counts printed
+     * @param sb: the StringBuilder to append to
+     * @return sb, so calls can be chained
+     */
+    public StringBuilder appendSummary(StringBuilder sb) {
+        long[] counts = new long[MAX_STAR + 1];
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            counts[star] = getCount(star);
+        }
+        return appendSummary(sb, counts);
+    }
+
+    /**
+     * Appends a rating summary from counts that were read together, shared with the subclasses and with listings printed from copied counts
+     * @param sb: the StringBuilder to append to
+     * @param starCounts: the count of each star, indexed by star
+     * @return sb, so calls can be chained
+     */
+    static StringBuilder appendSummary(StringBuilder sb, long[] starCounts) {
+        long sum = 0;
+        long count = 0;
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            sum += star * starCounts[star];
+            count += starCounts[star];
+        }
+        if (count == 0) {
+            return sb.append("Rating: none");
+        }
+        sb.append("Rating: *(").append(starCounts[1]).append(")**(").append(starCounts[2])
+                .append(")***(").append(starCounts[3]).append(")****(").append(starCounts[4])
+                .append(")*****(").append(starCounts[5]).append(")(average rating: ");
+        appendAverage(sb, sum, count);
+        return sb.append(')');
+    }
+
+    /**
+     * Appends the average rating rounded half up to two decimal places, the same digits as String.format("%.2f")
+     * The rounding is done on the exact sum and count, so no format string is parsed and no String is created
+     * @param sb: the StringBuilder to append to
+     */
+    public void appendAverage(StringBuilder sb) {
+        long sum = 0;
+        long count = 0;
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            long stars = getCount(star);
+            sum += star * stars;
+            count += stars;
+        }
+        appendAverage(sb, sum, count);
+    }
+
+    /**
+     * Appends an average rounded half up to two decimal places from a sum and count that were read together
+     * @param sb: the StringBuilder to append to
+     * @param sum: the total of the stars
+     * @param count: the number of ratings
+     */
+    static void appendAverage(StringBuilder sb, long sum, long count) {
+        long hundredths = 0;
+        if (count > 0) {
+            hundredths = (sum * HUNDREDTHS * 2 + count) / (count * 2);
+        }
+        sb.append(hundredths / HUNDREDTHS).append('.');
+        long fraction = hundredths % HUNDREDTHS;
+        if (fraction < DECIMAL_BASE) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    /**
+     * Calculates the average rating from the counts, each read once
+     * @return average: a double, or 0.0 if there are no ratings
+     */
+    public double average() {
+        long sum = 0;
+        long count = 0;
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            long stars = getCount(star);
+            sum += star * stars;
+            count += stars;
+        }
+        return average(sum, count);
+    }
+
+    /**
+     * Calculates an average from a sum and count that were read together
+     * @param sum: the total of the stars
+     * @param count: the number of ratings
+     * @return average: a double, or 0.0 if count is 0
+     */
+    static double average(long sum, long count) {
+        if (count == 0) {
+            return 0.0;
+        }
+        return (double) sum / count;
+    }
+
+    /**
+     * Helper method of the subclasses that rejects a star with no count to go in
+     * @param star: the star rating given
+     * @throws IllegalArgumentException if the star is outside 1 to 5
+     */
+    static void checkStar(int star) {
+        if (star < MIN_STAR || star > MAX_STAR) {
+            throw new IllegalArgumentException("Star " + star + " is not from " + MIN_STAR + " to " + MAX_STAR);
+        }
+    }
+}
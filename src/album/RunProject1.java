@@ -1,8 +1,78 @@
 package album;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Paths;
+
+/**
+ * Starts the Collection Manager
+ * With no arguments the commands are typed into the console, with a file path (or - for standard input)
+ * the commands are run as a batch
+ * Starting with -d and a directory keeps the collection in that directory between runs
+ * Starting with -s and a port number serves the commands to clients on that port of the loopback address,
+ * and with -s and any other path it serves them on a Unix domain socket at that path
+ * Starting with -c keeps the albums of a console or batch run without -d in columns of primitive arrays
+ * Starting with -o keeps them in columns outside the heap instead
+ */
 public class RunProject1{
-    
+    private static final String DATA_OPTION = "-d";
+    private static final String SERVE_OPTION = "-s";
+    private static final String COLUMNAR_OPTION = "-c";
+    private static final String OFF_HEAP_OPTION = "-o";
+    private static final int MIN_PORT = 1;
+    private static final int MAX_PORT = 65535;
+
     public static void main(String[] args){
-        new CollectionManager().run();
+        CollectionManager manager = new CollectionManager();
+        SocketAddress serveAddress = null;
+        int next = 0;
+        while (args.length > next) {
+            if (COLUMNAR_OPTION.equals(args[next])) {
+                manager.setColumnar(true);
+                next++;
+            } else if (OFF_HEAP_OPTION.equals(args[next])) {
+                manager.setOffHeap(true);
+                next++;
+            } else if (args.length > next + 1 && DATA_OPTION.equals(args[next])) {
+                manager.setDataDirectory(Paths.get(args[next + 1]));
+                next += 2;
+            } else if (args.length > next + 1 && SERVE_OPTION.equals(args[next])) {
+                serveAddress = serveAddress(args[next + 1]);
+                if (serveAddress == null) {
+                    System.err.printf("Invalid port %s, usage: -s port from %d to %d, or -s socket path\n", args[next + 1], MIN_PORT, MAX_PORT);
+                    return;
+                }
+                next += 2;
+            } else {
+                break;
+            }
+        }
+        if (serveAddress != null) {
+            manager.runServer(serveAddress);
+        } else if (args.length > next) {
+            manager.runBatch(args[next]);
+        } else {
+            manager.run();
+        }
+    }
+
+    /**
+     * Helper method that reads the argument of -s as a port of the loopback address if it is a number, or as a socket path
+     * @return the address, or null if the argument is a number that is not a port
+     */
+    private static SocketAddress serveAddress(String argument){
+        if (argument.matches("\\d+")) {
+            if (argument.length() > String.valueOf(MAX_PORT).length()) {
+                return null;
+            }
+            int port = Integer.parseInt(argument);
+            if (port < MIN_PORT || port > MAX_PORT) {
+                return null;
+            }
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        }
+        return UnixDomainSocketAddress.of(argument);
     }
-}
\ No newline at end of file
+}
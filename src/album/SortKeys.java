@@ -0,0 +1,309 @@
+package album;
+import java.util.Arrays;
+import java.util.Locale;
+/**
+ * The SortKeys class which computes the keys Album and Artist compare names by
+ * The keys are computed once when a title or name is set, so comparing two of them allocates nothing
+ * @author Rohan Sharma
+ */
+final class SortKeys {
+    private static final int EQUAL = 0;
+    private static final int BEFORE = -1;
+    private static final int AFTER = 1;
+    private static final int NONE = -1; //start of a word that was not found
+    private static final char LAST_ASCII = 0x7F;
+    //String.toLowerCase lowers ASCII letters as Character.toLowerCase does, except the I of Turkish and Azerbaijani
+    private static final boolean ASCII_LOWERS_BY_CHAR = !Arrays.asList("tr", "az").contains(Locale.getDefault().getLanguage());
+
+    private SortKeys(){
+    }
+
+    /**
+     * Splits a text into lower case words exactly as text.split("\\s+") followed by toLowerCase() on each word would,
+     * without compiling a regex: a text starting with whitespace has an empty first word, trailing whitespace adds no word,
+     * and a text with no whitespace is one word even when it is empty
+     * @param text: the text to split, such as an album title or an artist name
+     * @return words: the lower case words of the text
+     */
+    static String[] words(String text){
+        int length = text.length();
+        if (length == 0) {
+            return new String[] {text};
+        }
+        int count = 0;
+        boolean inWord = false;
+        for (int i = 0; i < length; i++) {
+            boolean space = isSpace(text.charAt(i));
+            if (!space && !inWord) {
+                count++;
+            }
+            inWord = !space;
+        }
+        boolean leadingSpace = isSpace(text.charAt(0));
+        if (leadingSpace) {
+            if (count == 0) {
+                return new String[0];
+            }
+            count++;
+        }
+        String[] words = new String[count];
+        int word = 0;
+        if (leadingSpace) {
+            words[word++] = "";
+        }
+        int i = 0;
+        while (i < length) {
+            while (i < length && isSpace(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && !isSpace(text.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                words[word++] = text.substring(start, i).toLowerCase();
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Compares a title read from its chars with the sort key of another title, the same way Album.compareTitleKeys
+     * compares words(text) with the key, without splitting the text into Strings
+     * @param text: the chars of a title, such as a string of a catalog or a dictionary
+     * @param key: the sort key of the other title
+     * @return -1, 0 or 1 the same way compareTitleKeys does
+     */
+    static int compareTitle(CharSequence text, String[] key){
+        int word = 0;
+        int at = 0;
+        if (hasEmptyFirstWord(text)) {
+            if (key.length == 0) {
+                return AFTER;
+            }
+            int comparison = Album.compareWords("", key[0]);
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            word = 1;
+        }
+        while (true) {
+            int start = wordStart(text, at);
+            if (start == NONE) {
+                return Integer.compare(word, key.length);
+            }
+            if (word == key.length) {
+                return AFTER;
+            }
+            int end = wordEnd(text, start);
+            int comparison = compareWord(text, start, end, key[word]);
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            word++;
+            at = end;
+        }
+    }
+
+    /**
+     * Compares an artist name read from its chars with the first and last name keys of another artist, the same way
+     * Artist.compareTo compares the names of two artists, without splitting the name into Strings
+     * @param text: the chars of an artist name
+     * @param firstName: the lower case first word of the other name
+     * @param lastName: the lower case last word of the other name
+     * @return -1, 0 or 1 the same way compareTo does for two artists born on the same day
+     */
+    static int compareName(CharSequence text, String firstName, String lastName){
+        int first = firstNameStart(text);
+        int comparison = compareWords(text, first, firstNameEnd(text, first), firstName, 0, firstName.length());
+        if (comparison != EQUAL) {
+            return comparison;
+        }
+        int last = lastNameStart(text);
+        return compareWords(text, last, wordEnd(text, last), lastName, 0, lastName.length());
+    }
+
+    /**
+     * Compares two titles read from their chars, word by word ignoring case, the same way Album.compareTitles compares them,
+     * without splitting either title into Strings
+     * @param one: the chars of a title
+     * @param two: the chars of another title
+     * @return -1, 0 or 1 the same way compareTitles does
+     */
+    static int compareTitles(CharSequence one, CharSequence two){
+        boolean oneEmpty = hasEmptyFirstWord(one);
+        boolean twoEmpty = hasEmptyFirstWord(two);
+        int oneAt = 0;
+        int twoAt = 0;
+        while (true) {
+            int oneStart = oneEmpty ? oneAt : wordStart(one, oneAt);
+            int twoStart = twoEmpty ? twoAt : wordStart(two, twoAt);
+            if (oneStart == NONE || twoStart == NONE) {
+                return Boolean.compare(oneStart != NONE, twoStart != NONE);
+            }
+            int oneEnd = oneEmpty ? oneStart : wordEnd(one, oneStart);
+            int twoEnd = twoEmpty ? twoStart : wordEnd(two, twoStart);
+            int comparison = compareWords(one, oneStart, oneEnd, two, twoStart, twoEnd);
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            oneEmpty = false;
+            twoEmpty = false;
+            oneAt = oneEnd;
+            twoAt = twoEnd;
+        }
+    }
+
+    /**
+     * Compares two artist names read from their chars, by their first word and then their last word ignoring case,
+     * the same way Artist.compareTo compares the names of two artists, without splitting either name into Strings
+     * @param one: the chars of an artist name
+     * @param two: the chars of another artist name
+     * @return -1, 0 or 1 the same way compareTo does for two artists born on the same day
+     */
+    static int compareNames(CharSequence one, CharSequence two){
+        int oneFirst = firstNameStart(one);
+        int twoFirst = firstNameStart(two);
+        int comparison = compareWords(one, oneFirst, firstNameEnd(one, oneFirst), two, twoFirst, firstNameEnd(two, twoFirst));
+        if (comparison != EQUAL) {
+            return comparison;
+        }
+        int oneLast = lastNameStart(one);
+        int twoLast = lastNameStart(two);
+        return compareWords(one, oneLast, wordEnd(one, oneLast), two, twoLast, wordEnd(two, twoLast));
+    }
+
+    /**
+     * Helper method that finds the start of the first name, the first word as words splits the name
+     * @return the index of its first char, or NONE if the first word is empty
+     */
+    private static int firstNameStart(CharSequence text){
+        return hasEmptyFirstWord(text) ? NONE : wordStart(text, 0);
+    }
+
+    /**
+     * Helper method that finds the end of the first name starting at a char, which is empty if it starts at NONE
+     */
+    private static int firstNameEnd(CharSequence text, int start){
+        return start == NONE ? NONE : wordEnd(text, start);
+    }
+
+    /**
+     * Helper method that finds the start of the last name, the last word of the name
+     * @return the index of its first char, or NONE if the name has no chars other than whitespace
+     */
+    private static int lastNameStart(CharSequence text){
+        int i = text.length();
+        while (i > 0 && isSpace(text.charAt(i - 1))) {
+            i--;
+        }
+        if (i == 0) {
+            return NONE;
+        }
+        while (i > 0 && !isSpace(text.charAt(i - 1))) {
+            i--;
+        }
+        return i;
+    }
+
+    /**
+     * Helper method that tells if the words of a text start with an empty word, as words splits an empty text,
+     * or a text that starts with whitespace and has a word after it
+     */
+    private static boolean hasEmptyFirstWord(CharSequence text){
+        return text.length() == 0 || (isSpace(text.charAt(0)) && wordStart(text, 0) != NONE);
+    }
+
+    /**
+     * Helper method that finds the first char that is not whitespace at or after a char
+     * @return the index of the char, or NONE if there is none
+     */
+    private static int wordStart(CharSequence text, int from){
+        for (int i = from; i < text.length(); i++) {
+            if (!isSpace(text.charAt(i))) {
+                return i;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * Helper method that finds the end of the word starting at a char
+     * @return the index after the last char of the word, or NONE for a word that starts at NONE
+     */
+    private static int wordEnd(CharSequence text, int start){
+        if (start == NONE) {
+            return NONE;
+        }
+        int i = start;
+        while (i < text.length() && !isSpace(text.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Helper method that compares a word of a text with a word of a lower case key, the way compareWord compares them
+     */
+    private static int compareWord(CharSequence text, int start, int end, String word){
+        return compareWords(text, start, end, word, 0, word.length());
+    }
+
+    /**
+     * Helper method that compares two words of two texts, each lowered the way words lowers it, a start of NONE is an empty word
+     * A word of ASCII chars is lowered a char at a time, any other word is copied and lowered with String.toLowerCase
+     * @return -1, 0 or 1 the same way Album.compareWords does
+     */
+    private static int compareWords(CharSequence one, int oneStart, int oneEnd, CharSequence two, int twoStart, int twoEnd){
+        if (oneStart == NONE) {
+            oneStart = 0;
+            oneEnd = 0;
+        }
+        if (twoStart == NONE) {
+            twoStart = 0;
+            twoEnd = 0;
+        }
+        if (!isAscii(one, oneStart, oneEnd) || !isAscii(two, twoStart, twoEnd)) {
+            String oneWord = one.subSequence(oneStart, oneEnd).toString().toLowerCase();
+            String twoWord = two.subSequence(twoStart, twoEnd).toString().toLowerCase();
+            return Album.compareWords(oneWord, twoWord);
+        }
+        int oneLength = oneEnd - oneStart;
+        int twoLength = twoEnd - twoStart;
+        int stop = Math.min(oneLength, twoLength);
+        for (int i = 0; i < stop; i++) {
+            char c = Character.toLowerCase(one.charAt(oneStart + i));
+            char d = Character.toLowerCase(two.charAt(twoStart + i));
+            if (c < d) {
+                return BEFORE;
+            } else if (c > d) {
+                return AFTER;
+            }
+        }
+        return Integer.compare(oneLength, twoLength);
+    }
+
+    /**
+     * Helper method of compareWords that tells if a word can be lowered a char at a time
+     */
+    private static boolean isAscii(CharSequence text, int start, int end){
+        if (!ASCII_LOWERS_BY_CHAR) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) > LAST_ASCII) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method for words that tells if a char is whitespace as the regex \\s matches it
+     * @param c: a char of the text
+     * @return true: the char is a space, tab, line feed, vertical tab, form feed or carriage return
+     */
+    private static boolean isSpace(char c){
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
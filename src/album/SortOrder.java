@@ -0,0 +1,122 @@
+package album;
+import java.util.Comparator;
+/**
+ * Enums that represent the orderings the Collection can be listed in
+ * Each ordering is a Comparator so any stable sort can use it, and it keeps the tie-break rules of the original selection sorts
+ * @author Rohan Sharma
+ */
+public enum SortOrder implements Comparator<Album> {
+    /**
+     * Earliest release date first, ties broken by title
+     */
+    DATE("* Collection sorted by Released Date/Title *") {
+        @Override
+        public int compare(Album one, Album two) {
+            int comparison = one.getReleased().compareTo(two.getReleased());
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            return one.compareTitles(two);
+        }
+    },
+    /**
+     * Genre name first, ties broken by artist
+     */
+    GENRE("* Collection sorted by Genre/Artist *") {
+        @Override
+        public int compare(Album one, Album two) {
+            return one.genreCompare(two);
+        }
+    },
+    /**
+     * Highest average rating first, albums without a numeric average last, ties broken by title
+     */
+    RATING("* Collection sorted by Rating/Title *") {
+        @Override
+        public int compare(Album one, Album two) {
+            return compareAverages(one, one.avgRatings(), two, two.avgRatings());
+        }
+
+        @Override
+        int compareEntries(AlbumEntry one, AlbumEntry two) {
+            int comparison = compareAverages(one.getAlbum(), one.getRankedAverage(), two.getAlbum(), two.getRankedAverage());
+            if (comparison != EQUAL) {
+                return comparison;
+            }
+            return Long.compare(one.getSequence(), two.getSequence());
+        }
+    };
+
+    private static final int BEFORE = -1;
+    private static final int AFTER = 1;
+    private static final int EQUAL = 0;
+    private final String header;
+
+    SortOrder(String header) {
+        this.header = header;
+    }
+
+    /**
+     * Getter method for the header printed before a listing in this order
+     * @return header: a string such as "* Collection sorted by Rating/Title *"
+     */
+    public String getHeader() {
+        return header;
+    }
+
+    /**
+     * Compares two entries of a Collection for its sorted views
+     * Albums that are tied in this ordering are ordered by when they were added, so no two entries are ever equal
+     * @param one: an AlbumEntry object
+     * @param two: another AlbumEntry object
+     * @return a negative number if one comes before two, a positive number if it comes after, 0 only for the same entry
+     */
+    int compareEntries(AlbumEntry one, AlbumEntry two) {
+        int comparison = compare(one.getAlbum(), two.getAlbum());
+        if (comparison != EQUAL) {
+            return comparison;
+        }
+        return Long.compare(one.getSequence(), two.getSequence());
+    }
+
+    /**
+     * Compares two albums by already computed average ratings, the higher average comes first
+     * A NaN average comes after any number, and equal averages (or two NaN averages) are broken by title
+     * @param one: an Album object
+     * @param oneAverage: the average rating of one
+     * @param two: another Album object
+     * @param twoAverage: the average rating of two
+     * @return -1: one comes before two
+     * @return 1: one comes after two
+     * @return 0: the albums are tied on average and title
+     */
+    static int compareAverages(Album one, double oneAverage, Album two, double twoAverage) {
+        int comparison = compareAverages(oneAverage, twoAverage);
+        if (comparison != EQUAL) {
+            return comparison;
+        }
+        return one.compareTitles(two);
+    }
+
+    /**
+     * Compares two average ratings the way compareAverages orders albums before their titles are compared
+     * @param oneAverage: an average rating
+     * @param twoAverage: another average rating
+     * @return -1: oneAverage comes first
+     * @return 1: oneAverage comes after
+     * @return 0: the averages are equal, or both NaN
+     */
+    static int compareAverages(double oneAverage, double twoAverage) {
+        boolean oneNaN = Double.isNaN(oneAverage);
+        boolean twoNaN = Double.isNaN(twoAverage);
+        if (oneNaN || twoNaN) {
+            return oneNaN == twoNaN ? EQUAL : oneNaN ? AFTER : BEFORE;
+        }
+        if (oneAverage > twoAverage) {
+            return BEFORE;
+        } else if (oneAverage < twoAverage) {
+            return AFTER;
+        }
+        return EQUAL;
+    }
+}
@@ -0,0 +1,197 @@
+package album;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+/**
+ * The StringDictionary class which gives each distinct string an int id, so a store can keep the id in a primitive array
+ * in place of a reference to the string
+ * Ids are given out from 0 in the order the strings are first interned, and stay valid until retain drops the strings
+ * a store no longer uses and renumbers the rest, still in that order
+ * Every string also has a key, the id of its case folded form as AlbumKey.fold folds it, worked out once when the string
+ * is interned, so two strings are equal ignoring case exactly when their keys are equal and a store compares two ints
+ * Strings are compared as titles and as artist names by reading their chars, with the same results as Album.compareTitles
+ * and Artist.compareTo, so a store can order ids without creating the sort keys of each string
+ * The strings are kept as String objects, which hold a string of Latin-1 chars in a byte each
+ * DirectStringDictionary keeps the strings outside the heap
+ @author Rohan Sharma
+ */
+class StringDictionary {
+    static final int NO_ID = -1; //id of a string that is not in the dictionary
+    private static final int INITIAL_CAPACITY = 16;
+    private HashMap<String, Integer> ids; //string to its id
+    private String[] strings; //string of each id
+    private int[] keys; //key of each id
+
+    /**
+     * Constructor for the StringDictionary class, empty
+     */
+    StringDictionary(){
+        this.ids = new HashMap<>();
+        this.strings = new String[INITIAL_CAPACITY];
+        this.keys = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Gives the id of a string, adding the string if it is new
+     * The case of a new string is folded, and the folded form is added as well if it is new, to give the string its key
+     * @param text: the string
+     * @return id: the id of the string
+     */
+    final int intern(String text){
+        int id = find(text);
+        if (id != NO_ID) {
+            return id;
+        }
+        String folded = AlbumKey.fold(text);
+        if (folded.equals(text)) {
+            return add(text, NO_ID);
+        }
+        int key = find(folded);
+        return add(text, key == NO_ID ? add(folded, NO_ID) : getKey(key));
+    }
+
+    /**
+     * Gives the key of a string without adding it, the case is only folded if the string itself was never interned
+     * @param text: the string
+     * @return the key of the strings equal to it ignoring case, or NO_ID if none was interned
+     */
+    final int findKey(String text){
+        int id = find(text);
+        if (id == NO_ID) {
+            id = find(AlbumKey.fold(text));
+        }
+        return id == NO_ID ? NO_ID : getKey(id);
+    }
+
+    /**
+     * Finds the id of a string
+     * @param text: the string
+     * @return the id, or NO_ID if the string was never interned
+     */
+    int find(String text){
+        Integer id = ids.get(text);
+        return id == null ? NO_ID : id;
+    }
+
+    /**
+     * Adds a string that is not in the dictionary
+     * @param text: the string
+     * @param key: the key of the string, NO_ID if the string is folded and is its own key
+     * @return id: the id given to the string
+     */
+    int add(String text, int key){
+        int next = ids.size();
+        if (next == strings.length) {
+            strings = Arrays.copyOf(strings, next * 2);
+            keys = Arrays.copyOf(keys, next * 2);
+        }
+        strings[next] = text;
+        keys[next] = key == NO_ID ? next : key;
+        ids.put(text, next);
+        return next;
+    }
+
+    /**
+     * Drops every string that is not in use, the strings kept are given the ids from 0 in the order of their old ids
+     * The key of a string that is kept must be kept as well
+     * @param used: the ids of the strings to keep
+     * @return the new id of each old id, NO_ID for the strings dropped
+     */
+    int[] retain(BitSet used){
+        int count = ids.size();
+        String[] oldStrings = strings;
+        int[] oldKeys = keys;
+        int capacity = Math.max(used.cardinality(), INITIAL_CAPACITY);
+        ids = new HashMap<>();
+        strings = new String[capacity];
+        keys = new int[capacity];
+        int[] idOf = new int[count];
+        for (int id = 0; id < count; id++) {
+            idOf[id] = used.get(id) ? add(oldStrings[id], oldKeys[id] == id ? NO_ID : idOf[oldKeys[id]]) : NO_ID;
+        }
+        return idOf;
+    }
+
+    /**
+     * Getter method for the string of an id
+     * @param id: an id given out by intern
+     * @return the string
+     */
+    String get(int id){
+        return strings[id];
+    }
+
+    /**
+     * Getter method for the key of an id
+     * @param id: an id given out by intern
+     * @return key: the id of the folded form of the string
+     */
+    int getKey(int id){
+        return keys[id];
+    }
+
+    /**
+     * Getter method for the number of strings
+     * @return size: how many ids have been given out, folded forms included
+     */
+    int getSize(){
+        return ids.size();
+    }
+
+    /**
+     * @param id: an id given out by intern
+     * @return the number of chars in the string
+     */
+    int length(int id){
+        return strings[id].length();
+    }
+
+    /**
+     * @param id: an id given out by intern
+     * @param index: a char of the string from 0 to length(id) - 1
+     * @return the char
+     */
+    char charAt(int id, int index){
+        return strings[id].charAt(index);
+    }
+
+    /**
+     * Gives the chars of a string to read, without copying them if the dictionary can avoid it
+     * @param id: an id given out by intern
+     * @return the chars of the string
+     */
+    CharSequence chars(int id){
+        return strings[id];
+    }
+
+    /**
+     * Writes a string to an OutputSink
+     * @param id: an id given out by intern
+     * @param out: the OutputSink
+     */
+    void appendTo(int id, OutputSink out){
+        out.append(strings[id]);
+    }
+
+    /**
+     * Compares two strings as titles, word by word ignoring case, the same way Album.compareTitles compares them
+     * The chars are read through SortKeys.compareTitles, so no String is created for a word of ASCII chars
+     * @param one: an id
+     * @param two: another id
+     * @return -1, 0 or 1 the same way compareTitles does
+     */
+    int compareTitles(int one, int two){
+        return SortKeys.compareTitles(chars(one), chars(two));
+    }
+
+    /**
+     * Compares two strings as artist names, by their first word and then their last word ignoring case,
+     * the same way Artist.compareTo compares the names of two artists
+     * @param one: an id
+     * @param two: another id
+     * @return -1, 0 or 1 the same way compareTo does for two artists born on the same day
+     */
+    int compareNames(int one, int two){
+        return SortKeys.compareNames(chars(one), chars(two));
+    }
+}
@@ -0,0 +1,72 @@
+package album;
+import java.util.concurrent.atomic.LongAdder;
+/**
+The StripedRatingStats class which keeps the rating totals of an album in striped counters so many threads can rate it at once
+Each star has its own LongAdder, which spreads the threads adding to it over several cells instead of one contended count,
+so recording a rating never waits for another thread
+A summary or an average reads each count once, so it agrees with the counts it was read from even while other threads rate
+@author Seungjun Bae
+ */
+public class StripedRatingStats extends RatingStats {
+    private final LongAdder[] starCounts = new LongAdder[MAX_STAR + 1]; //indexed by star, index 0 unused
+
+    /**
+     * Constructor for the StripedRatingStats class which starts with no ratings
+     */
+    public StripedRatingStats() {
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            starCounts[star] = new LongAdder();
+        }
+    }
+
+    /**
+     * Creates striped totals holding the same ratings as other totals
+     * @param stats: the totals to copy
+     * @return the striped copy
+     */
+    public static StripedRatingStats copyOf(RatingStats stats) {
+        StripedRatingStats striped = new StripedRatingStats();
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            striped.record(star, stats.getCount(star));
+        }
+        return striped;
+    }
+
+    /**
+     * Adds one rating, safe to call from any number of threads at once
+     * @param star: the star rating given, from 1 to 5
+     * @throws IllegalArgumentException if the star is outside 1 to 5
+     */
+    @Override
+    public void record(int star) {
+        checkStar(star);
+        starCounts[star].increment();
+    }
+
+    /**
+     * Adds the same rating a number of times
+     * @param star: the star rating given, from 1 to 5
+     * @param times: how many times it was given
+     * @throws IllegalArgumentException if the star is outside 1 to 5
+     */
+    @Override
+    public void record(int star, long times) {
+        checkStar(star);
+        starCounts[star].add(times);
+    }
+
+    @Override
+    public long getCount(int star) {
+        return starCounts[star].sum();
+    }
+
+    /**
+     * Empties the totals, must not be called while other threads are rating
+     */
+    @Override
+    public void clear() {
+        for (int star = MIN_STAR; star <= MAX_STAR; star++) {
+            starCounts[star].reset();
+        }
+    }
+}
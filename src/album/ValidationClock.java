@@ -0,0 +1,75 @@
+package album;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+The ValidationClock class which supplies the "today" that Date.isValid uses to reject dates in the future
+One shared clock serves every Date, it reads the time once per day and refreshes itself when the day rolls over,
+and a fixed clock can be set in its place to test validation against a known date
+@author Rohan Sharma
+ */
+public final class ValidationClock {
+    private static volatile ValidationClock shared = new ValidationClock(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private volatile int today; //today's date packed as yyyymmdd
+    private volatile long nextRollover; //millis at which today has to be read again
+
+    /**
+    Parameterized constructor for the ValidationClock class
+    @param clock: the java.time Clock today is read from
+     */
+    public ValidationClock(Clock clock){
+        this.clock = clock;
+        refresh();
+    }
+
+    /**
+    Creates a clock that is always on the same day, useful in tests
+    @param year: the year of the day
+    @param month: the month of the day, 1 to 12
+    @param day: the day of the month
+    @return a ValidationClock that never rolls over
+     */
+    public static ValidationClock fixed(int year, int month, int day){
+        LocalDate date = LocalDate.of(year, month, day);
+        return new ValidationClock(Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+    }
+
+    /**
+    Getter method for the clock every Date validates against
+    @return the shared ValidationClock
+     */
+    public static ValidationClock getShared(){
+        return shared;
+    }
+
+    /**
+    Setter method for the clock every Date validates against
+    @param clock: a ValidationClock, for example one made by fixed
+     */
+    public static void setShared(ValidationClock clock){
+        shared = clock;
+    }
+
+    /**
+    Reads today from the underlying clock and works out when the next day starts
+     */
+    public void refresh(){
+        LocalDate date = LocalDate.now(clock);
+        this.nextRollover = date.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+        this.today = Date.pack(date.getYear(), date.getMonthValue(), date.getDayOfMonth());
+    }
+
+    /**
+    Getter method for today, refreshed first if the day has rolled over since it was last read
+    @return today's date packed as yyyymmdd by Date.pack
+     */
+    public int today(){
+        if (clock.millis() >= nextRollover) {
+            refresh();
+        }
+        return today;
+    }
+}